@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.maple.hbase;
+
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Mutation;
+
+import java.io.IOException;
+
+/**
+ * Class CountingMutator writes mutations through a {@link BufferedMutator} and counts
+ * the puts, the flushes and the time spent flushing. That includes the flushes
+ * mutate does by itself when the write buffer is full. BufferedMutator does not
+ * say when that happens, so this adds up the heap size of each mutation the way
+ * BufferedMutatorImpl does, and takes a mutate that goes over the write buffer
+ * size to have flushed.
+ *
+ * The counts are kept since the last call to {@link #reset()}.
+ */
+class CountingMutator {
+  private final BufferedMutator mutator;
+  private final long flushIntervalMillis;
+  private long lastFlushMillis;
+  private long bufferedBytes;
+
+  private long puts;
+  private long flushes;
+  private long flushMillis;
+
+  /**
+   * @param flushIntervalMillis flush at least this often, if positive
+   */
+  CountingMutator(BufferedMutator mutator, long flushIntervalMillis) {
+    this.mutator = mutator;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.lastFlushMillis = System.currentTimeMillis();
+  }
+
+  void mutate(Mutation mutation) throws IOException {
+    long start = System.currentTimeMillis();
+    mutator.mutate(mutation);
+    puts++;
+    bufferedBytes += mutation.heapSize();
+    if (bufferedBytes > mutator.getWriteBufferSize()) {
+      // mutate sent the buffered puts
+      flushed(start);
+    } else if (flushIntervalMillis > 0 && start - lastFlushMillis >= flushIntervalMillis) {
+      flush();
+    }
+  }
+
+  void flush() throws IOException {
+    long start = System.currentTimeMillis();
+    mutator.flush();
+    flushed(start);
+  }
+
+  private void flushed(long start) {
+    lastFlushMillis = System.currentTimeMillis();
+    bufferedBytes = 0;
+    flushes++;
+    flushMillis += lastFlushMillis - start;
+  }
+
+  long getPuts() {
+    return puts;
+  }
+
+  long getFlushes() {
+    return flushes;
+  }
+
+  long getFlushMillis() {
+    return flushMillis;
+  }
+
+  void reset() {
+    puts = 0;
+    flushes = 0;
+    flushMillis = 0;
+  }
+
+  void close() throws IOException {
+    mutator.close();
+  }
+}
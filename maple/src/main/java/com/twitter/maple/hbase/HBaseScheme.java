@@ -23,6 +23,7 @@ import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 import cascading.tuple.TupleEntry;
 import cascading.util.Util;
+import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -56,6 +57,27 @@ public class HBaseScheme
   /** Field valueFields */
   private Fields[] valueFields;
 
+  /** Field writeBufferSize, in bytes, of the batched sink */
+  private long writeBufferSize = -1;
+  /** Field flushIntervalMillis of the batched sink */
+  private long flushIntervalMillis = -1;
+  /** Field durability of each Put we sink */
+  private Durability durability;
+
+  /** Field scanCaching, rows fetched per call to the region server */
+  private int scanCaching = -1;
+  /** Field scanBatch, cells per Result */
+  private int scanBatch = -1;
+  /** Field cacheBlocks */
+  private boolean cacheBlocks = true;
+  /** Field minTimestamp */
+  private long minTimestamp = -1;
+  /** Field maxTimestamp */
+  private long maxTimestamp = -1;
+
+  /** Field EMPTY, the value of missing cells */
+  private static final byte[] EMPTY = new byte[0];
+
   /** String columns */
   private transient String[] columns;
   /** Field fields */
@@ -132,6 +154,79 @@ public class HBaseScheme
     setSinkFields(allFields);
   }
 
+  /**
+   * Method setWriteBufferSize makes the sink write in batches, buffering
+   * up to writeBufferSize bytes of Puts before sending them to HBase.
+   *
+   * @param writeBufferSize of type long
+   */
+  public void setWriteBufferSize(long writeBufferSize) {
+    this.writeBufferSize = writeBufferSize;
+  }
+
+  /**
+   * Method setFlushIntervalMillis makes the sink write in batches, sending
+   * the buffered Puts at least every flushIntervalMillis.
+   *
+   * @param flushIntervalMillis of type long
+   */
+  public void setFlushIntervalMillis(long flushIntervalMillis) {
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  /**
+   * Method setDurability sets the durability of each Put we sink, for instance
+   * Durability.SKIP_WAL or Durability.ASYNC_WAL to trade safety for speed.
+   *
+   * @param durability of type Durability
+   */
+  public void setDurability(Durability durability) {
+    this.durability = durability;
+  }
+
+  /**
+   * Method setScanCaching sets the number of rows the scanner fetches in each
+   * call to the region server.
+   *
+   * @param scanCaching of type int
+   */
+  public void setScanCaching(int scanCaching) {
+    this.scanCaching = scanCaching;
+  }
+
+  /**
+   * Method setScanBatch sets the maximum number of cells returned in each Result.
+   * The Results of a row with more cells than this are combined, so each row is
+   * still sourced as one tuple, but no response from a region server holds more
+   * than this many cells.
+   *
+   * @param scanBatch of type int
+   */
+  public void setScanBatch(int scanBatch) {
+    this.scanBatch = scanBatch;
+  }
+
+  /**
+   * Method setCacheBlocks sets whether the blocks we read go into the region
+   * servers' block cache. Full table scans should set this to false.
+   *
+   * @param cacheBlocks of type boolean
+   */
+  public void setCacheBlocks(boolean cacheBlocks) {
+    this.cacheBlocks = cacheBlocks;
+  }
+
+  /**
+   * Method setTimeRange only sources cells with timestamps in [minTimestamp, maxTimestamp).
+   *
+   * @param minTimestamp of type long
+   * @param maxTimestamp of type long
+   */
+  public void setTimeRange(long minTimestamp, long maxTimestamp) {
+    this.minTimestamp = minTimestamp;
+    this.maxTimestamp = maxTimestamp;
+  }
+
   /**
    * Method getFamilyNames returns the set of familyNames of this HBaseScheme object.
    *
@@ -156,10 +251,25 @@ public class HBaseScheme
   @Override
   public void sourcePrepare(FlowProcess<JobConf> flowProcess,
       SourceCall<Object[], RecordReader> sourceCall) {
-    Object[] pair =
-        new Object[]{sourceCall.getInput().createKey(), sourceCall.getInput().createValue()};
+    String[] columns = columns(this.familyNames, this.valueFields);
+    byte[][] families = new byte[columns.length][];
+    byte[][] qualifiers = new byte[columns.length][];
+    ImmutableBytesWritable[] cells = new ImmutableBytesWritable[columns.length];
+    Tuple result = Tuple.size(columns.length + 1);
+
+    for (int i = 0; i < columns.length; i++) {
+      int pos = columns[i].indexOf(":");
+      families[i] = Bytes.toBytes(columns[i].substring(0, pos));
+      qualifiers[i] = Bytes.toBytes(columns[i].substring(pos + 1));
+      cells[i] = new ImmutableBytesWritable(EMPTY);
+      result.set(i + 1, cells[i]);
+    }
+
+    // the tuple and its writables are reused for every row
+    Object[] context = new Object[]{sourceCall.getInput().createKey(),
+        sourceCall.getInput().createValue(), result, cells, families, qualifiers};
 
-    sourceCall.setContext(pair);
+    sourceCall.setContext(context);
   }
 
   @Override
@@ -171,33 +281,25 @@ public class HBaseScheme
   @Override
   public boolean source(FlowProcess<JobConf> flowProcess,
       SourceCall<Object[], RecordReader> sourceCall) throws IOException {
-    Tuple result = new Tuple();
-
-    Object key = sourceCall.getContext()[0];
-    Object value = sourceCall.getContext()[1];
+    Object[] context = sourceCall.getContext();
+    Object key = context[0];
+    Object value = context[1];
     boolean hasNext = sourceCall.getInput().next(key, value);
     if (!hasNext) { return false; }
 
     // Skip nulls
     if (key == null || value == null) { return true; }
 
-    ImmutableBytesWritable keyWritable = (ImmutableBytesWritable) key;
+    Tuple result = (Tuple) context[2];
+    ImmutableBytesWritable[] cells = (ImmutableBytesWritable[]) context[3];
+    byte[][] families = (byte[][]) context[4];
+    byte[][] qualifiers = (byte[][]) context[5];
     Result row = (Result) value;
-    result.add(keyWritable);
-
-    for (int i = 0; i < this.familyNames.length; i++) {
-      String familyName = this.familyNames[i];
-      byte[] familyNameBytes = Bytes.toBytes(familyName);
-      Fields fields = this.valueFields[i];
-      for (int k = 0; k < fields.size(); k++) {
-        String fieldName = (String) fields.get(k);
-        byte[] fieldNameBytes = Bytes.toBytes(fieldName);
-        byte[] cellValue = row.getValue(familyNameBytes, fieldNameBytes);
-        if (cellValue == null) {
-            cellValue = new byte[0];
-        }
-        result.add(new ImmutableBytesWritable(cellValue));
-      }
+    result.set(0, key);
+
+    for (int i = 0; i < cells.length; i++) {
+      byte[] cellValue = row.getValue(families[i], qualifiers[i]);
+      cells[i].set(cellValue == null ? EMPTY : cellValue);
     }
 
     sourceCall.getIncomingEntry().setTuple(result);
@@ -213,6 +315,7 @@ public class HBaseScheme
     Tuple key = tupleEntry.selectTuple(keyField);
     ImmutableBytesWritable keyBytes = (ImmutableBytesWritable) key.getObject(0);
     Put put = new Put(keyBytes.get());
+    if (durability != null) { put.setDurability(durability); }
 
     for (int i = 0; i < valueFields.length; i++) {
       Fields fieldSelector = valueFields[i];
@@ -237,6 +340,16 @@ public class HBaseScheme
 
     conf.setOutputKeyClass(ImmutableBytesWritable.class);
     conf.setOutputValueClass(Put.class);
+
+    if (writeBufferSize > 0 || flushIntervalMillis > 0) {
+      conf.setBoolean(HBaseTapCollector.BATCHED, true);
+    }
+    if (writeBufferSize > 0) {
+      conf.setLong(HBaseTapCollector.WRITE_BUFFER_SIZE, writeBufferSize);
+    }
+    if (flushIntervalMillis > 0) {
+      conf.setLong(HBaseTapCollector.FLUSH_INTERVAL_MILLIS, flushIntervalMillis);
+    }
   }
 
   @Override
@@ -247,6 +360,20 @@ public class HBaseScheme
     String columns = getColumns();
     LOG.debug("sourcing from columns: {}", columns);
     conf.set(TableInputFormat.COLUMN_LIST, columns);
+
+    if (scanCaching > 0) {
+      conf.setInt(TableInputFormat.SCAN_CACHING, scanCaching);
+    }
+    if (scanBatch > 0) {
+      conf.setInt(TableInputFormat.SCAN_BATCH, scanBatch);
+    }
+    conf.setBoolean(TableInputFormat.SCAN_CACHE_BLOCKS, cacheBlocks);
+    if (minTimestamp >= 0) {
+      conf.setLong(TableInputFormat.SCAN_TIMERANGE_START, minTimestamp);
+    }
+    if (maxTimestamp >= 0) {
+      conf.setLong(TableInputFormat.SCAN_TIMERANGE_END, maxTimestamp);
+    }
   }
 
   private String getColumns() {
@@ -27,6 +27,7 @@ import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
@@ -35,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -58,6 +60,10 @@ public class HBaseTap extends Tap<JobConf, RecordReader, OutputCollector> {
   private String quorumNames;
   /** Field tableName */
   private String tableName;
+  /** Field startRow, the first row we source */
+  private byte[] startRow;
+  /** Field stopRow, the row after the last one we source */
+  private byte[] stopRow;
 
   /**
    * Constructor HBaseTap creates a new HBaseTap instance.
@@ -130,6 +136,20 @@ public class HBaseTap extends Tap<JobConf, RecordReader, OutputCollector> {
     return tableName;
   }
 
+  /**
+   * Method setKeyRange only sources rows in [startRow, stopRow). Regions outside
+   * of the range are not scanned. Either may be null to leave that end open.
+   *
+   * @param startRow
+   *          of type byte[]
+   * @param stopRow
+   *          of type byte[]
+   */
+  public void setKeyRange(byte[] startRow, byte[] stopRow) {
+    this.startRow = startRow;
+    this.stopRow = stopRow;
+  }
+
   public Path getPath() {
     return new Path(SCHEME + ":/" + tableName.replaceAll(":", "_"));
   }
@@ -245,6 +265,12 @@ public class HBaseTap extends Tap<JobConf, RecordReader, OutputCollector> {
 
     LOG.debug("sourcing from table: {}", tableName);
     TableInputFormat.setTableName(conf, tableName);
+    if (startRow != null) {
+      conf.set(TableInputFormat.SCAN_START_ROW, Bytes.toStringBinary(startRow));
+    }
+    if (stopRow != null) {
+      conf.set(TableInputFormat.SCAN_STOP_ROW, Bytes.toStringBinary(stopRow));
+    }
     super.sourceConfInit(process, conf);
   }
 
@@ -265,6 +291,9 @@ public class HBaseTap extends Tap<JobConf, RecordReader, OutputCollector> {
     if (tableName != null ? !tableName.equals(hBaseTap.tableName) : hBaseTap.tableName != null) {
       return false;
     }
+    if (!Arrays.equals(startRow, hBaseTap.startRow) || !Arrays.equals(stopRow, hBaseTap.stopRow)) {
+      return false;
+    }
 
     return true;
   }
@@ -273,6 +302,8 @@ public class HBaseTap extends Tap<JobConf, RecordReader, OutputCollector> {
   public int hashCode() {
     int result = super.hashCode();
     result = 31 * result + (tableName != null ? tableName.hashCode() : 0);
+    result = 31 * result + Arrays.hashCode(startRow);
+    result = 31 * result + Arrays.hashCode(stopRow);
     return result;
   }
 }
@@ -23,6 +23,14 @@ import cascading.flow.hadoop.HadoopFlowProcess;
 import cascading.tap.Tap;
 import cascading.tap.TapException;
 import cascading.tuple.TupleEntrySchemeCollector;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
 import org.apache.hadoop.mapred.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,10 +41,31 @@ import java.io.IOException;
  * Class HBaseTapCollector is a kind of
  * {@link cascading.tuple.TupleEntrySchemeCollector} that writes tuples to the
  * resource managed by a particular {@link HBaseTap} instance.
+ *
+ * When {@link #BATCHED} is set, Puts are written through a {@link BufferedMutator}
+ * with the write buffer size and flush interval from the JobConf, and the number
+ * of puts, flushes and the time spent flushing are reported as counters after
+ * each flush, and at least every {@link #REPORT_PUTS} puts.
  */
 public class HBaseTapCollector extends TupleEntrySchemeCollector<JobConf, TupleEntrySchemeCollector> implements OutputCollector {
   /** Field LOG */
   private static final Logger LOG = LoggerFactory.getLogger(HBaseTapCollector.class);
+
+  /** Field BATCHED, set to true to write through a BufferedMutator */
+  public static final String BATCHED = "maple.hbase.sink.batched";
+  /** Field WRITE_BUFFER_SIZE of the BufferedMutator, in bytes */
+  public static final String WRITE_BUFFER_SIZE = "maple.hbase.sink.write.buffer.size";
+  /** Field FLUSH_INTERVAL_MILLIS, flush at least this often when set */
+  public static final String FLUSH_INTERVAL_MILLIS = "maple.hbase.sink.flush.interval.ms";
+
+  /** Field COUNTER_GROUP, the group scalding uses for Stats */
+  public static final String COUNTER_GROUP = "Scalding Custom";
+  public static final String PUTS_COUNTER = "hbase.sink.puts";
+  public static final String FLUSHES_COUNTER = "hbase.sink.flushes";
+  public static final String FLUSH_MILLIS_COUNTER = "hbase.sink.flush.millis";
+  /** Field REPORT_PUTS, the most puts to count locally before incrementing the counters */
+  public static final long REPORT_PUTS = 10000;
+
   /** Field conf */
   private final JobConf conf;
   /** Field writer */
@@ -47,6 +76,10 @@ public class HBaseTapCollector extends TupleEntrySchemeCollector<JobConf, TupleE
   private final Tap<JobConf, RecordReader, OutputCollector> tap;
   /** Field reporter */
   private final Reporter reporter = Reporter.NULL;
+  /** Field connection, only used when batched */
+  private Connection connection;
+  /** Field mutator, only used when batched */
+  private CountingMutator mutator;
 
   /**
    * Constructor TapCollector creates a new TapCollector instance.
@@ -79,17 +112,57 @@ public class HBaseTapCollector extends TupleEntrySchemeCollector<JobConf, TupleE
 
   private void initialize() throws IOException {
     tap.sinkConfInit(hadoopFlowProcess, conf);
-    OutputFormat outputFormat = conf.getOutputFormat();
-    LOG.info("Output format class is: " + outputFormat.getClass().toString());
-    writer = outputFormat.getRecordWriter(null, conf, tap.getIdentifier(), Reporter.NULL);
+    if (conf.getBoolean(BATCHED, false)) {
+      initializeBatched();
+    } else {
+      OutputFormat outputFormat = conf.getOutputFormat();
+      LOG.info("Output format class is: " + outputFormat.getClass().toString());
+      writer = outputFormat.getRecordWriter(null, conf, tap.getIdentifier(), Reporter.NULL);
+    }
     sinkCall.setOutput(this);
   }
 
+  private void initializeBatched() throws IOException {
+    String tableName = conf.get(TableOutputFormat.OUTPUT_TABLE);
+    BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(tableName));
+    long writeBufferSize = conf.getLong(WRITE_BUFFER_SIZE, -1);
+    if (writeBufferSize > 0) {
+      params.writeBufferSize(writeBufferSize);
+    }
+    long flushIntervalMillis = conf.getLong(FLUSH_INTERVAL_MILLIS, -1);
+
+    LOG.info("writing to {} in batches, write buffer size: {}, flush interval ms: {}",
+        new Object[]{tableName, writeBufferSize, flushIntervalMillis});
+    connection = ConnectionFactory.createConnection(HBaseConfiguration.create(conf));
+    mutator = new CountingMutator(connection.getBufferedMutator(params), flushIntervalMillis);
+  }
+
+  private void reportCounts() {
+    hadoopFlowProcess.increment(COUNTER_GROUP, PUTS_COUNTER, mutator.getPuts());
+    hadoopFlowProcess.increment(COUNTER_GROUP, FLUSHES_COUNTER, mutator.getFlushes());
+    hadoopFlowProcess.increment(COUNTER_GROUP, FLUSH_MILLIS_COUNTER, mutator.getFlushMillis());
+    mutator.reset();
+  }
+
+  private void closeBatched() throws IOException {
+    try {
+      mutator.flush();
+      reportCounts();
+      mutator.close();
+    } finally {
+      connection.close();
+    }
+  }
+
   @Override
   public void close() {
     try {
       LOG.info("closing tap collector for: {}", tap);
-      writer.close(reporter);
+      if (mutator != null) {
+        closeBatched();
+      } else {
+        writer.close(reporter);
+      }
     } catch (IOException exception) {
       LOG.warn("exception closing: {}", exception);
       throw new TapException("exception closing HBaseTapCollector", exception);
@@ -113,6 +186,13 @@ public class HBaseTapCollector extends TupleEntrySchemeCollector<JobConf, TupleE
     if (hadoopFlowProcess instanceof HadoopFlowProcess)
       ((HadoopFlowProcess) hadoopFlowProcess).getReporter().progress();
 
-    writer.write(writableComparable, writable);
+    if (mutator == null) {
+      writer.write(writableComparable, writable);
+    } else {
+      mutator.mutate((Mutation) writable);
+      if (mutator.getFlushes() > 0 || mutator.getPuts() >= REPORT_PUTS) {
+        reportCounts();
+      }
+    }
   }
 }
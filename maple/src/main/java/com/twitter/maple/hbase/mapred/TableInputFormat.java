@@ -20,17 +20,26 @@
 package com.twitter.maple.hbase.mapred;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapred.TableInputFormatBase;
+import org.apache.hadoop.hbase.mapred.TableSplit;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.JobConfigurable;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.util.StringUtils;
 
 /**
@@ -38,7 +47,7 @@ import org.apache.hadoop.util.StringUtils;
  */
 public class TableInputFormat extends TableInputFormatBase implements
     JobConfigurable {
-  private final Log LOG = LogFactory.getLog(TableInputFormat.class);
+  private static final Log LOG = LogFactory.getLog(TableInputFormat.class);
 
   /**
    * space delimited list of columns
@@ -50,6 +59,36 @@ public class TableInputFormat extends TableInputFormatBase implements
    */
   public static final String INPUT_TABLE = "hbase.mapred.inputtable";
 
+  /**
+   * number of rows the scanner fetches per call to the region server
+   */
+  public static final String SCAN_CACHING = "maple.hbase.scan.caching";
+
+  /**
+   * maximum number of cells returned per Result. The record reader combines the
+   * Results of a wide row, so this bounds each response, not each row.
+   */
+  public static final String SCAN_BATCH = "maple.hbase.scan.batch";
+
+  /**
+   * set to false so a full table scan does not evict the region servers' block cache
+   */
+  public static final String SCAN_CACHE_BLOCKS = "maple.hbase.scan.cacheblocks";
+
+  /**
+   * only read cells with timestamps in [start, end)
+   */
+  public static final String SCAN_TIMERANGE_START = "maple.hbase.scan.timerange.start";
+  public static final String SCAN_TIMERANGE_END = "maple.hbase.scan.timerange.end";
+
+  /**
+   * only read rows in [start, stop), encoded with Bytes.toStringBinary
+   */
+  public static final String SCAN_START_ROW = "maple.hbase.scan.startrow";
+  public static final String SCAN_STOP_ROW = "maple.hbase.scan.stoprow";
+
+  private byte[][] inputColumns;
+
   public void configure(JobConf job) {
     String tableName = TableInputFormat.getTableName(job);
     String colArg = job.get(COLUMN_LIST);
@@ -59,6 +98,7 @@ public class TableInputFormat extends TableInputFormatBase implements
       m_cols[i] = Bytes.toBytes(colNames[i]);
     }
     setInputColumns(m_cols);
+    inputColumns = m_cols;
     try {
       setHTable(new HTable(HBaseConfiguration.create(job), tableName));
     } catch (Exception e) {
@@ -66,6 +106,81 @@ public class TableInputFormat extends TableInputFormatBase implements
     }
   }
 
+  /**
+   * Drops the regions outside of the start and stop rows, and clips the
+   * regions on the boundary to them
+   */
+  @Override
+  public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+    return clip(super.getSplits(job, numSplits), getRow(job, SCAN_START_ROW), getRow(job, SCAN_STOP_ROW));
+  }
+
+  /**
+   * Drops the TableSplits outside of [startRow, stopRow), and clips the ones on
+   * the boundary to it. An empty row means no limit on that side.
+   */
+  static InputSplit[] clip(InputSplit[] splits, byte[] startRow, byte[] stopRow) {
+    if (startRow.length == 0 && stopRow.length == 0) {
+      return splits;
+    }
+
+    List<InputSplit> clipped = new ArrayList<InputSplit>(splits.length);
+    for (InputSplit split : splits) {
+      TableSplit region = (TableSplit) split;
+      byte[] regionStart = region.getStartRow();
+      byte[] regionEnd = region.getEndRow();
+      boolean startsBeforeStop = stopRow.length == 0 || regionStart.length == 0 ||
+          Bytes.compareTo(regionStart, stopRow) < 0;
+      boolean endsAfterStart = startRow.length == 0 || regionEnd.length == 0 ||
+          Bytes.compareTo(regionEnd, startRow) > 0;
+      if (startsBeforeStop && endsAfterStart) {
+        byte[] start = startRow.length > 0 &&
+            (regionStart.length == 0 || Bytes.compareTo(startRow, regionStart) > 0) ? startRow : regionStart;
+        byte[] end = stopRow.length > 0 &&
+            (regionEnd.length == 0 || Bytes.compareTo(stopRow, regionEnd) < 0) ? stopRow : regionEnd;
+        clipped.add(new TableSplit(region.getTable(), start, end, region.getRegionLocation()));
+      }
+    }
+    LOG.info("scanning " + clipped.size() + " of " + splits.length + " regions between " +
+        Bytes.toStringBinary(startRow) + " and " + Bytes.toStringBinary(stopRow));
+    return clipped.toArray(new InputSplit[clipped.size()]);
+  }
+
+  /**
+   * Reads the split with a Scan built from the scan settings in the JobConf
+   */
+  @Override
+  public RecordReader<ImmutableBytesWritable, Result> getRecordReader(InputSplit split,
+      JobConf job, Reporter reporter) throws IOException {
+    TableSplit tSplit = (TableSplit) split;
+    if (getHTable() == null) {
+      throw new IOException("could not connect to table '" + getTableName(job) + "'");
+    }
+
+    Scan scan = new Scan(tSplit.getStartRow(), tSplit.getEndRow());
+    org.apache.hadoop.hbase.mapreduce.TableInputFormat.addColumns(scan, inputColumns);
+    int caching = job.getInt(SCAN_CACHING, -1);
+    if (caching > 0) {
+      scan.setCaching(caching);
+    }
+    int batch = job.getInt(SCAN_BATCH, -1);
+    if (batch > 0) {
+      scan.setBatch(batch);
+    }
+    scan.setCacheBlocks(job.getBoolean(SCAN_CACHE_BLOCKS, true));
+    long minStamp = job.getLong(SCAN_TIMERANGE_START, -1);
+    long maxStamp = job.getLong(SCAN_TIMERANGE_END, -1);
+    if (minStamp >= 0 || maxStamp >= 0) {
+      scan.setTimeRange(Math.max(minStamp, 0L), maxStamp >= 0 ? maxStamp : Long.MAX_VALUE);
+    }
+    return new TableScanRecordReader(getHTable(), scan);
+  }
+
+  private static byte[] getRow(JobConf job, String key) {
+    String row = job.get(key);
+    return row == null ? new byte[0] : Bytes.toBytesBinary(row);
+  }
+
   public void validateInput(JobConf job) throws IOException {
     // expecting exactly one path
     String tableName = TableInputFormat.getTableName(job);
@@ -0,0 +1,187 @@
+package com.twitter.maple.hbase.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapred.RecordReader;
+
+/**
+ * Iterates over the rows of a Scan, copying each Result into the key and
+ * value handed to next so they can be reused across rows. When the Scan has a
+ * batch size, the partial Results of a row are combined into one. If the scanner
+ * fails, for instance because it timed out while the mapper was busy, the scan
+ * is restarted after the last row read.
+ */
+public class TableScanRecordReader implements RecordReader<ImmutableBytesWritable, Result> {
+  private static final Log LOG = LogFactory.getLog(TableScanRecordReader.class);
+
+  /**
+   * Opens the scanners of the scan, the first one and any restarts
+   */
+  interface Scanners {
+    ResultScanner open(Scan scan) throws IOException;
+  }
+
+  private final Scanners scanners;
+  private final Scan scan;
+  private ResultScanner scanner;
+  private byte[] lastRow;
+  private long rowCount = 0;
+  private int restarts = 0;
+  private boolean done = false;
+  // the first Result of the next row, when combining partial Results
+  private Result pending;
+
+  public TableScanRecordReader(final HTable table, Scan scan) throws IOException {
+    this(new Scanners() {
+      public ResultScanner open(Scan scan) throws IOException {
+        return table.getScanner(scan);
+      }
+    }, scan);
+  }
+
+  TableScanRecordReader(Scanners scanners, Scan scan) throws IOException {
+    this.scanners = scanners;
+    this.scan = scan;
+    this.scanner = scanners.open(scan);
+  }
+
+  private Result nextResult() throws IOException {
+    try {
+      return scanner.next();
+    } catch (IOException e) {
+      if (lastRow == null) {
+        throw e;
+      }
+      LOG.info("restarting scan after " + Bytes.toStringBinary(lastRow) + ": " + e);
+      scanner.close();
+      Scan restart = new Scan(scan);
+      restart.setStartRow(lastRow);
+      scanner = scanners.open(restart);
+      restarts++;
+      Result result = scanner.next();
+      // the restarted scan includes the last row, which we have already read, in one or more Results
+      while (result != null && Bytes.equals(result.getRow(), lastRow)) {
+        result = scanner.next();
+      }
+      return result;
+    }
+  }
+
+  private static boolean isEnd(Result result) {
+    return result == null || result.isEmpty();
+  }
+
+  /**
+   * The next row, with the partial Results of a batched Scan combined
+   */
+  private Result nextRow() throws IOException {
+    if (scan.getBatch() <= 0) {
+      return nextResult();
+    }
+    while (true) {
+      Result first = pending != null ? pending : nextResult();
+      pending = null;
+      if (isEnd(first)) {
+        return first;
+      }
+      int restartsBefore = restarts;
+      List<Cell> cells = null;
+      Result next = nextResult();
+      while (restarts == restartsBefore && !isEnd(next) && Bytes.equals(next.getRow(), first.getRow())) {
+        if (cells == null) {
+          cells = new ArrayList<Cell>(Arrays.asList(first.rawCells()));
+        }
+        cells.addAll(Arrays.asList(next.rawCells()));
+        next = nextResult();
+      }
+      pending = next;
+      if (restarts == restartsBefore) {
+        return cells == null ? first : Result.create(cells);
+      }
+      // the scan restarted after lastRow while we were reading this row,
+      // so next is the start of this row again
+    }
+  }
+
+  /**
+   * Where row is between the start and stop rows of the scan, from 0 to 1,
+   * going by the first bytes after their common prefix
+   */
+  static float progress(byte[] startRow, byte[] stopRow, byte[] row) {
+    int prefix = 0;
+    while (prefix < startRow.length && prefix < stopRow.length && startRow[prefix] == stopRow[prefix]) {
+      prefix++;
+    }
+    double start = position(startRow, prefix);
+    // an empty stop row is the end of the table
+    double stop = stopRow.length == 0 ? 1.0 : position(stopRow, prefix);
+    if (stop <= start) {
+      return 0;
+    }
+    double progress = (position(row, prefix) - start) / (stop - start);
+    return (float) Math.max(0.0, Math.min(1.0, progress));
+  }
+
+  // the 6 bytes of key after offset as a fraction in [0, 1)
+  private static double position(byte[] key, int offset) {
+    double position = 0;
+    double scale = 1;
+    for (int i = offset; i < offset + 6; i++) {
+      scale /= 256;
+      position += (i < key.length ? key[i] & 0xff : 0) * scale;
+    }
+    return position;
+  }
+
+  public boolean next(ImmutableBytesWritable key, Result value) throws IOException {
+    Result result = nextRow();
+    if (isEnd(result)) {
+      done = true;
+      return false;
+    }
+    lastRow = result.getRow();
+    key.set(lastRow);
+    value.copyFrom(result);
+    rowCount++;
+    return true;
+  }
+
+  public ImmutableBytesWritable createKey() {
+    return new ImmutableBytesWritable();
+  }
+
+  public Result createValue() {
+    return new Result();
+  }
+
+  public long getPos() {
+    return rowCount;
+  }
+
+  public float getProgress() {
+    if (done) {
+      return 1;
+    }
+    if (lastRow == null) {
+      return 0;
+    }
+    // we do not know the number of rows in the region, so go by the keys
+    return progress(scan.getStartRow(), scan.getStopRow(), lastRow);
+  }
+
+  public void close() {
+    scanner.close();
+  }
+}
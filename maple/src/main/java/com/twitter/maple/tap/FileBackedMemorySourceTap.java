@@ -0,0 +1,133 @@
+package com.twitter.maple.tap;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowListener;
+import cascading.flow.FlowProcess;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A MemorySourceTap that writes its tuples once to a side file, on the default
+ * FileSystem, instead of into the JobConf. Only the path of the file is put into
+ * the JobConf, and the tuples can be read with more than one split.
+ *
+ * The file goes into the directory in DIR_PROPERTY, which defaults to a directory
+ * under hadoop.tmp.dir. It is deleted by DeleteSideFiles when the flow that reads it
+ * stops, or else when the FileSystem is closed.
+ */
+public class FileBackedMemorySourceTap extends MemorySourceTap {
+    private static final Logger logger = LoggerFactory.getLogger(FileBackedMemorySourceTap.class);
+
+    public static final String DIR_PROPERTY = "memory.format.tuples.dir";
+
+    /**
+     * The smallest number of tuples for which a source should use this tap instead of a
+     * MemorySourceTap. Unset means never.
+     */
+    public static final String MIN_TUPLES_PROPERTY = "memory.format.tuples.file.min";
+
+    public static class FileBackedMemorySourceScheme extends MemorySourceScheme {
+
+        // the side file, once sourceConfInit has written it on the submitter
+        private transient Path sideFile;
+
+        public FileBackedMemorySourceScheme(List<Tuple> tuples, Fields fields, String id) {
+            super(tuples, fields, id);
+        }
+
+        /**
+         * Delete the side file, if it was written. A later sourceConfInit writes it again.
+         */
+        public void deleteSideFile(JobConf conf) throws IOException {
+            Path path = sideFile;
+            sideFile = null;
+            if (path != null) {
+                path.getFileSystem(conf).delete(path, false);
+            }
+        }
+
+        @Override
+        public void sourceConfInit(FlowProcess<JobConf> flowProcess,
+            Tap<JobConf, RecordReader<TupleWrapper, NullWritable>, Void> tap, JobConf conf) {
+            FileInputFormat.setInputPaths(conf, getId());
+            conf.setInputFormat(TupleFileInputFormat.class);
+
+            String dir = conf.get(DIR_PROPERTY, conf.get("hadoop.tmp.dir", "/tmp") + "/scalding-memory-source");
+            // the id starts with a /
+            Path path = new Path(dir + getId());
+            try {
+                FileSystem fs = path.getFileSystem(conf);
+                if (fs.exists(path)) {
+                    // sourceConfInit is called for each step that reads this tap
+                    conf.set(TupleFileInputFormat.PATH_PROPERTY, path.makeQualified(fs).toString());
+                } else {
+                    TupleFileInputFormat.writeTuples(conf, path, getTuples());
+                    // in case the file is never read by a flow with DeleteSideFiles
+                    fs.deleteOnExit(path);
+                }
+                sideFile = path.makeQualified(fs);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the side files of the FileBackedMemorySourceTaps a flow reads when the
+     * flow stops, whether or not it succeeded.
+     */
+    public static class DeleteSideFiles implements FlowListener {
+
+        private static void deleteSideFiles(Flow flow) {
+            Object config = flow.getConfig();
+            if (!(config instanceof JobConf)) {
+                return;
+            }
+            JobConf conf = (JobConf) config;
+            for (Object source : flow.getSourcesCollection()) {
+                if (source instanceof FileBackedMemorySourceTap) {
+                    FileBackedMemorySourceTap tap = (FileBackedMemorySourceTap) source;
+                    try {
+                        ((FileBackedMemorySourceScheme) tap.getScheme()).deleteSideFile(conf);
+                    } catch (IOException e) {
+                        logger.warn("could not delete the side file of " + tap.getIdentifier(), e);
+                    }
+                }
+            }
+        }
+
+        public void onStarting(Flow flow) {
+        }
+
+        public void onStopping(Flow flow) {
+            deleteSideFiles(flow);
+        }
+
+        public void onCompleted(Flow flow) {
+            deleteSideFiles(flow);
+        }
+
+        public boolean onThrowable(Flow flow, Throwable throwable) {
+            deleteSideFiles(flow);
+            // let the other listeners handle it
+            return false;
+        }
+    }
+
+    public FileBackedMemorySourceTap(List<Tuple> tuples, Fields fields) {
+        super(new FileBackedMemorySourceScheme(tuples, fields, "/" + UUID.randomUUID().toString()));
+    }
+}
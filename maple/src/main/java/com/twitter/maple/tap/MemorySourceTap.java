@@ -99,8 +99,12 @@ public class MemorySourceTap extends SourceTap<JobConf, RecordReader<TupleWrappe
     private final String id;
 
     public MemorySourceTap(List<Tuple> tuples, Fields fields) {
-        super(new MemorySourceScheme(tuples, fields, "/" + UUID.randomUUID().toString()));
-        this.id = ((MemorySourceScheme) this.getScheme()).getId();
+        this(new MemorySourceScheme(tuples, fields, "/" + UUID.randomUUID().toString()));
+    }
+
+    protected MemorySourceTap(MemorySourceScheme scheme) {
+        super(scheme);
+        this.id = scheme.getId();
     }
 
     @Override
@@ -0,0 +1,191 @@
+package com.twitter.maple.tap;
+
+import cascading.tuple.Tuple;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.JobConf;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes tuples in blocks of TUPLES_PER_BLOCK. Each block is written with its own
+ * serializer session, so a reader can start from the offset of any block without
+ * reading the tuples before it.
+ */
+final class TupleBlocks {
+    public static final int TUPLES_PER_BLOCK = 1024;
+
+    private TupleBlocks() {
+    }
+
+    /**
+     * Passes writes through, counting the bytes, but does not close the wrapped stream
+     */
+    private static class BlockOutputStream extends FilterOutputStream {
+        long written = 0;
+
+        BlockOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Does not close the wrapped stream, so it can be shared by each block
+     */
+    private static class BlockInputStream extends FilterInputStream {
+        BlockInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * Write the tuples to out, returning the offset of each block relative to where out was
+     * when this was called. out is not closed.
+     */
+    public static long[] write(JobConf conf, List<Tuple> tuples, OutputStream out) throws IOException {
+        Serializer<Tuple> serializer = new SerializationFactory(conf).getSerializer(Tuple.class);
+        BlockOutputStream counted = new BlockOutputStream(out);
+        long[] offsets = new long[numBlocks(tuples.size())];
+
+        for (int block = 0; block < offsets.length; block++) {
+            offsets[block] = counted.written;
+            serializer.open(counted);
+            int end = Math.min(tuples.size(), (block + 1) * TUPLES_PER_BLOCK);
+            for (int i = block * TUPLES_PER_BLOCK; i < end; i++) {
+                serializer.serialize(tuples.get(i));
+            }
+            serializer.close();
+        }
+        return offsets;
+    }
+
+    public static int numBlocks(int numTuples) {
+        return (numTuples + TUPLES_PER_BLOCK - 1) / TUPLES_PER_BLOCK;
+    }
+
+    /**
+     * A contiguous range of blocks, as byte offsets and a count of tuples
+     */
+    public static class Range {
+        public final long start;
+        public final long end;
+        public final int numTuples;
+
+        public Range(long start, long end, int numTuples) {
+            this.start = start;
+            this.end = end;
+            this.numTuples = numTuples;
+        }
+    }
+
+    /**
+     * Split the blocks into at most numSplits ranges of about the same number of blocks
+     *
+     * @param offsets the block offsets returned by write
+     * @param totalBytes the number of bytes written
+     * @param numTuples the number of tuples written
+     */
+    public static List<Range> split(long[] offsets, long totalBytes, int numTuples, int numSplits) {
+        List<Range> ranges = new ArrayList<Range>();
+        int splits = Math.max(1, Math.min(numSplits, offsets.length));
+        if (offsets.length == 0) {
+            ranges.add(new Range(0, totalBytes, 0));
+            return ranges;
+        }
+        for (int split = 0; split < splits; split++) {
+            int firstBlock = (int) ((long) split * offsets.length / splits);
+            int endBlock = (int) ((long) (split + 1) * offsets.length / splits);
+            long end = endBlock < offsets.length ? offsets[endBlock] : totalBytes;
+            int tuples = Math.min(numTuples, endBlock * TUPLES_PER_BLOCK) - firstBlock * TUPLES_PER_BLOCK;
+            ranges.add(new Range(offsets[firstBlock], end, tuples));
+        }
+        return ranges;
+    }
+
+    /**
+     * Reads numTuples tuples from a stream positioned at the start of a block
+     */
+    public static class Reader implements Closeable {
+        private final Deserializer<Tuple> deserializer;
+        private final InputStream in;
+        private final BlockInputStream blockIn;
+        private final int numTuples;
+        private final int tuplesPerBlock;
+        private int read = 0;
+
+        public Reader(JobConf conf, InputStream in, int numTuples) {
+            this(conf, in, numTuples, TUPLES_PER_BLOCK);
+        }
+
+        /**
+         * @param tuplesPerBlock the number of tuples written in each serializer session
+         */
+        public Reader(JobConf conf, InputStream in, int numTuples, int tuplesPerBlock) {
+            this.deserializer = new SerializationFactory(conf).getDeserializer(Tuple.class);
+            this.in = in;
+            this.blockIn = new BlockInputStream(in);
+            this.numTuples = numTuples;
+            this.tuplesPerBlock = tuplesPerBlock;
+        }
+
+        public int getRead() {
+            return read;
+        }
+
+        public int getNumTuples() {
+            return numTuples;
+        }
+
+        /**
+         * @return the next tuple, or null when all numTuples have been read
+         */
+        public Tuple next() throws IOException {
+            if (read >= numTuples)
+                return null;
+
+            if (read % tuplesPerBlock == 0) {
+                if (read > 0)
+                    deserializer.close();
+                deserializer.open(blockIn);
+            }
+            Tuple tuple = deserializer.deserialize(null);
+            read++;
+            return tuple;
+        }
+
+        public void close() throws IOException {
+            if (read > 0)
+                deserializer.close();
+            in.close();
+        }
+    }
+}
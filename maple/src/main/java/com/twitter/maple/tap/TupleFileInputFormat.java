@@ -0,0 +1,179 @@
+package com.twitter.maple.tap;
+
+import cascading.tuple.Tuple;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads tuples from a side file written by writeTuples, so only the path of the file goes
+ * into the JobConf. The file holds the tuples in blocks (see TupleBlocks), followed by the
+ * offset of each block and a fixed size trailer:
+ *
+ *   [blocks][long offset]* [int numTuples][int numBlocks][long indexStart]
+ *
+ * Splits are ranges of blocks, and each reader streams only its own range.
+ */
+public class TupleFileInputFormat implements InputFormat<TupleWrapper, NullWritable> {
+    private static final Logger logger = LoggerFactory.getLogger(TupleFileInputFormat.class);
+
+    public static final String PATH_PROPERTY = "memory.format.tuples.path";
+
+    private static final int TRAILER_SIZE = 4 + 4 + 8;
+
+    public static class TupleFileSplit implements InputSplit {
+        public long start;
+        public long length;
+        public int numTuples;
+
+        public TupleFileSplit() {
+        }
+
+        public TupleFileSplit(long start, long length, int numTuples) {
+            this.start = start;
+            this.length = length;
+            this.numTuples = numTuples;
+        }
+
+        public long getLength() throws IOException {
+            return length;
+        }
+
+        public String[] getLocations() throws IOException {
+            return new String[]{};
+        }
+
+        public void write(DataOutput d) throws IOException {
+            d.writeLong(start);
+            d.writeLong(length);
+            d.writeInt(numTuples);
+        }
+
+        public void readFields(DataInput di) throws IOException {
+            start = di.readLong();
+            length = di.readLong();
+            numTuples = di.readInt();
+        }
+    }
+
+    public static class TupleFileRecordReader implements RecordReader<TupleWrapper, NullWritable> {
+
+        private final TupleBlocks.Reader reader;
+
+        public TupleFileRecordReader(TupleBlocks.Reader reader) {
+            this.reader = reader;
+        }
+
+        public boolean next(TupleWrapper k, NullWritable v) throws IOException {
+            Tuple tuple = reader.next();
+            if (tuple == null)
+                return false;
+            k.tuple = tuple;
+            return true;
+        }
+
+        public TupleWrapper createKey() {
+            return new TupleWrapper();
+        }
+
+        public NullWritable createValue() {
+            return NullWritable.get();
+        }
+
+        public long getPos() throws IOException {
+            return reader.getRead();
+        }
+
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        public float getProgress() throws IOException {
+            if (reader.getNumTuples() == 0) { return 1; }
+            return (float) (reader.getRead() * 1.0 / reader.getNumTuples());
+        }
+    }
+
+    public InputSplit[] getSplits(JobConf jc, int numSplits) throws IOException {
+        Path path = getTuplesPath(jc);
+        FileSystem fs = path.getFileSystem(jc);
+        long fileLength = fs.getFileStatus(path).getLen();
+
+        FSDataInputStream in = fs.open(path);
+        try {
+            in.seek(fileLength - TRAILER_SIZE);
+            int numTuples = in.readInt();
+            int numBlocks = in.readInt();
+            long indexStart = in.readLong();
+
+            in.seek(indexStart);
+            long[] offsets = new long[numBlocks];
+            for (int i = 0; i < numBlocks; i++) {
+                offsets[i] = in.readLong();
+            }
+
+            List<TupleBlocks.Range> ranges = TupleBlocks.split(offsets, indexStart, numTuples, numSplits);
+            logger.debug("Reading {} tuples from {} in {} splits", new Object[]{numTuples, path, ranges.size()});
+            InputSplit[] splits = new InputSplit[ranges.size()];
+            for (int i = 0; i < splits.length; i++) {
+                TupleBlocks.Range range = ranges.get(i);
+                splits[i] = new TupleFileSplit(range.start, range.end - range.start, range.numTuples);
+            }
+            return splits;
+        } finally {
+            in.close();
+        }
+    }
+
+    public RecordReader<TupleWrapper, NullWritable>
+    getRecordReader(InputSplit is, JobConf jc, Reporter rprtr) throws IOException {
+        TupleFileSplit split = (TupleFileSplit) is;
+        Path path = getTuplesPath(jc);
+        FSDataInputStream in = path.getFileSystem(jc).open(path);
+        in.seek(split.start);
+        return new TupleFileRecordReader(
+            new TupleBlocks.Reader(jc, new BufferedInputStream(in), split.numTuples));
+    }
+
+    public static Path getTuplesPath(JobConf conf) {
+        String path = conf.get(PATH_PROPERTY);
+        if (path == null)
+            throw new IllegalStateException(PATH_PROPERTY + " is not set");
+        return new Path(path);
+    }
+
+    /**
+     * Write the tuples to path, overwriting any existing file, and set PATH_PROPERTY to it
+     */
+    public static void writeTuples(JobConf conf, Path path, List<Tuple> tuples) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        Path qualified = path.makeQualified(fs);
+
+        logger.debug("Writing {} tuples to {}", tuples.size(), qualified);
+        FSDataOutputStream out = fs.create(qualified, true);
+        try {
+            long[] offsets = TupleBlocks.write(conf, tuples, out);
+            long indexStart = out.getPos();
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeInt(tuples.size());
+            out.writeInt(offsets.length);
+            out.writeLong(indexStart);
+        } finally {
+            out.close();
+        }
+        conf.set(PATH_PROPERTY, qualified.toString());
+    }
+}
@@ -3,15 +3,13 @@ package com.twitter.maple.tap;
 import cascading.tuple.Tuple;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.serializer.Deserializer;
-import org.apache.hadoop.io.serializer.SerializationFactory;
-import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.mapred.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class TupleMemoryInputFormat implements InputFormat<TupleWrapper, NullWritable> {
@@ -19,15 +17,33 @@ public class TupleMemoryInputFormat implements InputFormat<TupleWrapper, NullWri
 
     public static final String ENCODING = "US-ASCII";
     public static final String TUPLES_PROPERTY = "memory.format.tuples";
+    /**
+     * Suffix of the property with the comma separated byte offset of each block
+     * of stored tuples (see TupleBlocks), followed by the total number of bytes
+     */
+    public static final String INDEX_SUFFIX = ".index";
 
     public static class TupleInputSplit implements InputSplit {
         public int numTuples;
+        // the range of the decoded bytes holding these tuples
+        public long start;
+        // or -1 for all the stored tuples
+        public long end;
 
         public TupleInputSplit() {
         }
 
+        /**
+         * A single split over all numTuples stored tuples
+         */
         public TupleInputSplit(int numTuples) {
+            this(numTuples, 0, -1);
+        }
+
+        public TupleInputSplit(int numTuples, long start, long end) {
             this.numTuples = numTuples;
+            this.start = start;
+            this.end = end;
         }
 
         public long getLength() throws IOException {
@@ -40,26 +56,30 @@ public class TupleMemoryInputFormat implements InputFormat<TupleWrapper, NullWri
 
         public void write(DataOutput d) throws IOException {
             d.writeInt(numTuples);
+            d.writeLong(start);
+            d.writeLong(end);
         }
 
         public void readFields(DataInput di) throws IOException {
             numTuples = di.readInt();
+            start = di.readLong();
+            end = di.readLong();
         }
     }
 
     public static class TupleRecordReader implements RecordReader<TupleWrapper, NullWritable> {
 
-        List<Tuple> tuples;
-        int pos = 0;
+        TupleBlocks.Reader reader;
 
-        public TupleRecordReader(List<Tuple> tuples) {
-            this.tuples = tuples;
+        public TupleRecordReader(TupleBlocks.Reader reader) {
+            this.reader = reader;
         }
 
         public boolean next(TupleWrapper k, NullWritable v) throws IOException {
-            if (pos >= tuples.size())
+            Tuple tuple = reader.next();
+            if (tuple == null)
                 return false;
-            k.tuple = tuples.get(pos++);
+            k.tuple = tuple;
             return true;
         }
 
@@ -72,27 +92,45 @@ public class TupleMemoryInputFormat implements InputFormat<TupleWrapper, NullWri
         }
 
         public long getPos() throws IOException {
-            return pos;
+            return reader.getRead();
         }
 
         public void close() throws IOException {
+            reader.close();
         }
 
         public float getProgress() throws IOException {
-            if (tuples.size() == 0) { return 1; }
-            return (float) (pos * 1.0 / tuples.size());
+            if (reader.getNumTuples() == 0) { return 1; }
+            return (float) (reader.getRead() * 1.0 / reader.getNumTuples());
         }
 
     }
 
-    public InputSplit[] getSplits(JobConf jc, int i) throws IOException {
-        List<Tuple> tuples = retrieveTuples(jc, TUPLES_PROPERTY);
-        return new InputSplit[]{new TupleInputSplit(tuples.size())};
+    public InputSplit[] getSplits(JobConf jc, int numSplits) throws IOException {
+        String s = jc.get(TUPLES_PROPERTY);
+        int size = Integer.valueOf(s.substring(0, s.indexOf(':')));
+        long[] index = retrieveIndex(jc, TUPLES_PROPERTY);
+        if (index == null) {
+            // stored without an index, so there is nowhere to split
+            return new InputSplit[]{new TupleInputSplit(size)};
+        }
+        long[] offsets = Arrays.copyOf(index, index.length - 1);
+
+        List<TupleBlocks.Range> ranges = TupleBlocks.split(offsets, index[index.length - 1], size, numSplits);
+        InputSplit[] splits = new InputSplit[ranges.size()];
+        for (int i = 0; i < splits.length; i++) {
+            TupleBlocks.Range range = ranges.get(i);
+            splits[i] = new TupleInputSplit(range.numTuples, range.start, range.end);
+        }
+        return splits;
     }
 
     public RecordReader<TupleWrapper, NullWritable>
     getRecordReader(InputSplit is, JobConf jc, Reporter rprtr) throws IOException {
-        return new TupleRecordReader(retrieveTuples(jc, TUPLES_PROPERTY));
+        TupleInputSplit split = (TupleInputSplit) is;
+        if (split.end < 0)
+            return new TupleRecordReader(readAll(jc, TUPLES_PROPERTY, split.numTuples));
+        return new TupleRecordReader(readRange(jc, TUPLES_PROPERTY, split.start, split.end, split.numTuples));
     }
 
 
@@ -114,55 +152,91 @@ public class TupleMemoryInputFormat implements InputFormat<TupleWrapper, NullWri
      }
 
     public static void storeTuples(JobConf conf, String key, List<Tuple> tuples) {
-        SerializationFactory factory = new SerializationFactory(conf);
-
         logger.debug("Storing tuples: {}", tuples);
-        Serializer<Tuple> serializer = factory.getSerializer(Tuple.class);
-
-        logger.debug("Storing tuples with serializer: {}", serializer);
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
 
+        long[] offsets;
         try {
-            serializer.open(stream);
-            for(Tuple tuple: tuples) {
-                serializer.serialize(tuple);
-            }
-            serializer.close();
+            offsets = TupleBlocks.write(conf, tuples, stream);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        StringBuilder index = new StringBuilder();
+        for (long offset : offsets) {
+            index.append(offset).append(',');
+        }
+        index.append(stream.size());
+
         String confVal = tuples.size() + ":" + encodeBytes(stream.toByteArray());
         conf.set(key, confVal);
+        conf.set(key + INDEX_SUFFIX, index.toString());
     }
 
-    public static List<Tuple> retrieveTuples(JobConf conf, String key) {
-        String s = conf.get(key);
+    /**
+     * @return the block offsets followed by the total number of bytes, or null if the
+     * tuples were stored without an index
+     */
+    public static long[] retrieveIndex(JobConf conf, String key) {
+        String s = conf.get(key + INDEX_SUFFIX);
         if (s == null)
             return null;
+        String[] pieces = s.split(",");
+        long[] index = new long[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            index[i] = Long.parseLong(pieces[i]);
+        }
+        return index;
+    }
 
-        String[] pieces = s.split(":");
-        int size = Integer.valueOf(pieces[0]);
+    /**
+     * Read numTuples tuples from bytes [start, end) of the stored tuples. start must be
+     * the offset of a block. Only the Base64 characters covering the range are decoded.
+     */
+    public static TupleBlocks.Reader readRange(JobConf conf, String key, long start, long end, int numTuples) {
+        String s = conf.get(key);
+        String encoded = s.substring(s.indexOf(':') + 1);
 
-        byte[] val;
+        // each 4 Base64 characters encode 3 bytes
+        int firstChar = (int) (start / 3) * 4;
+        int endChar = (int) Math.min(encoded.length(), ((end + 2) / 3) * 4);
+        byte[] bytes = decodeBytes(encoded.substring(firstChar, endChar));
+        int skip = (int) (start % 3);
+        int length = (int) (end - start);
 
-        if (pieces.length > 1){
-            val = decodeBytes(pieces[1]);
-        }else{
-            val = new byte[0];
-        }
+        return new TupleBlocks.Reader(conf, new ByteArrayInputStream(bytes, skip, length), numTuples);
+    }
+
+    /**
+     * Read all numTuples stored tuples, with or without an index
+     */
+    public static TupleBlocks.Reader readAll(JobConf conf, String key, int numTuples) {
+        long[] index = retrieveIndex(conf, key);
+        if (index != null)
+            return readRange(conf, key, 0, index[index.length - 1], numTuples);
+
+        String s = conf.get(key);
+        byte[] bytes = decodeBytes(s.substring(s.indexOf(':') + 1));
+        // without an index the tuples were written in a single serializer session
+        return new TupleBlocks.Reader(conf, new ByteArrayInputStream(bytes), numTuples, Integer.MAX_VALUE);
+    }
+
+    public static List<Tuple> retrieveTuples(JobConf conf, String key) {
+        String s = conf.get(key);
+        if (s == null)
+            return null;
 
-        SerializationFactory factory = new SerializationFactory(conf);
-        Deserializer<Tuple> deserializer = factory.getDeserializer(Tuple.class);
-        ByteArrayInputStream stream = new ByteArrayInputStream(val);
+        int size = Integer.valueOf(s.substring(0, s.indexOf(':')));
 
         List<Tuple> ret = new ArrayList<Tuple>();
+        TupleBlocks.Reader reader = readAll(conf, key, size);
         try {
-            deserializer.open(stream);
-            for(int i = 0; i < size; i++) {
-                ret.add(deserializer.deserialize(null));
+            Tuple tuple = reader.next();
+            while (tuple != null) {
+                ret.add(tuple);
+                tuple = reader.next();
             }
-            deserializer.close();
+            reader.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
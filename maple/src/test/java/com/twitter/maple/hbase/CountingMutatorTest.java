@@ -0,0 +1,111 @@
+package com.twitter.maple.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountingMutatorTest {
+
+  /**
+   * Only records the calls, with the write buffer size of a real mutator
+   */
+  private static class StubMutator implements BufferedMutator {
+    private final long writeBufferSize;
+    int mutates = 0;
+    int flushes = 0;
+
+    StubMutator(long writeBufferSize) {
+      this.writeBufferSize = writeBufferSize;
+    }
+
+    public TableName getName() {
+      return TableName.valueOf("stub");
+    }
+
+    public Configuration getConfiguration() {
+      return new Configuration(false);
+    }
+
+    public void mutate(Mutation mutation) {
+      mutates++;
+    }
+
+    public void mutate(List<? extends Mutation> mutations) {
+      mutates += mutations.size();
+    }
+
+    public void close() {
+    }
+
+    public void flush() {
+      flushes++;
+    }
+
+    public long getWriteBufferSize() {
+      return writeBufferSize;
+    }
+  }
+
+  private static Put put(int i) {
+    Put put = new Put(Bytes.toBytes("row" + i));
+    put.addColumn(Bytes.toBytes("f"), Bytes.toBytes("q"), Bytes.toBytes(i));
+    return put;
+  }
+
+  @Test
+  public void countsTheFlushesMutateDoesWhenTheBufferIsFull() throws IOException {
+    long putSize = put(0).heapSize();
+    // every 10th put goes over the buffer
+    StubMutator stub = new StubMutator(putSize * 10 - 1);
+    CountingMutator mutator = new CountingMutator(stub, -1);
+
+    for (int i = 0; i < 95; i++) {
+      mutator.mutate(put(i));
+    }
+    assertEquals(95, stub.mutates);
+    assertEquals(0, stub.flushes);
+    assertEquals(95, mutator.getPuts());
+    assertEquals(9, mutator.getFlushes());
+
+    mutator.flush();
+    assertEquals(1, stub.flushes);
+    assertEquals(10, mutator.getFlushes());
+  }
+
+  @Test
+  public void resetStartsTheCountsAgain() throws IOException {
+    StubMutator stub = new StubMutator(Long.MAX_VALUE);
+    CountingMutator mutator = new CountingMutator(stub, -1);
+
+    mutator.mutate(put(0));
+    mutator.mutate(put(1));
+    assertEquals(2, mutator.getPuts());
+    assertEquals(0, mutator.getFlushes());
+
+    mutator.reset();
+    mutator.mutate(put(2));
+    mutator.flush();
+    assertEquals(1, mutator.getPuts());
+    assertEquals(1, mutator.getFlushes());
+  }
+
+  @Test
+  public void flushesWhenTheIntervalHasPassed() throws IOException, InterruptedException {
+    StubMutator stub = new StubMutator(Long.MAX_VALUE);
+    CountingMutator mutator = new CountingMutator(stub, 1);
+
+    Thread.sleep(5);
+    mutator.mutate(put(0));
+    assertEquals(1, stub.flushes);
+    assertEquals(1, mutator.getFlushes());
+  }
+}
@@ -0,0 +1,71 @@
+package com.twitter.maple.hbase.mapred;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.mapred.TableSplit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapred.InputSplit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TableInputFormatTest {
+  private static final byte[] NONE = new byte[0];
+
+  private static TableSplit region(String start, String end) {
+    return new TableSplit(TableName.valueOf("table"), Bytes.toBytes(start), Bytes.toBytes(end), "host");
+  }
+
+  // regions [, b) [b, d) [d, f) [f, )
+  private static InputSplit[] regions() {
+    return new InputSplit[]{region("", "b"), region("b", "d"), region("d", "f"), region("f", "")};
+  }
+
+  private static void assertRange(InputSplit split, String start, String end) {
+    TableSplit tableSplit = (TableSplit) split;
+    assertArrayEquals(Bytes.toBytes(start), tableSplit.getStartRow());
+    assertArrayEquals(Bytes.toBytes(end), tableSplit.getEndRow());
+  }
+
+  @Test
+  public void keepsEveryRegionWithoutStartOrStopRow() {
+    InputSplit[] splits = regions();
+    assertEquals(4, TableInputFormat.clip(splits, NONE, NONE).length);
+  }
+
+  @Test
+  public void dropsAndClipsRegionsOutsideTheRange() {
+    InputSplit[] clipped = TableInputFormat.clip(regions(), Bytes.toBytes("c"), Bytes.toBytes("e"));
+    assertEquals(2, clipped.length);
+    assertRange(clipped[0], "c", "d");
+    assertRange(clipped[1], "d", "e");
+  }
+
+  @Test
+  public void clipsTheFirstAndLastRegions() {
+    InputSplit[] clipped = TableInputFormat.clip(regions(), Bytes.toBytes("a"), Bytes.toBytes("g"));
+    assertEquals(4, clipped.length);
+    assertRange(clipped[0], "a", "b");
+    assertRange(clipped[3], "f", "g");
+  }
+
+  @Test
+  public void onlyClipsTheSideThatIsSet() {
+    InputSplit[] fromC = TableInputFormat.clip(regions(), Bytes.toBytes("c"), NONE);
+    assertEquals(3, fromC.length);
+    assertRange(fromC[0], "c", "d");
+    assertRange(fromC[2], "f", "");
+
+    InputSplit[] untilC = TableInputFormat.clip(regions(), NONE, Bytes.toBytes("c"));
+    assertEquals(2, untilC.length);
+    assertRange(untilC[0], "", "b");
+    assertRange(untilC[1], "b", "c");
+  }
+
+  @Test
+  public void stopRowOnARegionBoundaryDropsTheNextRegion() {
+    InputSplit[] clipped = TableInputFormat.clip(regions(), NONE, Bytes.toBytes("d"));
+    assertEquals(2, clipped.length);
+    assertRange(clipped[1], "b", "d");
+  }
+}
@@ -0,0 +1,184 @@
+package com.twitter.maple.hbase.mapred;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TableScanRecordReaderTest {
+  private static final byte[] NONE = new byte[0];
+
+  private static float progress(String start, String stop, String row) {
+    return TableScanRecordReader.progress(Bytes.toBytes(start), Bytes.toBytes(stop), Bytes.toBytes(row));
+  }
+
+  @Test
+  public void progressGoesByTheKeysAfterTheCommonPrefix() {
+    assertEquals(0.0f, progress("user-a", "user-c", "user-a"), 0.001f);
+    assertEquals(0.5f, progress("user-a", "user-c", "user-b"), 0.001f);
+    assertEquals(0.25f, progress("user-0", "user-8", "user-2"), 0.001f);
+  }
+
+  @Test
+  public void progressStaysBetweenZeroAndOne() {
+    assertEquals(1.0f, progress("a", "c", "d"), 0.0f);
+    assertEquals(0.0f, progress("b", "c", "a"), 0.0f);
+  }
+
+  @Test
+  public void emptyRowsAreTheEndsOfTheTable() {
+    assertEquals(0.5f, TableScanRecordReader.progress(NONE, NONE, new byte[]{(byte) 0x80}), 0.001f);
+    assertEquals(0.5f, TableScanRecordReader.progress(new byte[]{(byte) 0x80}, NONE, new byte[]{(byte) 0xc0}), 0.001f);
+  }
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  /**
+   * The given number of cells of the row key, in qualifier order
+   */
+  private static List<Cell> row(String key, int cells) {
+    List<Cell> row = new ArrayList<Cell>();
+    for (int i = 0; i < cells; i++) {
+      row.add(new KeyValue(Bytes.toBytes(key), FAMILY, Bytes.toBytes("q" + i), Bytes.toBytes(key + i)));
+    }
+    return row;
+  }
+
+  private static final List<List<Cell>> ROWS = Arrays.asList(row("a", 3), row("b", 5), row("c", 1), row("d", 2));
+
+  /**
+   * Opens scanners over ROWS in Results of at most the scan's batch of cells. The first
+   * scanner fails on call number failAt to next, if it is not negative.
+   */
+  private static class StubScanners implements TableScanRecordReader.Scanners {
+    private final int failAt;
+    int opened = 0;
+
+    StubScanners(int failAt) {
+      this.failAt = failAt;
+    }
+
+    public ResultScanner open(Scan scan) {
+      final List<Result> results = new ArrayList<Result>();
+      int batch = scan.getBatch() > 0 ? scan.getBatch() : Integer.MAX_VALUE;
+      for (List<Cell> row : ROWS) {
+        if (Bytes.compareTo(CellUtil.cloneRow(row.get(0)), scan.getStartRow()) < 0) {
+          continue;
+        }
+        for (int i = 0; i < row.size(); i += batch) {
+          results.add(Result.create(row.subList(i, Math.min(row.size(), i + batch))));
+        }
+      }
+      final int fail = opened == 0 ? failAt : -1;
+      opened++;
+      return new AbstractClientScanner() {
+        int calls = 0;
+
+        public Result next() throws IOException {
+          if (calls++ == fail) {
+            throw new IOException("scanner timed out");
+          }
+          return results.isEmpty() ? null : results.remove(0);
+        }
+
+        public boolean renewLease() {
+          return true;
+        }
+
+        public void close() {
+        }
+      };
+    }
+  }
+
+  private static List<Result> readAll(StubScanners scanners, int batch) throws IOException {
+    Scan scan = new Scan();
+    scan.setBatch(batch);
+    TableScanRecordReader reader = new TableScanRecordReader(scanners, scan);
+    List<Result> rows = new ArrayList<Result>();
+    ImmutableBytesWritable key = reader.createKey();
+    Result value = reader.createValue();
+    while (reader.next(key, value)) {
+      assertEquals(Bytes.toString(value.getRow()), Bytes.toString(key.copyBytes()));
+      Result copy = new Result();
+      copy.copyFrom(value);
+      rows.add(copy);
+    }
+    assertEquals(1.0f, reader.getProgress(), 0.0f);
+    reader.close();
+    return rows;
+  }
+
+  private static void assertAllRows(List<Result> rows) {
+    assertEquals(ROWS.size(), rows.size());
+    for (int i = 0; i < ROWS.size(); i++) {
+      List<Cell> expected = ROWS.get(i);
+      Cell[] cells = rows.get(i).rawCells();
+      assertEquals(expected.size(), cells.length);
+      for (int j = 0; j < cells.length; j++) {
+        assertEquals(0, KeyValue.COMPARATOR.compare(expected.get(j), cells[j]));
+        assertEquals(Bytes.toString(CellUtil.cloneValue(expected.get(j))), Bytes.toString(CellUtil.cloneValue(cells[j])));
+      }
+    }
+  }
+
+  @Test
+  public void combinesTheBatchesOfEachRow() throws IOException {
+    for (int batch : new int[]{0, 1, 2, 3, 10}) {
+      StubScanners scanners = new StubScanners(-1);
+      assertAllRows(readAll(scanners, batch));
+      assertEquals(1, scanners.opened);
+    }
+  }
+
+  @Test
+  public void restartsAfterTheLastRowBetweenRows() throws IOException {
+    // batch 2: a a | b b b | c | d, failing when reading the first result of c
+    StubScanners scanners = new StubScanners(5);
+    assertAllRows(readAll(scanners, 2));
+    assertEquals(2, scanners.opened);
+
+    // without batches, failing when reading c
+    scanners = new StubScanners(2);
+    assertAllRows(readAll(scanners, 0));
+    assertEquals(2, scanners.opened);
+  }
+
+  @Test
+  public void rereadsARowThatWasInterrupted() throws IOException {
+    // every call after a was read up to the first result of c: with batches of 1 cell
+    // b is read by calls 4 to 8, and with batches of 2 cells by calls 3 to 5
+    int[][] batchAndCalls = {{1, 4, 9}, {2, 3, 6}};
+    for (int[] batchAndCall : batchAndCalls) {
+      for (int failAt = batchAndCall[1]; failAt < batchAndCall[2]; failAt++) {
+        StubScanners scanners = new StubScanners(failAt);
+        assertAllRows(readAll(scanners, batchAndCall[0]));
+        assertEquals(2, scanners.opened);
+      }
+    }
+  }
+
+  @Test
+  public void failsIfNoRowWasRead() throws IOException {
+    try {
+      readAll(new StubScanners(0), 2);
+      fail("expected the scanner to fail");
+    } catch (IOException e) {
+      assertEquals("scanner timed out", e.getMessage());
+    }
+  }
+}
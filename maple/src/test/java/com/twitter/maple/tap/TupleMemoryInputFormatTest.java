@@ -0,0 +1,129 @@
+package com.twitter.maple.tap;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.hadoop.TupleSerialization;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TupleMemoryInputFormatTest {
+    private static final String KEY = TupleMemoryInputFormat.TUPLES_PROPERTY;
+
+    private static JobConf conf() {
+        JobConf conf = new JobConf(false);
+        conf.set("io.serializations", TupleSerialization.class.getName() + ","
+            + "org.apache.hadoop.io.serializer.WritableSerialization");
+        return conf;
+    }
+
+    /**
+     * n tuples, the first one padded with padding characters
+     */
+    private static List<Tuple> tuples(int n, int padding) {
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < n; i++) {
+            String value = "value" + i;
+            if (i == 0) {
+                for (int j = 0; j < padding; j++) {
+                    value += "-";
+                }
+            }
+            tuples.add(new Tuple(i, value));
+        }
+        return tuples;
+    }
+
+    private static List<Tuple> read(TupleMemoryInputFormat format, JobConf conf, InputSplit split)
+        throws IOException {
+        List<Tuple> read = new ArrayList<Tuple>();
+        RecordReader<TupleWrapper, NullWritable> reader = format.getRecordReader(split, conf, null);
+        TupleWrapper key = reader.createKey();
+        while (reader.next(key, reader.createValue())) {
+            read.add(key.tuple);
+        }
+        reader.close();
+        return read;
+    }
+
+    @Test
+    public void testSplitsReadEachTupleOnceInOrder() throws IOException {
+        int blocks = 6;
+        List<Tuple> tuples = null;
+        JobConf conf = null;
+        long[] index = null;
+        // each byte of padding moves every later block by a byte, so one of these
+        // puts the second block at an offset that is not a multiple of 3
+        for (int padding = 0; padding < 3; padding++) {
+            tuples = tuples((blocks - 1) * TupleBlocks.TUPLES_PER_BLOCK + 17, padding);
+            conf = conf();
+            TupleMemoryInputFormat.storeTuples(conf, KEY, tuples);
+            index = TupleMemoryInputFormat.retrieveIndex(conf, KEY);
+            if (index[1] % 3 != 0)
+                break;
+        }
+        assertEquals(blocks + 1, index.length);
+        assertTrue(index[1] % 3 != 0);
+
+        TupleMemoryInputFormat format = new TupleMemoryInputFormat();
+        for (int k : new int[]{1, 2, 3, 4, 6, 10}) {
+            InputSplit[] splits = format.getSplits(conf, k);
+            assertEquals(Math.min(k, blocks), splits.length);
+
+            List<Tuple> read = new ArrayList<Tuple>();
+            long length = 0;
+            for (InputSplit split : splits) {
+                List<Tuple> splitTuples = read(format, conf, split);
+                assertEquals(split.getLength(), splitTuples.size());
+                length += split.getLength();
+                read.addAll(splitTuples);
+            }
+            assertEquals(tuples.size(), length);
+            assertEquals("splits: " + k, tuples, read);
+        }
+        assertEquals(tuples, TupleMemoryInputFormat.retrieveTuples(conf, KEY));
+    }
+
+    @Test
+    public void testNoTuples() throws IOException {
+        JobConf conf = conf();
+        TupleMemoryInputFormat.storeTuples(conf, KEY, new ArrayList<Tuple>());
+
+        TupleMemoryInputFormat format = new TupleMemoryInputFormat();
+        InputSplit[] splits = format.getSplits(conf, 4);
+        assertEquals(1, splits.length);
+        assertEquals(0, read(format, conf, splits[0]).size());
+    }
+
+    @Test
+    public void testTuplesStoredWithoutAnIndexAreOneSplit() throws IOException {
+        // as stored before there were blocks: a single serializer session and no index
+        List<Tuple> tuples = tuples(3 * TupleBlocks.TUPLES_PER_BLOCK, 0);
+        JobConf conf = conf();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Serializer<Tuple> serializer = new SerializationFactory(conf).getSerializer(Tuple.class);
+        serializer.open(stream);
+        for (Tuple tuple : tuples) {
+            serializer.serialize(tuple);
+        }
+        serializer.close();
+        conf.set(KEY, tuples.size() + ":" + TupleMemoryInputFormat.encodeBytes(stream.toByteArray()));
+
+        TupleMemoryInputFormat format = new TupleMemoryInputFormat();
+        InputSplit[] splits = format.getSplits(conf, 4);
+        assertEquals(1, splits.length);
+        assertEquals(tuples, read(format, conf, splits[0]));
+        assertEquals(tuples, TupleMemoryInputFormat.retrieveTuples(conf, KEY));
+    }
+}
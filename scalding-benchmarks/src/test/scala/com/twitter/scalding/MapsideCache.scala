@@ -0,0 +1,52 @@
+package com.twitter.scalding.benchmarks
+
+import cascading.flow.FlowProcess
+import com.twitter.algebird.SummingWithHitsCache
+import com.twitter.scalding.{ OpenHashMapsideCache, SummingMapsideCache, SummingOpenHashTable }
+import org.scalameter.api._
+
+object MapsideCacheBenchmark extends PerformanceTest.Quickbenchmark {
+  val cacheSize = 100000
+
+  val puts = Gen.range("puts")(1000000, 5000000, 1000000)
+
+  // keys with a skewed distribution, as sumByLocalKeys sees on hot mappers
+  def keys(n: Int, distinct: Int): Array[Long] = {
+    val rng = new java.util.Random(42)
+    Array.fill(n) { (distinct * math.pow(rng.nextDouble, 3.0)).toLong }
+  }
+
+  val fewKeys = puts.map(keys(_, cacheSize / 10))
+  val manyKeys = puts.map(keys(_, cacheSize * 10))
+
+  // This is here to make sure the compiler cannot optimize away the sums
+  var effectLong: Long = 0L
+
+  def run(ks: Array[Long], cache: com.twitter.scalding.MapsideCache[Long, Long]): Unit = {
+    var i = 0
+    while (i < ks.length) {
+      val evicted = cache.put(ks(i), 1L)
+      if (evicted.isDefined) effectLong ^= evicted.get.size
+      i += 1
+    }
+    effectLong ^= cache.flush.map(_.size).getOrElse(0)
+  }
+
+  def summing = new SummingMapsideCache[Long, Long](FlowProcess.NULL, new SummingWithHitsCache(cacheSize))
+  def openHash = new OpenHashMapsideCache[Long, Long](FlowProcess.NULL, SummingOpenHashTable[Long, Long](cacheSize))
+
+  performance of "MapsideCache" in {
+    measure method "SummingMapsideCache.put, keys fit in the cache" in {
+      using(fewKeys) in { ks => run(ks, summing) }
+    }
+    measure method "OpenHashMapsideCache.put, keys fit in the cache" in {
+      using(fewKeys) in { ks => run(ks, openHash) }
+    }
+    measure method "SummingMapsideCache.put, with evictions" in {
+      using(manyKeys) in { ks => run(ks, summing) }
+    }
+    measure method "OpenHashMapsideCache.put, with evictions" in {
+      using(manyKeys) in { ks => run(ks, openHash) }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.twitter.scalding.benchmarks
+
+import com.twitter.scalding.typed.memory_backend.Op
+import org.scalameter.api._
+import scala.concurrent.{ Await, ExecutionContext }
+import scala.concurrent.duration.Duration
+
+object MemoryBackendBenchmark extends PerformanceTest.Quickbenchmark {
+  implicit val ec: ExecutionContext = ExecutionContext.global
+
+  val sizes = Gen.range("size")(300000, 1500000, 300000)
+
+  val keyValues: Gen[IndexedSeq[(Int, Long)]] =
+    sizes.map { s =>
+      val rng = new scala.util.Random("scalding".hashCode)
+      (0 until s).map { _ => (rng.nextInt(s / 10), rng.nextLong) }
+    }
+
+  val cpus = Runtime.getRuntime.availableProcessors
+
+  def sumReduce(kvs: IndexedSeq[(Int, Long)], partitions: Int): Int = {
+    val op = Op.Reduce[Int, Long, Long](Op.source(kvs), { (k, vs) => Iterator.single(vs.sum) }, Some(Ordering.Long), partitions)
+    Await.result(op.result, Duration.Inf).size
+  }
+
+  // This is here to make sure the compiler cannot optimize away reads
+  var effectInt: Int = 0
+
+  performance of "MemoryBackend" in {
+    measure method "Op.Reduce single threaded" in {
+      using(keyValues) in { kvs =>
+        effectInt ^= sumReduce(kvs, 1)
+      }
+    }
+    measure method "Op.Reduce partitioned" in {
+      using(keyValues) in { kvs =>
+        effectInt ^= sumReduce(kvs, cpus)
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.twitter.scalding.benchmarks
+
+import com.twitter.scalding.parquet.scrooge.ScroogeStructConverter
+import com.twitter.scalding.parquet.scrooge.thrift_scala.test.{ MapNestMap, TestPersonWithAllInformation, TestUnion }
+import org.apache.parquet.thrift.ThriftSchemaConverter
+import org.scalameter.api._
+
+object ScroogeSchemaBenchmark extends PerformanceTest.Quickbenchmark {
+  // how many times each reader would convert the schema, as a job with this many splits does
+  val conversions = Gen.range("conversions")(1000, 5000, 1000)
+
+  val classes: Seq[Class[_]] =
+    Seq(classOf[TestPersonWithAllInformation], classOf[MapNestMap], classOf[TestUnion])
+
+  // This is here to make sure the compiler cannot optimize away the conversions
+  var effectInt: Int = 0
+
+  performance of "ScroogeStructConverter" in {
+    measure method "convert, uncached" in {
+      using(conversions) in { n =>
+        (0 until n).foreach { i =>
+          ScroogeStructConverter.clearCache()
+          val struct = new ScroogeStructConverter().convert(classes(i % classes.size))
+          effectInt ^= struct.getChildren.size
+        }
+      }
+    }
+    measure method "convert, cached" in {
+      using(conversions) in { n =>
+        (0 until n).foreach { i =>
+          val struct = new ScroogeStructConverter().convert(classes(i % classes.size))
+          effectInt ^= struct.getChildren.size
+        }
+      }
+    }
+    measure method "convert to a MessageType, cached struct" in {
+      using(conversions) in { n =>
+        (0 until n).foreach { i =>
+          val struct = new ScroogeStructConverter().convert(classes(i % classes.size))
+          effectInt ^= new ThriftSchemaConverter().convert(struct).getFieldCount
+        }
+      }
+    }
+  }
+}
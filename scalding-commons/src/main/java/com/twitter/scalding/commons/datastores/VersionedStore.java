@@ -5,36 +5,164 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.security.AccessControlException;
 
+import com.twitter.scalding.tap.FileMetadataCache;
+import com.twitter.scalding.tap.FileMetadataCaches;
+
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class VersionedStore {
     public static final String FINISHED_VERSION_SUFFIX = ".version";
     public static final String HADOOP_SUCCESS_FLAG = "_SUCCESS";
 
+    /**
+     * Lists the finished versions, most recent first, one per line. Like the
+     * success flag it starts with "_" so it is never mistaken for a version.
+     */
+    public static final String MANIFEST_NAME = "_versions.manifest";
+
+    /**
+     * Set to true to keep a manifest of the finished versions. Lookups then cost a
+     * single read instead of a stat of every version. The manifest is only correct
+     * if every version is finished or deleted through a VersionedStore, and there is
+     * one writer at a time. If the manifest is missing we fall back to listing the root.
+     */
+    public static final String MANIFEST_ENABLED = "scalding.versionedstore.manifest";
+
+    /**
+     * How long, in milliseconds, the versions read from a manifest are cached in this
+     * process. Changes made through a VersionedStore in this process are seen immediately.
+     */
+    public static final String MANIFEST_CACHE_TTL = "scalding.versionedstore.manifest.cache.ttl.ms";
+    public static final long DEFAULT_MANIFEST_CACHE_TTL = 30000L;
+
+    /**
+     * The number of filesystem calls we make at once when listing and deleting versions
+     */
+    public static final String PARALLELISM = "scalding.versionedstore.parallelism";
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private static final PathFilter VISIBLE = new PathFilter() {
+        public boolean accept(Path path) {
+            return !path.getName().startsWith("_");
+        }
+    };
+
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "versioned-store");
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /**
+     * Runs cleanupAsync one at a time. The thread is not a daemon so the JVM waits for a
+     * cleanup to finish, and it exits when idle so it does not keep the JVM alive otherwise.
+     */
+    private static final ThreadPoolExecutor CLEANUP_EXECUTOR;
+    static {
+        CLEANUP_EXECUTOR = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "versioned-store-cleanup");
+                }
+            });
+        CLEANUP_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final ConcurrentMap<String, CachedVersions> MANIFEST_CACHE =
+        new ConcurrentHashMap<String, CachedVersions>();
+
+    private static final class CachedVersions {
+        final List<Long> versions;
+        final long expiresAt;
+
+        CachedVersions(List<Long> versions, long expiresAt) {
+            this.versions = versions;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     private String root;
     private FileSystem fs;
+    private Configuration conf;
+    private FileMetadataCache metadata = FileMetadataCaches.NONE;
+    private boolean useManifest;
+    private long manifestCacheTtl;
+    private int parallelism = DEFAULT_PARALLELISM;
 
     public VersionedStore(String path) throws IOException {
       this(Utils.getFS(path), path);
     }
 
     public VersionedStore(FileSystem fs, String path) throws IOException {
+      this(fs, path, fs.getConf());
+    }
+
+    /**
+     * The settings, such as MANIFEST_ENABLED and PARALLELISM, are read from conf
+     */
+    public VersionedStore(FileSystem fs, String path, Configuration conf) throws IOException {
       this.fs = fs;
       root = path;
+      configure(conf);
       mkdirs(root);
     }
 
     public VersionedStore(Path path, Configuration conf) throws IOException {
         this.fs = path.getFileSystem(conf);
         this.root = path.toString();
+        configure(conf);
+    }
+
+    private void configure(Configuration conf) {
+        this.conf = conf;
+        this.metadata = FileMetadataCaches.forConf(conf);
+        if (conf != null) {
+            useManifest = conf.getBoolean(MANIFEST_ENABLED, false);
+            manifestCacheTtl = conf.getLong(MANIFEST_CACHE_TTL, DEFAULT_MANIFEST_CACHE_TTL);
+            parallelism = conf.getInt(PARALLELISM, DEFAULT_PARALLELISM);
+        } else {
+            manifestCacheTtl = DEFAULT_MANIFEST_CACHE_TTL;
+        }
+    }
+
+    /**
+     * Overrides MANIFEST_ENABLED from the Configuration
+     */
+    public void setUseManifest(boolean useManifest) {
+        this.useManifest = useManifest;
+    }
+
+    public boolean getUseManifest() {
+        return useManifest;
     }
 
     public FileSystem getFileSystem() {
@@ -99,6 +227,7 @@ public class VersionedStore {
         else {
             //in case there's an incomplete version there, delete it
             fs.delete(new Path(versionPath(version)), true);
+            invalidateMetadata();
             return ret;
         }
     }
@@ -108,10 +237,88 @@ public class VersionedStore {
     }
 
     public void deleteVersion(long version) throws IOException {
+        deleteVersions(Collections.singletonList(version));
+    }
+
+    /**
+     * Deletes the success indicators of all the versions, in parallel, before
+     * deleting any of their data
+     */
+    public void deleteVersions(List<Long> toDelete) throws IOException {
+        if (toDelete.isEmpty()) return;
+        if (useManifest) {
+            List<Long> versions = new ArrayList<Long>(readOrListVersions());
+            versions.removeAll(toDelete);
+            writeManifest(versions);
+        }
+        List<Callable<Boolean>> flags = new ArrayList<Callable<Boolean>>();
+        List<Callable<Boolean>> data = new ArrayList<Callable<Boolean>>();
+        for (Long v : toDelete) {
+            flags.add(delete(new Path(tokenPath(v)), false));
+            flags.add(delete(new Path(successFlagPath(v)), false));
+            data.add(delete(new Path(versionPath(v)), true));
+        }
         // Be sure to delete success indicators before data
-        fs.delete(new Path(tokenPath(version)), false);
-        fs.delete(new Path(successFlagPath(version)), false);
-        fs.delete(new Path(versionPath(version)), true);
+        try {
+            runAll(flags);
+            runAll(data);
+        } finally {
+            invalidateMetadata();
+        }
+    }
+
+    /**
+     * Forget the cached listing of the root after we change it
+     */
+    private void invalidateMetadata() {
+        FileMetadataCaches.invalidate(conf, fs, new Path(root));
+    }
+
+    private Callable<Boolean> delete(final Path path, final boolean recursive) {
+        return new Callable<Boolean>() {
+            public Boolean call() throws IOException {
+                return fs.delete(path, recursive);
+            }
+        };
+    }
+
+    /**
+     * Run the filesystem calls, at most PARALLELISM at a time, and return their results in order
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() <= 1 || parallelism <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (IOException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), DAEMON_THREADS);
+        try {
+            for (Future<T> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for " + root);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     public void succeedVersion(String path) throws IOException {
@@ -120,6 +327,15 @@ public class VersionedStore {
 
     public void succeedVersion(long version) throws IOException {
         createNewFile(tokenPath(version));
+        invalidateMetadata();
+        if (useManifest) {
+            // the listing we fall back to without a manifest may already include this version
+            List<Long> versions = new ArrayList<Long>(readOrListVersions());
+            if (!versions.contains(version)) {
+                versions.add(version);
+            }
+            writeManifest(versions);
+        }
     }
 
     public void cleanup() throws IOException {
@@ -132,9 +348,21 @@ public class VersionedStore {
         final List<Long> versions = getAllVersions();
         int numExisting = versions.size(); 
         if (numExisting <= versionsToKeep) return;
-        for (Long v : versions.subList(versionsToKeep, numExisting)) {
-            deleteVersion(v);
-        }
+        deleteVersions(versions.subList(versionsToKeep, numExisting));
+    }
+
+    /**
+     * Run cleanup(versionsToKeep) on a background thread, for instance once a job has
+     * committed its new version. Cleanups run one at a time, in the order they were
+     * requested. If one fails, the versions it did not delete are removed by the next.
+     */
+    public Future<?> cleanupAsync(final int versionsToKeep) {
+        return CLEANUP_EXECUTOR.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                cleanup(versionsToKeep);
+                return null;
+            }
+        });
     }
 
     /**
@@ -145,51 +373,170 @@ public class VersionedStore {
     }
 
     public List<Long> getAllVersions(boolean skipVersionSuffix) throws IOException {
+        if (useManifest && !skipVersionSuffix) {
+            CachedVersions cached = MANIFEST_CACHE.get(manifestKey());
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                return new ArrayList<Long>(cached.versions);
+            }
+            return new ArrayList<Long>(readOrListVersions());
+        }
+        return listVersions(skipVersionSuffix);
+    }
+
+    /**
+     * Replace the manifest with the versions found by listing the root
+     */
+    public void rebuildManifest() throws IOException {
+        writeManifest(listVersions(false));
+    }
+
+    /**
+     * One listing of the root tells us which versions have a token and a folder.
+     * Only the folders without a token need another call, to look for a success
+     * flag, and those calls are made in parallel.
+     */
+    private List<Long> listVersions(boolean skipVersionSuffix) throws IOException {
+        FileStatus[] children;
+        try {
+            children = metadata.listStatus(getFileSystem(), new Path(getRoot()));
+        } catch (FileNotFoundException e) {
+            return Collections.emptyList();
+        }
+        if (children == null) {
+            return Collections.emptyList();
+        }
 
-        Path rootPath = new Path(getRoot());
-        if (getFileSystem().exists(rootPath)) {
-            // we use a set so we can automatically de-dupe folders that
-            // have both version suffix and success flag below
-            Set<Long> ret = new HashSet<Long>();
-            for(Path p: listDir(getRoot())) {
-                if (skipVersionSuffix) {
-                    // backwards compatible if version suffix does not exist
-                    if(Utils.isLong(p.getName())) {
-                        ret.add(Long.valueOf(p.getName()));
-                    }
-                } else {
-                    if (!p.getName().startsWith("_")) {
-                        try {
-                            if (p.getName().endsWith(FINISHED_VERSION_SUFFIX)) {
-                                ret.add(validateAndGetVersion(p.toString()));
-                            } else {
-                                final FileStatus status = getFileSystem().getFileStatus(p);
-                                if (status != null && status.isDir() && getFileSystem().exists(new Path(p, HADOOP_SUCCESS_FLAG))) {
-                                    // FORCE the _SUCCESS flag into the versioned store directory.
-                                    ret.add(validateAndGetVersion(p.toString() + FINISHED_VERSION_SUFFIX));
-                                }
-                            }
-                        } catch (RuntimeException e) {
-                            // Skip this version
-                            continue;
-                        }
-                    }
+        // we use a set so we can automatically de-dupe folders that
+        // have both version suffix and success flag below
+        Set<Long> ret = new HashSet<Long>();
+        Set<Long> tokens = new HashSet<Long>();
+        Set<Long> folders = new HashSet<Long>();
+        for (FileStatus status : children) {
+            String name = status.getPath().getName();
+            if (!VISIBLE.accept(status.getPath())) {
+                continue;
+            } else if (skipVersionSuffix) {
+                // backwards compatible if version suffix does not exist
+                if (Utils.isLong(name)) {
+                    ret.add(Long.valueOf(name));
                 }
+            } else if (name.endsWith(FINISHED_VERSION_SUFFIX)) {
+                Long v = parseVersion(name);
+                if (v != null) tokens.add(v);
+            } else if (status.isDir() && Utils.isLong(name)) {
+                folders.add(Long.valueOf(name));
             }
-            List<Long> retList = new ArrayList<Long>(ret);
-            // now sort the versions most recent first per the api contract
-            Collections.sort(retList);
-            Collections.reverse(retList);
-            return retList;
-        } else {
-            return Collections.emptyList();
         }
+
+        // a token only counts if its versioned folder exists
+        for (Long v : tokens) {
+            if (folders.contains(v)) ret.add(v);
+        }
+        final List<Long> untokened = new ArrayList<Long>(folders);
+        untokened.removeAll(tokens);
+        List<Callable<Boolean>> checks = new ArrayList<Callable<Boolean>>(untokened.size());
+        for (Long v : untokened) {
+            final Path flag = new Path(successFlagPath(v));
+            checks.add(new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                    return metadata.exists(getFileSystem(), flag);
+                }
+            });
+        }
+        List<Boolean> succeeded = runAll(checks);
+        for (int i = 0; i < untokened.size(); i++) {
+            // FORCE the _SUCCESS flag into the versioned store directory.
+            if (succeeded.get(i)) ret.add(untokened.get(i));
+        }
+
+        List<Long> retList = new ArrayList<Long>(ret);
+        // now sort the versions most recent first per the api contract
+        Collections.sort(retList);
+        Collections.reverse(retList);
+        return retList;
     }
 
     public boolean hasVersion(long version) throws IOException {
         return getAllVersions().contains(version);
     }
 
+    private Path manifestPath() {
+        return new Path(root, MANIFEST_NAME);
+    }
+
+    private String manifestKey() {
+        return normalizePath(root).toString();
+    }
+
+    /**
+     * The filesystem we use for the manifest, skipping checksum files on the local filesystem
+     */
+    private FileSystem manifestFileSystem() {
+        return (fs instanceof LocalFileSystem) ? ((LocalFileSystem) fs).getRawFileSystem() : fs;
+    }
+
+    private List<Long> cacheVersions(List<Long> versions) {
+        List<Long> sorted = new ArrayList<Long>(versions);
+        Collections.sort(sorted);
+        Collections.reverse(sorted);
+        List<Long> result = Collections.unmodifiableList(sorted);
+        MANIFEST_CACHE.put(manifestKey(), new CachedVersions(result, System.currentTimeMillis() + manifestCacheTtl));
+        return result;
+    }
+
+    /**
+     * Read the manifest, or list the root if there is no manifest yet
+     */
+    private List<Long> readOrListVersions() throws IOException {
+        List<Long> versions = new ArrayList<Long>();
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(manifestFileSystem().open(manifestPath()), "UTF-8"));
+        } catch (FileNotFoundException e) {
+            return cacheVersions(listVersions(false));
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0) {
+                    versions.add(Long.valueOf(line));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return cacheVersions(versions);
+    }
+
+    /**
+     * Write the manifest to a temporary file and rename it into place, so readers
+     * see either the old or the new manifest, or none and fall back to listing.
+     */
+    private void writeManifest(List<Long> versions) throws IOException {
+        List<Long> sorted = cacheVersions(versions);
+        FileSystem mfs = manifestFileSystem();
+        Path manifest = manifestPath();
+        Path tmp = new Path(root, MANIFEST_NAME + "." + UUID.randomUUID() + ".tmp");
+
+        Writer writer = new OutputStreamWriter(mfs.create(tmp, true), "UTF-8");
+        try {
+            for (Long v : sorted) {
+                writer.write(v.toString());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        // HDFS will not rename over an existing file
+        mfs.delete(manifest, false);
+        if (!mfs.rename(tmp, manifest)) {
+            mfs.delete(tmp, false);
+            throw new IOException("could not rename " + tmp + " to " + manifest);
+        }
+    }
+
     private String tokenPath(long version) {
         return new Path(root, "" + version + FINISHED_VERSION_SUFFIX).toString();
     }
@@ -254,18 +601,4 @@ public class VersionedStore {
             }
         }
     }
-
-    private List<Path> listDir(String dir) throws IOException {
-        List<Path> ret = new ArrayList<Path>();
-        if(fs instanceof LocalFileSystem) {
-            for(File f: new File(dir).listFiles()) {
-                ret.add(new Path(f.getAbsolutePath()));
-            }
-        } else {
-            for(FileStatus status: fs.listStatus(new Path(dir))) {
-                ret.add(status.getPath());
-            }
-        }
-        return ret;
-    }
 }
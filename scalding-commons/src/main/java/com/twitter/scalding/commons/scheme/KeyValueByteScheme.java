@@ -1,6 +1,7 @@
 package com.twitter.scalding.commons.scheme;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.hadoop.io.BytesWritable;
@@ -18,22 +19,81 @@ import cascading.tuple.TupleEntry;
 import com.twitter.elephantbird.cascading2.scheme.CombinedWritableSequenceFile;
 
 /**
+ * Reads and writes pairs of byte arrays in a SequenceFile of BytesWritables.
  *
+ * With sourceByteBuffers set, the key and value are sourced as ByteBuffers over the bytes
+ * of the reader's BytesWritables instead of as copies. The reader reuses those bytes, and
+ * we reuse the ByteBuffers, so they are only valid until the next record; anything that
+ * keeps them must copy them first.
+ *
+ * The sink accepts byte arrays or ByteBuffers, and writes their bytes without copying them
+ * when it can.
  */
 public class KeyValueByteScheme extends CombinedWritableSequenceFile {
+  private final boolean sourceByteBuffers;
+
   public KeyValueByteScheme(Fields fields) {
+    this(fields, false);
+  }
+
+  public KeyValueByteScheme(Fields fields, boolean sourceByteBuffers) {
     super(fields, BytesWritable.class, BytesWritable.class);
+    this.sourceByteBuffers = sourceByteBuffers;
+  }
+
+  public boolean getSourceByteBuffers() {
+    return sourceByteBuffers;
   }
 
   public static byte[] getBytes(BytesWritable key) {
     return Arrays.copyOfRange(key.getBytes(), 0, key.getLength());
   }
 
+  /**
+   * A view of the first getLength() bytes of writable, reusing view if it is over the same array
+   */
+  private static ByteBuffer view(BytesWritable writable, ByteBuffer view) {
+    byte[] bytes = writable.getBytes();
+    if (view == null || view.array() != bytes) {
+      return ByteBuffer.wrap(bytes, 0, writable.getLength());
+    }
+    view.clear();
+    view.limit(writable.getLength());
+    return view;
+  }
+
+  /**
+   * A BytesWritable over bytes, a byte array or a ByteBuffer, which only copies a ByteBuffer
+   * that does not start at the start of its array
+   */
+  private static BytesWritable writable(Object bytes) {
+    if (bytes instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) bytes;
+      if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0) {
+        return new BytesWritable(buffer.array(), buffer.remaining());
+      }
+      byte[] copy = new byte[buffer.remaining()];
+      buffer.duplicate().get(copy);
+      return new BytesWritable(copy);
+    }
+    return new BytesWritable((byte[]) bytes);
+  }
+
+  @Override
+  public void sourcePrepare(FlowProcess<JobConf> flowProcess,
+      SourceCall<Object[], RecordReader> sourceCall) throws IOException {
+    super.sourcePrepare(flowProcess, sourceCall);
+    Object[] pair = sourceCall.getContext();
+    // the key and value writables, then the ByteBuffers over them that are reused
+    sourceCall.setContext(new Object[]{pair[0], pair[1], null, null});
+  }
+
   @Override
   public boolean source(FlowProcess<JobConf> flowProcess,
       SourceCall<Object[], RecordReader> sourceCall) throws IOException {
-    BytesWritable key = (BytesWritable) sourceCall.getContext()[0];
-    BytesWritable value = (BytesWritable) sourceCall.getContext()[1];
+    Object[] context = sourceCall.getContext();
+    BytesWritable key = (BytesWritable) context[0];
+    BytesWritable value = (BytesWritable) context[1];
     boolean result = sourceCall.getInput().next(key, value);
 
     if (!result) { return false; }
@@ -41,8 +101,15 @@ public class KeyValueByteScheme extends CombinedWritableSequenceFile {
     Tuple tuple = sourceCall.getIncomingEntry().getTuple();
     tuple.clear();
 
-    tuple.add(getBytes(key));
-    tuple.add(getBytes(value));
+    if (sourceByteBuffers) {
+      context[2] = view(key, (ByteBuffer) context[2]);
+      context[3] = view(value, (ByteBuffer) context[3]);
+      tuple.add(context[2]);
+      tuple.add(context[3]);
+    } else {
+      tuple.add(getBytes(key));
+      tuple.add(getBytes(value));
+    }
 
     return true;
   }
@@ -51,11 +118,6 @@ public class KeyValueByteScheme extends CombinedWritableSequenceFile {
   public void sink(FlowProcess<JobConf> flowProcess, SinkCall<Void, OutputCollector> sinkCall)
       throws IOException {
     TupleEntry tupleEntry = sinkCall.getOutgoingEntry();
-
-    byte[] key = (byte[]) tupleEntry.getObject(0);
-    byte[] val = (byte[]) tupleEntry.getObject(1);
-
-    sinkCall.getOutput().collect(new BytesWritable(key), new BytesWritable(val));
+    sinkCall.getOutput().collect(writable(tupleEntry.getObject(0)), writable(tupleEntry.getObject(1)));
   }
 }
-
@@ -24,6 +24,9 @@ public class VersionedTap extends GlobHfs {
   // a sane default for the number of versions of your data to keep around
   private int versionsToKeep = 3;
 
+  // delete old versions on a background thread once the new one is committed
+  private boolean asyncCleanup = false;
+
   // source-specific
   public TapMode mode;
 
@@ -56,12 +59,25 @@ public class VersionedTap extends GlobHfs {
     return this.versionsToKeep;
   }
 
+  /**
+    * Delete the versions we do not keep on a background thread after committing a new one,
+    * rather than before commitResource returns.
+    */
+  public VersionedTap setAsyncCleanup(boolean asyncCleanup) {
+    this.asyncCleanup = asyncCleanup;
+    return this;
+  }
+
+  public boolean getAsyncCleanup() {
+    return this.asyncCleanup;
+  }
+
   public String getOutputDirectory() {
     return getPath().toString();
   }
 
   public VersionedStore getStore(JobConf conf) throws IOException {
-    return new VersionedStore(getPath().getFileSystem(conf), getOutputDirectory());
+    return new VersionedStore(getPath().getFileSystem(conf), getOutputDirectory(), conf);
   }
 
   public String getSourcePath(JobConf conf) {
@@ -151,7 +167,11 @@ public class VersionedTap extends GlobHfs {
       markSuccessfulOutputDir(new Path(newVersionPath), conf);
       writtenPath = newVersionPath;
       newVersionPath = null;
-      store.cleanup(getVersionsToKeep());
+      if (asyncCleanup) {
+        store.cleanupAsync(getVersionsToKeep());
+      } else {
+        store.cleanup(getVersionsToKeep());
+      }
     }
 
     return true;
@@ -32,6 +32,7 @@ import com.twitter.scalding.commons.tap.VersionedTap.TapMode
 import com.twitter.scalding.source.{ CheckedInversion, MaxFailuresCheck }
 import com.twitter.scalding.typed.KeyedListLike
 import com.twitter.scalding.typed.TypedSink
+import java.nio.ByteBuffer
 import org.apache.hadoop.mapred.JobConf
 import scala.collection.JavaConverters._
 
@@ -69,8 +70,13 @@ class VersionedKeyValSource[K, V](val path: String, val sourceVersion: Option[Lo
 
   override def setter[U <: (K, V)] = TupleSetter.asSubSetter[(K, V), U](TupleSetter.of[(K, V)])
 
+  /**
+   * If true the scheme sources ByteBuffer views of each record rather than copies
+   */
+  protected def sourceByteBuffers: Boolean = false
+
   def hdfsScheme =
-    HadoopSchemeInstance(new KeyValueByteScheme(fields).asInstanceOf[Scheme[_, _, _, _, _]])
+    HadoopSchemeInstance(new KeyValueByteScheme(fields, sourceByteBuffers).asInstanceOf[Scheme[_, _, _, _, _]])
 
   @deprecated("This method is deprecated", "0.1.6")
   def this(path: String, sourceVersion: Option[Long], sinkVersion: Option[Long], maxFailures: Int)(implicit @transient codec: Injection[(K, V), (Array[Byte], Array[Byte])]) =
@@ -208,6 +214,72 @@ class VersionedKeyValSource[K, V](val path: String, val sourceVersion: Option[Lo
   override def hashCode = toString.hashCode
 }
 
+object VersionedKeyValSliceSource {
+  def apply[K, V](path: String, sourceVersion: Option[Long] = None, sinkVersion: Option[Long] = None, maxFailures: Int = 0,
+    versionsToKeep: Int = VersionedKeyValSource.defaultVersionsToKeep)(implicit sliceCodec: Injection[(K, V), (ByteBuffer, ByteBuffer)]) =
+    new VersionedKeyValSliceSource[K, V](path, sourceVersion, sinkVersion, maxFailures, versionsToKeep)
+
+  private def toArray(b: ByteBuffer): Array[Byte] = {
+    val bytes = new Array[Byte](b.remaining)
+    b.duplicate.get(bytes)
+    bytes
+  }
+
+  /**
+   * The copying codec VersionedKeyValSource uses where it needs arrays
+   */
+  def arrayCodec[K, V](sliceCodec: Injection[(K, V), (ByteBuffer, ByteBuffer)]): Injection[(K, V), (Array[Byte], Array[Byte])] =
+    Injection.build[(K, V), (Array[Byte], Array[Byte])] { kv =>
+      val (k, v) = sliceCodec(kv)
+      (toArray(k), toArray(v))
+    } {
+      case (k, v) => sliceCodec.invert((ByteBuffer.wrap(k), ByteBuffer.wrap(v)))
+    }
+}
+
+/**
+ * A VersionedKeyValSource that hands sliceCodec ByteBuffer views of the bytes in the
+ * SequenceFile rather than copying each key and value into a new array. The views are
+ * reused for every record, so sliceCodec must copy any bytes it keeps after inverting.
+ */
+class VersionedKeyValSliceSource[K, V](path: String, sourceVersion: Option[Long], sinkVersion: Option[Long],
+  maxFailures: Int, versionsToKeep: Int)(implicit @transient sliceCodec: Injection[(K, V), (ByteBuffer, ByteBuffer)])
+  extends VersionedKeyValSource[K, V](path, sourceVersion, sinkVersion, maxFailures, versionsToKeep)(
+    VersionedKeyValSliceSource.arrayCodec(sliceCodec)) {
+
+  import Dsl._
+
+  val sliceCodecBox = Externalizer(sliceCodec)
+
+  override protected def sourceByteBuffers = true
+
+  protected lazy val checkedSliceInversion: CheckedInversion[(K, V), (ByteBuffer, ByteBuffer)] =
+    new MaxFailuresCheck(maxFailures)(sliceCodecBox.get)
+
+  override def transformForRead(pipe: Pipe): Pipe =
+    pipe.flatMap((keyField, valField) -> (keyField, valField)) { pair: (ByteBuffer, ByteBuffer) =>
+      checkedSliceInversion(pair)
+    }
+
+  override def transformForWrite(pipe: Pipe): Pipe =
+    pipe.mapTo((0, 1) -> (keyField, valField)) { pair: (K, V) =>
+      sliceCodecBox.get.apply(pair)
+    }
+
+  override def toIterator(implicit config: Config, mode: Mode): Iterator[(K, V)] =
+    mode match {
+      case _: TestMode => super.toIterator
+      case _ =>
+        CascadingMode.cast(mode)
+          .openForRead(config, createTap(Read)(mode))
+          .asScala
+          .flatMap { te =>
+            val item = te.selectTuple(fields)
+            checkedSliceInversion((item.getObject(0).asInstanceOf[ByteBuffer], item.getObject(1).asInstanceOf[ByteBuffer]))
+          }
+    }
+}
+
 object RichPipeEx extends java.io.Serializable {
   implicit def pipeToRichPipeEx(pipe: Pipe): RichPipeEx = new RichPipeEx(pipe)
   implicit def typedPipeToRichPipeEx[K: Ordering, V: Monoid](pipe: TypedPipe[(K, V)]): TypedRichPipeEx[K, V] =
@@ -107,5 +107,75 @@ public class VersionedStoreTest extends FSTestCase {
         Assert.assertEquals(output, expected);
     }
 
+    @Test
+    public void testAsyncCleanup() throws Exception {
+        String tmp1 = TestUtils.getTmpPath(fs, "versions_async_cleanup");
+        VersionedStore vs = new VersionedStore(tmp1);
+        for (int i = 1; i <= 40; i ++) {
+            String version = vs.createVersion(i);
+            fs.mkdirs(new Path(version));
+            if (i % 2 == 0) {
+                vs.succeedVersion(i);
+            } else {
+                fs.createNewFile(new Path(version, VersionedStore.HADOOP_SUCCESS_FLAG));
+            }
+        }
+        Assert.assertEquals(40, vs.getAllVersions().size());
+        vs.cleanupAsync(5).get();
+        List<Long> versions = vs.getAllVersions();
+        Assert.assertEquals(5, versions.size());
+        Assert.assertEquals(Long.valueOf(40), versions.get(0));
+        Assert.assertEquals(8, fs.listStatus(new Path(tmp1)).length); // 5 folders, 3 tokens
+    }
+
+    @Test
+    public void testManifest() throws Exception {
+        String tmp1 = TestUtils.getTmpPath(fs, "versions_manifest");
+        VersionedStore vs = new VersionedStore(tmp1);
+        vs.setUseManifest(true);
+        for (int i = 1; i <= 4; i ++) {
+            String version = vs.createVersion(i);
+            fs.mkdirs(new Path(version));
+            vs.succeedVersion(i);
+        }
+        Assert.assertTrue(fs.exists(new Path(tmp1, VersionedStore.MANIFEST_NAME)));
+        Assert.assertEquals(Long.valueOf(4), vs.mostRecentVersion());
+
+        vs.cleanup(2);
+        Assert.assertEquals(2, vs.getAllVersions().size());
+        Assert.assertFalse(vs.hasVersion(2));
+
+        // a second store reads the versions from the manifest, not the directory,
+        // so a version finished without the store is not seen until a rebuild
+        new File(new Path(tmp1, "5").toString()).mkdirs();
+        new File(new Path(tmp1, "5" + VersionedStore.FINISHED_VERSION_SUFFIX).toString()).createNewFile();
+        VersionedStore other = new VersionedStore(tmp1);
+        other.setUseManifest(true);
+        Assert.assertFalse(other.hasVersion(5));
+        other.rebuildManifest();
+        Assert.assertEquals(Long.valueOf(5), other.mostRecentVersion());
+    }
+
+    @Test
+    public void testMissingManifest() throws Exception {
+        String tmp1 = TestUtils.getTmpPath(fs, "versions_missing_manifest");
+        VersionedStore vs = new VersionedStore(tmp1);
+        for (int i = 1; i <= 3; i ++) {
+            String version = vs.createVersion(i);
+            fs.mkdirs(new Path(version));
+            vs.succeedVersion(i);
+        }
+        Assert.assertFalse(fs.exists(new Path(tmp1, VersionedStore.MANIFEST_NAME)));
+
+        vs.setUseManifest(true);
+        Assert.assertEquals(3, vs.getAllVersions().size());
+        String version = vs.createVersion(4);
+        fs.mkdirs(new Path(version));
+        vs.succeedVersion(4);
+        Assert.assertTrue(fs.exists(new Path(tmp1, VersionedStore.MANIFEST_NAME)));
+        Assert.assertEquals(Long.valueOf(4), vs.mostRecentVersion());
+        Assert.assertEquals(4, vs.getAllVersions().size());
+    }
+
 }
 
@@ -20,8 +20,11 @@ import com.twitter.scalding._
 import com.twitter.scalding.commons.datastores.VersionedStore
 import com.twitter.bijection.Injection
 import com.google.common.io.Files
+import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.mapred.JobConf
 import java.io.{ File, FileWriter }
+import java.nio.ByteBuffer
+import scala.util.Try
 // Use the scalacheck generators
 import scala.collection.mutable.Buffer
 
@@ -140,6 +143,83 @@ class VersionedKeyValSourceTest extends WordSpec with Matchers {
     }
   }
 
+  "A VersionedKeyValSliceSource" should {
+    val intInj = implicitly[Injection[Int, Array[Byte]]]
+
+    def toArray(b: ByteBuffer): Array[Byte] = {
+      val bytes = new Array[Byte](b.remaining)
+      b.duplicate.get(bytes)
+      bytes
+    }
+
+    // the bytes in the middle of a larger array, with a non-zero arrayOffset and position
+    def offsetBuffer(bytes: Array[Byte]): ByteBuffer = {
+      val padded = new Array[Byte](bytes.length + 8)
+      System.arraycopy(bytes, 0, padded, 4, bytes.length)
+      val sliced = ByteBuffer.wrap(padded, 2, bytes.length + 4).slice
+      sliced.position(2)
+      sliced.limit(2 + bytes.length)
+      sliced
+    }
+
+    // all the same length, so the reader never grows its BytesWritables
+    val input = (1 to 100).toList.map { i => (i, "value%03d".format(i)) }
+    val mode = Hdfs(true, new Configuration)
+
+    def write[K, V](path: String, kvs: List[(K, V)])(implicit sliceCodec: Injection[(K, V), (ByteBuffer, ByteBuffer)]): Unit =
+      TypedPipe.from(kvs)
+        .writeExecution(VersionedKeyValSliceSource[K, V](path))
+        .waitFor(Config.defaultFrom(mode), mode)
+        .get
+
+    "round trip ByteBuffers with a non-zero arrayOffset and position" in {
+      implicit val sliceCodec: Injection[(Int, String), (ByteBuffer, ByteBuffer)] =
+        Injection.build[(Int, String), (ByteBuffer, ByteBuffer)] {
+          case (k, v) => (offsetBuffer(intInj(k)), offsetBuffer(v.getBytes("UTF-8")))
+        } {
+          case (k, v) => intInj.invert(toArray(k)).map((_, new String(toArray(v), "UTF-8")))
+        }
+      assert(sliceCodec((1, "a"))._1.arrayOffset == 2)
+
+      val path = Files.createTempDir().getAbsolutePath
+      write(path, input)
+
+      val read = TypedPipe.from(VersionedKeyValSliceSource[Int, String](path))
+        .toIterableExecution
+        .waitFor(Config.defaultFrom(mode), mode)
+        .get
+        .toList
+
+      read.sortBy(_._1) shouldBe input
+    }
+
+    "reuse the ByteBuffers it sources, so values that are kept must be copied" in {
+      // does not copy when inverting, so the values are the views themselves
+      implicit val sliceCodec: Injection[(Int, ByteBuffer), (ByteBuffer, ByteBuffer)] =
+        Injection.build[(Int, ByteBuffer), (ByteBuffer, ByteBuffer)] {
+          case (k, v) => (ByteBuffer.wrap(intInj(k)), v)
+        } {
+          case (k, v) => intInj.invert(toArray(k)).map((_, v))
+        }
+
+      val path = Files.createTempDir().getAbsolutePath
+      write(path, input.map { case (k, v) => (k, offsetBuffer(v.getBytes("UTF-8"))) })
+
+      val retained = Buffer[ByteBuffer]()
+      val copied = Buffer[String]()
+      VersionedKeyValSliceSource[Int, ByteBuffer](path).toIterator(Config.defaultFrom(mode), mode).foreach {
+        case (_, v) =>
+          retained += v
+          copied += new String(toArray(v), "UTF-8")
+      }
+
+      copied.sorted shouldBe input.map(_._2).sorted
+      // every record was sourced into the same view
+      assert(retained.forall(_ eq retained.head))
+      retained.map { v => new String(toArray(v), "UTF-8") }.distinct.size shouldBe 1
+    }
+  }
+
   /**
    * Creates a temp dir and then creates the provided versions within it.
    */
@@ -0,0 +1,41 @@
+package com.twitter.scalding.tap;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Caches the filesystem metadata that taps, sources and estimators look up while a flow is
+ * planned and validated. An instance is shared by everything in one execution, see
+ * {@link FileMetadataCaches#forConf}, and must be thread safe. Entries should be keyed by
+ * qualified path; invalidate is always given one. Implementations may be plugged in with {@link FileMetadataCaches#CACHE_CLASS}.
+ */
+public interface FileMetadataCache {
+  /**
+   * Like {@link FileSystem#globStatus(Path)}, null if a non glob path does not exist
+   */
+  FileStatus[] globStatus(FileSystem fs, Path pattern) throws IOException;
+
+  /**
+   * Like {@link FileSystem#listStatus(Path)}
+   */
+  FileStatus[] listStatus(FileSystem fs, Path dir) throws IOException;
+
+  boolean exists(FileSystem fs, Path path) throws IOException;
+
+  /**
+   * The length of {@link FileSystem#getContentSummary(Path)}
+   */
+  long contentLength(FileSystem fs, Path path) throws IOException;
+
+  /**
+   * Forget anything that writing to path could have changed
+   */
+  void invalidate(Path path);
+
+  long getHits();
+
+  long getMisses();
+}
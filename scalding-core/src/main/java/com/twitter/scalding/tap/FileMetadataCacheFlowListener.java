@@ -0,0 +1,55 @@
+package com.twitter.scalding.tap;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowListener;
+import cascading.tap.hadoop.Hfs;
+
+/**
+ * Invalidates the sinks of a flow in its execution's {@link FileMetadataCache} when the
+ * flow stops, whether or not it succeeded, so later flows see what it wrote.
+ */
+public class FileMetadataCacheFlowListener implements FlowListener {
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCacheFlowListener.class);
+
+  private static void invalidateSinks(Flow flow) {
+    Object config = flow.getConfig();
+    if (!(config instanceof Configuration)) {
+      return;
+    }
+    Configuration conf = (Configuration) config;
+    for (Object sink : flow.getSinksCollection()) {
+      if (sink instanceof Hfs) {
+        Path path = ((Hfs) sink).getPath();
+        try {
+          FileMetadataCaches.invalidate(conf, path.getFileSystem(conf), path);
+        } catch (IOException e) {
+          LOG.warn("could not invalidate the cached metadata of " + path, e);
+        }
+      }
+    }
+  }
+
+  public void onStarting(Flow flow) {
+  }
+
+  public void onStopping(Flow flow) {
+    invalidateSinks(flow);
+  }
+
+  public void onCompleted(Flow flow) {
+    invalidateSinks(flow);
+  }
+
+  public boolean onThrowable(Flow flow, Throwable throwable) {
+    invalidateSinks(flow);
+    // let the other listeners handle it
+    return false;
+  }
+}
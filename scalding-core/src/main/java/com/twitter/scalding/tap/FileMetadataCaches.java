@@ -0,0 +1,143 @@
+package com.twitter.scalding.tap;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the {@link FileMetadataCache} of the execution a Configuration belongs to.
+ *
+ * Caching is off unless {@link #CACHE_ENABLED} is set. When it is on, the metadata that
+ * planning and validation look up is cached for the rest of the execution. Anything the
+ * execution itself writes through a scalding tap is invalidated, but changes made by
+ * other processes are not seen until the next execution.
+ */
+public final class FileMetadataCaches {
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCaches.class);
+
+  public static final String CACHE_ENABLED = "scalding.fs.metadata.cache";
+
+  /**
+   * A FileMetadataCache with a no argument constructor, defaults to InMemoryFileMetadataCache
+   */
+  public static final String CACHE_CLASS = "scalding.fs.metadata.cache.class";
+
+  /**
+   * The counters the hits and misses of planning each flow are reported in
+   */
+  public static final String COUNTER_GROUP = "scalding.fs.metadata.cache";
+  public static final String HITS_COUNTER = "hits";
+  public static final String MISSES_COUNTER = "misses";
+
+  // the same values as Config.ScaldingExecutionId and Config.ScaldingFlowSubmittedTimestamp
+  private static final String EXECUTION_ID = "scalding.execution.uuid";
+  private static final String FLOW_SUBMITTED_TIMESTAMP = "scalding.flow.submitted.timestamp";
+
+  private static final int MAX_CACHED_SCOPES = 16;
+
+  private static final Map<String, FileMetadataCache> CACHES =
+    new LinkedHashMap<String, FileMetadataCache>(MAX_CACHED_SCOPES, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, FileMetadataCache> eldest) {
+        if (size() > MAX_CACHED_SCOPES) {
+          LOG.info("dropping the filesystem metadata cache of {}: {}", eldest.getKey(), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+
+  /**
+   * Goes to the filesystem every time
+   */
+  public static final FileMetadataCache NONE = new FileMetadataCache() {
+    public FileStatus[] globStatus(FileSystem fs, Path pattern) throws IOException {
+      return fs.globStatus(pattern);
+    }
+
+    public FileStatus[] listStatus(FileSystem fs, Path dir) throws IOException {
+      return fs.listStatus(dir);
+    }
+
+    public boolean exists(FileSystem fs, Path path) throws IOException {
+      return fs.exists(path);
+    }
+
+    public long contentLength(FileSystem fs, Path path) throws IOException {
+      return fs.getContentSummary(path).getLength();
+    }
+
+    public void invalidate(Path path) {
+    }
+
+    public long getHits() {
+      return 0L;
+    }
+
+    public long getMisses() {
+      return 0L;
+    }
+  };
+
+  private FileMetadataCaches() {
+  }
+
+  private static String scope(Configuration conf) {
+    return (conf == null) ? null : conf.get(EXECUTION_ID, conf.get(FLOW_SUBMITTED_TIMESTAMP));
+  }
+
+  /**
+   * The cache of conf's execution if CACHE_ENABLED is set, else NONE
+   */
+  public static FileMetadataCache forConf(Configuration conf) {
+    if (conf == null || !conf.getBoolean(CACHE_ENABLED, false)) {
+      return NONE;
+    }
+    return scoped(conf);
+  }
+
+  /**
+   * The cache of conf's execution, or NONE if conf is not part of an execution
+   */
+  private static FileMetadataCache scoped(Configuration conf) {
+    String scope = scope(conf);
+    if (scope == null) {
+      return NONE;
+    }
+    synchronized (CACHES) {
+      FileMetadataCache cache = CACHES.get(scope);
+      if (cache == null) {
+        Class<? extends FileMetadataCache> cls =
+          conf.getClass(CACHE_CLASS, InMemoryFileMetadataCache.class, FileMetadataCache.class);
+        cache = ReflectionUtils.newInstance(cls, conf);
+        CACHES.put(scope, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Call after writing or deleting path, so the execution does not see stale metadata
+   */
+  public static void invalidate(Configuration conf, FileSystem fs, Path path) {
+    String scope = scope(conf);
+    if (scope == null) {
+      return;
+    }
+    FileMetadataCache cache;
+    synchronized (CACHES) {
+      cache = CACHES.get(scope);
+    }
+    if (cache != null) {
+      cache.invalidate(fs.makeQualified(path));
+    }
+  }
+}
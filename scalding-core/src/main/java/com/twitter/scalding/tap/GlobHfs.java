@@ -2,6 +2,15 @@ package com.twitter.scalding.tap;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -17,6 +26,20 @@ import cascading.scheme.Scheme;
  * that will throw IOException where we actually can calculate size of source.
  */
 public class GlobHfs extends ScaldingHfs {
+  /**
+   * The number of getContentSummary calls getSize makes at once
+   */
+  public static final String SIZE_PARALLELISM = "scalding.tap.size.parallelism";
+  public static final int DEFAULT_SIZE_PARALLELISM = 16;
+
+  private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "glob-hfs-size");
+      t.setDaemon(true);
+      return t;
+    }
+  };
+
   public GlobHfs(Scheme<JobConf, RecordReader, OutputCollector, ?, ?> scheme) {
     super(scheme);
   }
@@ -33,19 +56,71 @@ public class GlobHfs extends ScaldingHfs {
   /**
    * Get the total size of the file(s) specified by the Hfs, which may contain a glob
    * pattern in its path, so we must be ready to handle that case.
+   *
+   * Files are sized from the statuses the glob returns. Directories need a content summary,
+   * which we get in parallel, and cache for the rest of the execution if
+   * {@link FileMetadataCaches#CACHE_ENABLED} is set.
    */
   public static long getSize(Path path, JobConf conf) throws IOException {
     FileSystem fs = path.getFileSystem(conf);
-    FileStatus[] statuses = fs.globStatus(path);
+    FileMetadataCache cache = FileMetadataCaches.forConf(conf);
+    FileStatus[] statuses = cache.globStatus(fs, path);
 
     if (statuses == null) {
       throw new FileNotFoundException(String.format("File not found: %s", path));
     }
 
     long size = 0;
+    List<Path> dirs = new ArrayList<Path>();
     for (FileStatus status : statuses) {
-      size += fs.getContentSummary(status.getPath()).getLength();
+      if (status.isDir()) {
+        dirs.add(status.getPath());
+      } else {
+        size += status.getLen();
+      }
+    }
+
+    for (Long length : contentLengths(fs, cache, dirs, conf.getInt(SIZE_PARALLELISM, DEFAULT_SIZE_PARALLELISM))) {
+      size += length;
     }
     return size;
   }
+
+  private static List<Long> contentLengths(final FileSystem fs, final FileMetadataCache cache, List<Path> dirs,
+      int parallelism) throws IOException {
+    List<Long> lengths = new ArrayList<Long>(dirs.size());
+    if (dirs.size() <= 1 || parallelism <= 1) {
+      for (Path dir : dirs) {
+        lengths.add(cache.contentLength(fs, dir));
+      }
+      return lengths;
+    }
+
+    List<Callable<Long>> summaries = new ArrayList<Callable<Long>>(dirs.size());
+    for (final Path dir : dirs) {
+      summaries.add(new Callable<Long>() {
+        public Long call() throws IOException {
+          return cache.contentLength(fs, dir);
+        }
+      });
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, dirs.size()), DAEMON_THREADS);
+    try {
+      for (Future<Long> length : pool.invokeAll(summaries)) {
+        lengths.add(length.get());
+      }
+      return lengths;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while sizing " + dirs);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,134 @@
+package com.twitter.scalding.tap;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * The default {@link FileMetadataCache}, which keeps everything it looks up until it is invalidated.
+ */
+public class InMemoryFileMetadataCache implements FileMetadataCache {
+  // ConcurrentHashMap does not allow null values
+  private static final FileStatus[] MISSING = new FileStatus[0];
+
+  private final Map<Path, FileStatus[]> globs = new ConcurrentHashMap<Path, FileStatus[]>();
+  private final Map<Path, FileStatus[]> listings = new ConcurrentHashMap<Path, FileStatus[]>();
+  private final Map<Path, Boolean> existing = new ConcurrentHashMap<Path, Boolean>();
+  private final Map<Path, Long> lengths = new ConcurrentHashMap<Path, Long>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private static FileStatus[] copy(FileStatus[] statuses) {
+    return (statuses == MISSING) ? null : statuses.clone();
+  }
+
+  public FileStatus[] globStatus(FileSystem fs, Path pattern) throws IOException {
+    Path key = fs.makeQualified(pattern);
+    FileStatus[] cached = globs.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return copy(cached);
+    }
+    misses.incrementAndGet();
+    FileStatus[] statuses = fs.globStatus(pattern);
+    globs.put(key, (statuses == null) ? MISSING : statuses);
+    return copy((statuses == null) ? MISSING : statuses);
+  }
+
+  public FileStatus[] listStatus(FileSystem fs, Path dir) throws IOException {
+    Path key = fs.makeQualified(dir);
+    FileStatus[] cached = listings.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      if (cached == MISSING) {
+        throw new FileNotFoundException("File " + dir + " does not exist");
+      }
+      return cached.clone();
+    }
+    misses.incrementAndGet();
+    FileStatus[] statuses;
+    try {
+      statuses = fs.listStatus(dir);
+    } catch (FileNotFoundException e) {
+      statuses = null;
+    }
+    listings.put(key, (statuses == null) ? MISSING : statuses);
+    if (statuses == null) {
+      throw new FileNotFoundException("File " + dir + " does not exist");
+    }
+    return statuses.clone();
+  }
+
+  public boolean exists(FileSystem fs, Path path) throws IOException {
+    Path key = fs.makeQualified(path);
+    Boolean cached = existing.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+    boolean exists = fs.exists(path);
+    existing.put(key, exists);
+    return exists;
+  }
+
+  public long contentLength(FileSystem fs, Path path) throws IOException {
+    Path key = fs.makeQualified(path);
+    Long cached = lengths.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+    long length = fs.getContentSummary(path).getLength();
+    lengths.put(key, length);
+    return length;
+  }
+
+  /**
+   * True if one path is the other, or is below it
+   */
+  private static boolean related(Path a, Path b) {
+    String as = a.toString();
+    String bs = b.toString();
+    return as.equals(bs) || as.startsWith(bs + Path.SEPARATOR) || bs.startsWith(as + Path.SEPARATOR);
+  }
+
+  private static void removeRelated(Map<Path, ?> map, Path path) {
+    Iterator<Path> keys = map.keySet().iterator();
+    while (keys.hasNext()) {
+      if (related(keys.next(), path)) {
+        keys.remove();
+      }
+    }
+  }
+
+  public void invalidate(Path path) {
+    // we cannot cheaply tell which globs could match path
+    globs.clear();
+    removeRelated(listings, path);
+    removeRelated(existing, path);
+    removeRelated(lengths, path);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "InMemoryFileMetadataCache(hits: " + getHits() + ", misses: " + getMisses() + ")";
+  }
+}
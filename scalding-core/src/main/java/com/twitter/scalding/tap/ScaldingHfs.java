@@ -2,6 +2,8 @@ package com.twitter.scalding.tap;
 
 import java.io.IOException;
 
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.RecordReader;
@@ -54,4 +56,45 @@ public class ScaldingHfs extends cascading.tap.hadoop.Hfs {
   public TupleEntryIterator openForRead(FlowProcess<JobConf> flowProcess, RecordReader input) throws IOException {
     return new HadoopTupleEntrySchemeIterator(flowProcess, this, input);
   }
+
+  /**
+   * Globs like Hfs does, but through the execution's {@link FileMetadataCache}
+   */
+  @Override
+  public boolean resourceExists(JobConf conf) throws IOException {
+    FileSystem fs = getPath().getFileSystem(conf);
+    FileStatus[] statuses = FileMetadataCaches.forConf(conf).globStatus(fs, getPath());
+    return statuses != null && statuses.length > 0;
+  }
+
+  private void invalidate(JobConf conf) throws IOException {
+    FileMetadataCaches.invalidate(conf, getPath().getFileSystem(conf), getPath());
+  }
+
+  @Override
+  public boolean createResource(JobConf conf) throws IOException {
+    try {
+      return super.createResource(conf);
+    } finally {
+      invalidate(conf);
+    }
+  }
+
+  @Override
+  public boolean deleteResource(JobConf conf) throws IOException {
+    try {
+      return super.deleteResource(conf);
+    } finally {
+      invalidate(conf);
+    }
+  }
+
+  @Override
+  public boolean commitResource(JobConf conf) throws IOException {
+    try {
+      return super.commitResource(conf);
+    } finally {
+      invalidate(conf);
+    }
+  }
 }
@@ -434,6 +434,24 @@ abstract class Config extends Serializable {
   def getHashJoinAutoForceRight: Boolean =
     getBoolean(HashJoinAutoForceRight, false)
 
+  def setHashJoinAutoMaxBytes(bytes: Long): Config =
+    this + (HashJoinAutoMaxBytes -> bytes.toString)
+
+  def getHashJoinAutoMaxBytes: Option[Long] =
+    get(HashJoinAutoMaxBytes).map(_.toLong)
+
+  def setSkewJoinAuto(b: Boolean): Config =
+    this + (SkewJoinAuto -> (b.toString))
+
+  def getSkewJoinAuto: Boolean =
+    getBoolean(SkewJoinAuto, false)
+
+  def setSkewJoinSampleRate(rate: Double): Config =
+    this + (SkewJoinSampleRate -> rate.toString)
+
+  def getSkewJoinSampleRate: Double =
+    get(SkewJoinSampleRate).map(_.toDouble).getOrElse(typed.SkewJoin.DefaultSampleRate)
+
   /**
    * Set to true to enable very verbose logging during FileSource's validation and planning.
    * This can help record what files were present / missing at runtime. Should only be enabled
@@ -505,6 +523,53 @@ abstract class Config extends Serializable {
   def getCheckHfsTaps: Boolean =
     getBoolean(ScaldingCheckHfsTaps, false)
 
+  /**
+   * Set the number of hash partitions the in-memory backend uses
+   * to run a reduce in parallel. 1 reduces on a single thread.
+   */
+  def setMemoryBackendReducePartitions(n: Int): Config =
+    this + (MemoryBackendReducePartitions -> n.toString)
+
+  /**
+   * Defaults to the number of available processors
+   */
+  def getMemoryBackendReducePartitions: Int =
+    get(MemoryBackendReducePartitions).map(_.toInt)
+      .getOrElse(Runtime.getRuntime.availableProcessors)
+
+  /**
+   * In streaming mode the in-memory backend fuses chains of
+   * map/filter/flatMap into a single pass and only buffers
+   * at sources, reduces, joins and materialization points.
+   */
+  def setMemoryBackendStreaming(b: Boolean): Config =
+    this + (MemoryBackendStreaming -> b.toString)
+
+  def getMemoryBackendStreaming: Boolean =
+    getBoolean(MemoryBackendStreaming, false)
+
+  /**
+   * Inputs to map, filter and flatMap in the in-memory backend are split
+   * into chunks of at least this many items which are processed in
+   * parallel, so the functions given to them must be thread-safe.
+   * Unset, the default, keeps everything on a single thread.
+   */
+  def setMemoryBackendMinChunkSize(size: Int): Config =
+    this + (MemoryBackendMinChunkSize -> size.toString)
+
+  def getMemoryBackendMinChunkSize: Option[Int] =
+    get(MemoryBackendMinChunkSize).map(_.toInt)
+
+  /**
+   * When set, reduces and materialized pipes in the in-memory backend
+   * write to local temp files once they hold more than this many items
+   */
+  def setMemoryBackendSpillThreshold(count: Int): Config =
+    this + (MemoryBackendSpillThreshold -> count.toString)
+
+  def getMemoryBackendSpillThreshold: Option[Int] =
+    get(MemoryBackendSpillThreshold).map(_.toInt)
+
   // we use Config as a key in Execution caches so we
   // want to avoid recomputing it repeatedly
   override lazy val hashCode = toMap.hashCode
@@ -589,6 +654,38 @@ object Config {
    */
   val HashJoinAutoForceRight: String = "scalding.hashjoin.autoforceright"
 
+  /**
+   * If set, joins and leftJoins whose right side is known to read at most this many
+   * bytes are planned as hash joins. Sizes are known for hdfs sources and in memory
+   * pipes. Unset by default.
+   */
+  val HashJoinAutoMaxBytes: String = "scalding.hashjoin.auto.max.bytes"
+
+  /**
+   * If true, joins and leftJoins of ungrouped pipes sample the keys of the left side
+   * in an extra job and spread the heaviest keys across several reducers.
+   * See typed.SkewJoin
+   */
+  val SkewJoinAuto: String = "scalding.skewjoin.auto"
+
+  /** Fraction of the left side of a join sampled to find its heavy keys */
+  val SkewJoinSampleRate: String = "scalding.skewjoin.sample.rate"
+
+  /** Number of hash partitions used by a reduce in the in-memory backend */
+  val MemoryBackendReducePartitions: String = "scalding.memorybackend.reduce.partitions"
+
+  /** Should the in-memory backend fuse narrow transforms into a single pass */
+  val MemoryBackendStreaming: String = "scalding.memorybackend.streaming"
+
+  /**
+   * Minimum number of items in each parallel chunk of a map in the in-memory backend.
+   * Setting this runs map, filter and flatMap functions on several threads at once.
+   */
+  val MemoryBackendMinChunkSize: String = "scalding.memorybackend.chunk.min.size"
+
+  /** Number of items the in-memory backend holds before spilling to disk */
+  val MemoryBackendSpillThreshold: String = "scalding.memorybackend.spill.threshold"
+
   val empty: Config = Config(Map.empty)
 
   /*
@@ -19,6 +19,7 @@ import cascading.flow.hadoop.HadoopFlow
 import cascading.flow.planner.BaseFlowStep
 import cascading.flow.{ Flow, FlowDef, FlowStepStrategy }
 import cascading.pipe.Pipe
+import com.twitter.maple.tap.FileBackedMemorySourceTap
 import com.twitter.scalding.estimation.memory.MemoryEstimatorStepStrategy
 import com.twitter.scalding.reducer_estimation.ReducerEstimatorStepStrategy
 import com.twitter.scalding.serialization.CascadingBinaryComparator
@@ -140,6 +141,9 @@ trait ExecutionContext {
               case Success(fn) => flow.addStepListener(fn(mode, configWithId))
               case Failure(e) => new Exception("Failed to decode flow step listener when submitting job", e)
             }
+
+            // remove the side files of any IterableSources once the flow stops
+            flow.addListener(new FileBackedMemorySourceTap.DeleteSideFiles)
           case _: CascadingLocal =>
             config.getFlowStepStrategies.foreach {
               case Success(fn) => flow.setFlowStepStrategy(fn(mode, configWithId))
@@ -26,7 +26,7 @@ import cascading.tap.local.FileTap
 import cascading.tuple.Fields
 import com.etsy.cascading.tap.local.LocalTap
 import com.twitter.algebird.{MapAlgebra, OrVal}
-import com.twitter.scalding.tap.ScaldingHfs
+import com.twitter.scalding.tap.{FileMetadataCaches, ScaldingHfs}
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.fs.{FileStatus, Path, PathFilter}
 import org.apache.hadoop.mapred.{JobConf, OutputCollector, RecordReader}
@@ -137,8 +137,9 @@ object FileSource {
 
   def glob(glob: String, conf: Configuration, filter: PathFilter = AcceptAllPathFilter): Iterable[FileStatus] = {
     val path = new Path(glob)
-    Option(path.getFileSystem(conf).globStatus(path, filter)).map {
-      _.toIterable // convert java Array to scala Iterable
+    // we filter the unfiltered glob so it can be cached for any filter
+    Option(FileMetadataCaches.forConf(conf).globStatus(path.getFileSystem(conf), path)).map {
+      _.toIterable.filter { status => filter.accept(status.getPath) } // convert java Array to scala Iterable
     }.getOrElse {
       Iterable.empty
     }
@@ -178,10 +179,16 @@ object FileSource {
    * @param hiddenFilter true, if only non-hidden files are checked
    * @return true if the directory has files after filters are applied
    */
-  def allGlobFilesWithSuccess(globPath: String, conf: Configuration, hiddenFilter: Boolean): Boolean = {
+  def allGlobFilesWithSuccess(globPath: String, conf: Configuration, hiddenFilter: Boolean): Boolean =
+    allFilesWithSuccess(glob(globPath, conf, AcceptAllPathFilter), hiddenFilter)
+
+  /**
+   * allGlobFilesWithSuccess for the statuses an unfiltered glob matched
+   */
+  def allFilesWithSuccess(statuses: Iterable[FileStatus], hiddenFilter: Boolean): Boolean = {
     // Produce tuples (dirName, hasSuccess, hasNonHidden) keyed by dir
     //
-    val usedDirs = glob(globPath, conf, AcceptAllPathFilter)
+    val usedDirs = statuses
       .map { fileStatus: FileStatus =>
         // stringify Path for Semigroup
         val dir =
@@ -237,6 +244,25 @@ abstract class FileSource extends SchemedSource with LocalSourceOverride with Hf
     }
   }
 
+  /**
+   * The default pathIsGood, given the statuses an unfiltered glob of the path matched.
+   * Only used if pathIsGood is not overridden.
+   */
+  protected def statusesAreGood(statuses: Iterable[FileStatus], conf: Configuration): Boolean =
+    if (conf.getBoolean("scalding.require_success_file", false)) {
+      FileSource.allFilesWithSuccess(statuses, true)
+    } else {
+      statuses.exists { status => HiddenFileFilter.accept(status.getPath) }
+    }
+
+  /**
+   * True if pathIsGood(String, Configuration) has not been overridden, so it can be
+   * answered by statusesAreGood
+   */
+  protected final def hasDefaultPathIsGood: Boolean =
+    getClass.getMethod("pathIsGood", classOf[String], classOf[Configuration])
+      .getDeclaringClass == classOf[FileSource]
+
   def hdfsPaths: Iterable[String]
   // By default, we write to the LAST path returned by hdfsPaths
   def hdfsWritePath: String = hdfsPaths.last
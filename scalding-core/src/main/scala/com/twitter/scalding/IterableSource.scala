@@ -15,12 +15,13 @@ limitations under the License.
 */
 package com.twitter.scalding
 
-import com.twitter.maple.tap.MemorySourceTap
+import com.twitter.maple.tap.{ FileBackedMemorySourceTap, MemorySourceTap }
 
 import cascading.tap.Tap
 import cascading.tuple.Tuple
 import cascading.tuple.Fields
 import cascading.scheme.NullScheme
+import org.apache.hadoop.conf.Configuration
 
 import java.io.{ InputStream, OutputStream }
 
@@ -50,6 +51,16 @@ case class IterableSource[+T](@transient iter: Iterable[T], inFields: Fields = F
 
   private lazy val hdfsTap: Tap[_, _, _] = new MemorySourceTap(asBuffer.asJava, fields)
 
+  /**
+   * Written to a side file rather than into the JobConf. The side file is deleted
+   * when the flow reading the tap stops, so each tap, and each flow, gets its own.
+   */
+  private def fileBackedTap: Tap[_, _, _] = new FileBackedMemorySourceTap(asBuffer.asJava, fields)
+
+  private def hadoopTap(conf: Configuration): Tap[_, _, _] =
+    if (asBuffer.size >= conf.getInt(FileBackedMemorySourceTap.MIN_TUPLES_PROPERTY, Int.MaxValue)) fileBackedTap
+    else hdfsTap
+
   override def createTap(readOrWrite: AccessMode)(implicit mode: Mode): Tap[_, _, _] = {
     if (readOrWrite == Write) {
       sys.error("IterableSource is a Read-only Source")
@@ -57,8 +68,8 @@ case class IterableSource[+T](@transient iter: Iterable[T], inFields: Fields = F
     mode match {
       case Local(_) => new MemoryTap[InputStream, OutputStream](new NullScheme(fields, fields), asBuffer)
       case Test(_) => new MemoryTap[InputStream, OutputStream](new NullScheme(fields, fields), asBuffer)
-      case Hdfs(_, _) => hdfsTap
-      case HadoopTest(_, _) => hdfsTap
+      case Hdfs(_, conf) => hadoopTap(conf)
+      case HadoopTest(conf, _) => hadoopTap(conf)
       case _ => throw ModeException("Unsupported mode for IterableSource: " + mode.toString)
     }
   }
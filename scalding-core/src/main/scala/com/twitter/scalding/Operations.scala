@@ -287,6 +287,12 @@ package com.twitter.scalding {
     val DEFAULT_CACHE_SIZE = 100000
     val SIZE_CONFIG_KEY = AggregateBy.AGGREGATE_BY_THRESHOLD
     val ADAPTIVE_CACHE_KEY = "scalding.mapsidecache.adaptive"
+    val OPEN_HASH_CACHE_KEY = "scalding.mapsidecache.openhash"
+    /**
+     * If set, the cache is bounded by the estimated bytes it retains, as this
+     * fraction of the task's max heap, rather than by a number of entries
+     */
+    val MAX_HEAP_FRACTION_KEY = "scalding.mapsidecache.max.heap.fraction"
 
     private def getCacheSize(fp: FlowProcess[_]): Int =
       Option(fp.getStringProperty(SIZE_CONFIG_KEY))
@@ -294,13 +300,29 @@ package com.twitter.scalding {
         .map { _.toInt }
         .getOrElse(DEFAULT_CACHE_SIZE)
 
+    private def getMaxBytes(fp: FlowProcess[_]): Option[Long] =
+      Option(fp.getStringProperty(MAX_HEAP_FRACTION_KEY))
+        .filterNot { _.isEmpty }
+        .map { f =>
+          val fraction = f.toDouble
+          require(fraction > 0.0 && fraction < 1.0, s"$MAX_HEAP_FRACTION_KEY must be in (0, 1), found: $f")
+          (Runtime.getRuntime.maxMemory * fraction).toLong
+        }
+
     def apply[K, V: Semigroup](cacheSize: Option[Int], flowProcess: FlowProcess[_]): MapsideCache[K, V] = {
       val size = cacheSize.getOrElse{ getCacheSize(flowProcess) }
       val adaptive = Option(flowProcess.getStringProperty(ADAPTIVE_CACHE_KEY)).isDefined
+      val openHash = Option(flowProcess.getStringProperty(OPEN_HASH_CACHE_KEY)).isDefined
       if (adaptive)
         new AdaptiveMapsideCache(flowProcess, new AdaptiveCache(size))
-      else
-        new SummingMapsideCache(flowProcess, new SummingWithHitsCache(size))
+      else getMaxBytes(flowProcess) match {
+        case Some(maxBytes) =>
+          new ByteBoundedMapsideCache(flowProcess, maxBytes, SizeEstimator.sampled(), SizeEstimator.sampled())
+        case None if openHash =>
+          new OpenHashMapsideCache(flowProcess, SummingOpenHashTable[K, V](size))
+        case None =>
+          new SummingMapsideCache(flowProcess, new SummingWithHitsCache(size))
+      }
     }
   }
 
@@ -337,6 +359,186 @@ package com.twitter.scalding {
     }
   }
 
+  /**
+   * Sums into a SummingOpenHashTable, so a put allocates nothing unless it
+   * evicts. Like SummingWithHitsCache, everything is evicted once the table
+   * holds cacheSize keys. The counters are only incremented on evictions and
+   * flush, not on every put.
+   */
+  final class OpenHashMapsideCache[K, V: Semigroup](flowProcess: FlowProcess[_], table: SummingOpenHashTable[K, V])
+    extends MapsideCache[K, V] {
+    private[this] val misses = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "misses"))
+    private[this] val hits = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "hits"))
+    private[this] val evictions = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "evictions"))
+
+    private[this] var localHits = 0L
+    private[this] var localMisses = 0L
+
+    private[this] def add(key: K, value: V): Unit =
+      if (table.put(key, value)) localHits += 1 else localMisses += 1
+
+    private[this] def evict(): Map[K, V] = {
+      hits.increment(localHits)
+      misses.increment(localMisses)
+      localHits = 0L
+      localMisses = 0L
+      val evicted = table.drain()
+      evictions.increment(evicted.size)
+      evicted
+    }
+
+    def flush: Option[Map[K, V]] = {
+      hits.increment(localHits)
+      misses.increment(localMisses)
+      localHits = 0L
+      localMisses = 0L
+      if (table.isEmpty) None else Some(table.drain())
+    }
+
+    def put(key: K, value: V): Option[Map[K, V]] = {
+      add(key, value)
+      if (table.isFull) Some(evict()) else None
+    }
+
+    def putAll(kvs: Map[K, V]): Option[Map[K, V]] = {
+      // a key can be evicted twice in one call, so the evictions are summed
+      var evicted: Map[K, V] = null
+      val it = kvs.iterator
+      while (it.hasNext) {
+        val (key, value) = it.next
+        add(key, value)
+        if (table.isFull) {
+          val e = evict()
+          evicted = if (evicted == null) e else Semigroup.plus(evicted, e)
+        }
+      }
+      Option(evicted)
+    }
+  }
+
+  object ByteBoundedMapsideCache {
+    // roughly a LinkedHashMap entry plus our own Entry
+    val ENTRY_OVERHEAD = 64L
+    // evictions free this fraction of the byte budget, so they do not happen on every put
+    val EVICT_FRACTION = 0.25
+  }
+
+  /**
+   * Bounds the cache by the estimated bytes retained by its keys and values
+   * rather than by a number of entries, so large values such as HLLs or sets do
+   * not run the task out of heap and small values can use more entries.
+   *
+   * When the budget is exceeded, the least recently used entries are evicted
+   * until a quarter of the budget is free. Besides hits, misses and evictions,
+   * each cache adds the most it retained to the "sum of task max retained bytes"
+   * counter. Like any counter it is summed over the tasks of the job, so only a
+   * single task's value is its peak; the job total is not the peak of any task.
+   */
+  final class ByteBoundedMapsideCache[K, V](flowProcess: FlowProcess[_],
+    maxBytes: Long,
+    keySize: SizeEstimator[K],
+    valueSize: SizeEstimator[V])(implicit sg: Semigroup[V])
+    extends MapsideCache[K, V] {
+    import ByteBoundedMapsideCache._
+
+    private[this] val misses = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "misses"))
+    private[this] val hits = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "hits"))
+    private[this] val evictions = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "evictions"))
+    private[this] val maxRetained = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "sum of task max retained bytes"))
+
+    private[this] final class Entry(var value: V, val keyBytes: Long, var bytes: Long)
+
+    // access ordered, so iteration starts at the least recently used entry
+    private[this] val entries = new java.util.LinkedHashMap[K, Entry](16, 0.75f, true)
+    private[this] var retained = 0L
+    private[this] var reportedRetained = 0L
+    private[this] var localHits = 0L
+    private[this] var localMisses = 0L
+
+    def retainedBytes: Long = retained
+
+    private[this] def add(key: K, value: V): Unit = {
+      val entry = entries.get(key)
+      if (entry == null) {
+        val keyBytes = ENTRY_OVERHEAD + keySize(key)
+        val bytes = keyBytes + valueSize(value)
+        entries.put(key, new Entry(value, keyBytes, bytes))
+        retained += bytes
+        localMisses += 1
+      } else {
+        entry.value = sg.plus(entry.value, value)
+        val bytes = entry.keyBytes + valueSize(entry.value)
+        retained += bytes - entry.bytes
+        entry.bytes = bytes
+        localHits += 1
+      }
+    }
+
+    private[this] def report(): Unit = {
+      hits.increment(localHits)
+      misses.increment(localMisses)
+      localHits = 0L
+      localMisses = 0L
+      if (retained > reportedRetained) {
+        maxRetained.increment(retained - reportedRetained)
+        reportedRetained = retained
+      }
+    }
+
+    private[this] def evict(): Map[K, V] = {
+      report()
+      val target = maxBytes - (maxBytes * EVICT_FRACTION).toLong
+      val builder = Map.newBuilder[K, V]
+      var count = 0
+      val it = entries.entrySet.iterator
+      while (retained > target && it.hasNext) {
+        val e = it.next
+        builder += ((e.getKey, e.getValue.value))
+        retained -= e.getValue.bytes
+        it.remove()
+        count += 1
+      }
+      evictions.increment(count)
+      builder.result
+    }
+
+    def flush: Option[Map[K, V]] = {
+      report()
+      if (entries.isEmpty) None
+      else {
+        val builder = Map.newBuilder[K, V]
+        val it = entries.entrySet.iterator
+        while (it.hasNext) {
+          val e = it.next
+          builder += ((e.getKey, e.getValue.value))
+        }
+        entries.clear()
+        retained = 0L
+        Some(builder.result)
+      }
+    }
+
+    def put(key: K, value: V): Option[Map[K, V]] = {
+      add(key, value)
+      if (retained > maxBytes) Some(evict()) else None
+    }
+
+    def putAll(kvs: Map[K, V]): Option[Map[K, V]] = {
+      // a key can be evicted twice in one call, so the evictions are summed
+      var evicted: Map[K, V] = null
+      val it = kvs.iterator
+      while (it.hasNext) {
+        val (key, value) = it.next
+        add(key, value)
+        if (retained > maxBytes) {
+          val e = evict()
+          evicted = if (evicted == null) e else Semigroup.plus(evicted, e)
+        }
+      }
+      Option(evicted)
+    }
+  }
+
   final class AdaptiveMapsideCache[K, V](flowProcess: FlowProcess[_], adaptiveCache: AdaptiveCache[K, V])
     extends MapsideCache[K, V] {
     private[this] val misses = CounterImpl(flowProcess, StatKey(MapsideReduce.COUNTER_GROUP, "misses"))
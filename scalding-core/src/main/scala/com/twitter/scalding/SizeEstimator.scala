@@ -0,0 +1,186 @@
+/*
+Copyright 2018 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.twitter.scalding
+
+import com.twitter.scalding.serialization.Serialization
+import java.lang.reflect.{ Field, Modifier }
+import java.util.{ ArrayDeque, IdentityHashMap }
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Estimates how many bytes of heap a value retains. These are estimates to
+ * bound caches with, not exact sizes.
+ */
+trait SizeEstimator[-T] extends java.io.Serializable {
+  def apply(t: T): Long
+}
+
+object SizeEstimator {
+  val DEFAULT_SAMPLE_RATE = 32
+
+  /**
+   * Uses the serialized size when the serialization knows it cheaply, which
+   * is a lower bound on the heap size. Otherwise falls back to sampling.
+   */
+  def fromSerialization[T](ser: Serialization[T], sampleRate: Int = DEFAULT_SAMPLE_RATE): SizeEstimator[T] =
+    ser.staticSize match {
+      case Some(size) =>
+        val bytes = size.toLong
+        new SizeEstimator[T] { def apply(t: T) = bytes }
+      case None =>
+        val fallback = sampled(sampleRate)
+        new SizeEstimator[T] {
+          def apply(t: T) = ser.dynamicSize(t) match {
+            case Some(size) => size.toLong
+            case None => fallback(t)
+          }
+        }
+    }
+
+  /**
+   * Walks the object graph of one in every sampleRate values, and returns the
+   * mean of the sizes seen so far for the others. Not thread safe.
+   */
+  def sampled(sampleRate: Int = DEFAULT_SAMPLE_RATE): SizeEstimator[Any] = new SizeEstimator[Any] {
+    require(sampleRate > 0, s"sampleRate must be positive, found: $sampleRate")
+    private[this] var calls = 0L
+    private[this] var samples = 0L
+    private[this] var sampledBytes = 0L
+
+    def apply(t: Any) = {
+      calls += 1
+      if (samples == 0 || calls % sampleRate == 0) {
+        val size = ObjectSize(t)
+        samples += 1
+        sampledBytes += size
+        size
+      } else sampledBytes / samples
+    }
+  }
+}
+
+/**
+ * A rough estimate of the heap retained by an object graph, assuming a 64 bit
+ * JVM with compressed references. Only the first MaxObjects objects reached are
+ * counted, and large reference arrays are sampled, so this is cheap enough to
+ * run on a sample of the records seen by a task.
+ */
+private[scalding] object ObjectSize {
+  private val ObjectHeader = 12
+  private val ArrayHeader = 16
+  private val Reference = 4
+  private val MaxObjects = 10000
+  private val ArraySample = 100
+
+  private case class Layout(shallowSize: Long, references: Array[Field])
+
+  private[this] val layouts = new ConcurrentHashMap[Class[_], Layout]()
+
+  private def align(size: Long): Long = (size + 7) & ~7L
+
+  private def primitiveSize(cls: Class[_]): Int =
+    if (cls == java.lang.Long.TYPE || cls == java.lang.Double.TYPE) 8
+    else if (cls == java.lang.Integer.TYPE || cls == java.lang.Float.TYPE) 4
+    else if (cls == java.lang.Short.TYPE || cls == java.lang.Character.TYPE) 2
+    else 1
+
+  private def layout(cls: Class[_]): Layout = {
+    val cached = layouts.get(cls)
+    if (cached != null) cached
+    else {
+      var size = 0L
+      val references = Array.newBuilder[Field]
+      var c: Class[_] = cls
+      while (c != null) {
+        c.getDeclaredFields.foreach { f =>
+          if (!Modifier.isStatic(f.getModifiers)) {
+            val tpe = f.getType
+            if (tpe.isPrimitive) size += primitiveSize(tpe)
+            else {
+              size += Reference
+              // fields we can not read, such as in JDK classes on newer JVMs, only count as a reference
+              try {
+                f.setAccessible(true)
+                references += f
+              } catch {
+                case _: RuntimeException => ()
+              }
+            }
+          }
+        }
+        c = c.getSuperclass
+      }
+      val computed = Layout(align(ObjectHeader + size), references.result)
+      layouts.putIfAbsent(cls, computed)
+      computed
+    }
+  }
+
+  def apply(root: Any): Long =
+    if (root == null) 0L
+    else {
+      val seen = new IdentityHashMap[AnyRef, java.lang.Boolean]()
+      val pending = new ArrayDeque[AnyRef]()
+      pending.push(root.asInstanceOf[AnyRef])
+      var total = 0L
+      var visited = 0
+      while (!pending.isEmpty && visited < MaxObjects) {
+        val obj = pending.pop()
+        if (seen.put(obj, java.lang.Boolean.TRUE) == null) {
+          visited += 1
+          total += sizeOf(obj, pending)
+        }
+      }
+      total
+    }
+
+  /** the shallow size of obj, pushing what it references onto pending */
+  private def sizeOf(obj: AnyRef, pending: ArrayDeque[AnyRef]): Long = {
+    val cls = obj.getClass
+    // classes are shared by every instance
+    if (obj.isInstanceOf[Class[_]]) 0L
+    else if (cls.isArray) {
+      val component = cls.getComponentType
+      val length = java.lang.reflect.Array.getLength(obj)
+      if (component.isPrimitive) align(ArrayHeader + length.toLong * primitiveSize(component))
+      else {
+        val elements = obj.asInstanceOf[Array[AnyRef]]
+        // count a sample of large arrays, scaled up to the whole array
+        val step = math.max(1, length / ArraySample)
+        var elementBytes = 0L
+        var i = 0
+        while (i < length) {
+          val e = elements(i)
+          if (e != null) {
+            if (step == 1) pending.push(e)
+            else elementBytes += apply(e)
+          }
+          i += step
+        }
+        align(ArrayHeader + length.toLong * Reference) + elementBytes * step
+      }
+    } else {
+      val l = layout(cls)
+      var i = 0
+      while (i < l.references.length) {
+        val ref = l.references(i).get(obj)
+        if (ref != null) pending.push(ref)
+        i += 1
+      }
+      l.shallowSize
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+Copyright 2018 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.twitter.scalding
+
+import com.twitter.algebird.{ DoubleRing, IntRing, LongRing, Semigroup }
+
+/**
+ * A fixed capacity hash table that sums the values put for the same key
+ * with a Semigroup. It uses open addressing with linear probing, so a put
+ * of a key that is already present allocates nothing: the sum is written
+ * back to the value slot.
+ *
+ * Values summed with algebird's standard Long, Int or Double semigroups
+ * are kept in primitive arrays and added without boxing.
+ *
+ * Not thread safe.
+ */
+sealed abstract class SummingOpenHashTable[K, V](val capacity: Int) {
+  require(capacity > 0, s"capacity must be positive, found: $capacity")
+
+  // a power of two at least twice the capacity, so probe sequences stay short
+  private[this] val mask: Int = Integer.highestOneBit(math.max(capacity, 2) * 2 - 1) * 2 - 1
+  private[this] val keys: Array[AnyRef] = new Array[AnyRef](mask + 1)
+  private[this] var count: Int = 0
+
+  def size: Int = count
+  def isEmpty: Boolean = count == 0
+  def isFull: Boolean = count >= capacity
+
+  /** the slot for key, which is empty if the key is not present */
+  private[this] def slot(key: AnyRef): Int = {
+    var h = key.hashCode * 0x9E3779B9
+    h ^= h >>> 16
+    var i = h & mask
+    var k = keys(i)
+    while ((k ne null) && !(k == key)) {
+      i = (i + 1) & mask
+      k = keys(i)
+    }
+    i
+  }
+
+  /**
+   * Adds value to the sum for key.
+   * @return true if the key was already present
+   */
+  final def put(key: K, value: V): Boolean = {
+    val ref = if (key == null) SummingOpenHashTable.NullKey else key.asInstanceOf[AnyRef]
+    val i = slot(ref)
+    if (keys(i) eq null) {
+      keys(i) = ref
+      count += 1
+      init(i, value)
+      false
+    } else {
+      plus(i, value)
+      true
+    }
+  }
+
+  /**
+   * Removes every entry.
+   * @return the entries that were removed
+   */
+  final def drain(): Map[K, V] = {
+    val builder = Map.newBuilder[K, V]
+    var i = 0
+    while (i < keys.length) {
+      val k = keys(i)
+      if (k ne null) {
+        val key = if (k eq SummingOpenHashTable.NullKey) null else k
+        builder += ((key.asInstanceOf[K], get(i)))
+        keys(i) = null
+        clear(i)
+      }
+      i += 1
+    }
+    count = 0
+    builder.result
+  }
+
+  protected def init(i: Int, value: V): Unit
+  protected def plus(i: Int, value: V): Unit
+  protected def get(i: Int): V
+  protected def clear(i: Int): Unit
+
+  protected final def slots: Int = mask + 1
+}
+
+object SummingOpenHashTable {
+  private case object NullKey
+
+  /**
+   * A table for the given semigroup, with primitive values when it is one of
+   * algebird's Long, Int or Double semigroups
+   */
+  def apply[K, V](capacity: Int)(implicit sg: Semigroup[V]): SummingOpenHashTable[K, V] =
+    (sg: AnyRef) match {
+      case LongRing => new LongTable[K](capacity).asInstanceOf[SummingOpenHashTable[K, V]]
+      case IntRing => new IntTable[K](capacity).asInstanceOf[SummingOpenHashTable[K, V]]
+      case DoubleRing => new DoubleTable[K](capacity).asInstanceOf[SummingOpenHashTable[K, V]]
+      case _ => new GenericTable[K, V](capacity, sg)
+    }
+
+  final class GenericTable[K, V](capacity: Int, sg: Semigroup[V]) extends SummingOpenHashTable[K, V](capacity) {
+    private[this] val values: Array[AnyRef] = new Array[AnyRef](slots)
+    protected def init(i: Int, value: V) = values(i) = value.asInstanceOf[AnyRef]
+    protected def plus(i: Int, value: V) = values(i) = sg.plus(values(i).asInstanceOf[V], value).asInstanceOf[AnyRef]
+    protected def get(i: Int) = values(i).asInstanceOf[V]
+    protected def clear(i: Int) = values(i) = null
+  }
+
+  final class LongTable[K](capacity: Int) extends SummingOpenHashTable[K, Long](capacity) {
+    private[this] val values: Array[Long] = new Array[Long](slots)
+    protected def init(i: Int, value: Long) = values(i) = value
+    protected def plus(i: Int, value: Long) = values(i) += value
+    protected def get(i: Int) = values(i)
+    protected def clear(i: Int) = ()
+  }
+
+  final class IntTable[K](capacity: Int) extends SummingOpenHashTable[K, Int](capacity) {
+    private[this] val values: Array[Int] = new Array[Int](slots)
+    protected def init(i: Int, value: Int) = values(i) = value
+    protected def plus(i: Int, value: Int) = values(i) += value
+    protected def get(i: Int) = values(i)
+    protected def clear(i: Int) = ()
+  }
+
+  final class DoubleTable[K](capacity: Int) extends SummingOpenHashTable[K, Double](capacity) {
+    private[this] val values: Array[Double] = new Array[Double](slots)
+    protected def init(i: Int, value: Double) = values(i) = value
+    protected def plus(i: Int, value: Double) = values(i) += value
+    protected def get(i: Int) = values(i)
+    protected def clear(i: Int) = ()
+  }
+}
@@ -16,10 +16,91 @@ limitations under the License.
 package com.twitter.scalding
 
 import java.util.TimeZone
+import java.util.concurrent.{ Callable, ExecutionException, ExecutorCompletionService, Executors, Future, ThreadFactory }
 
 import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{ FileStatus, Path }
+import scala.util.Try
 
 object TimePathedSource {
+  /**
+   * How many paths to check at once when validating a source. 1, the default, checks them
+   * one at a time.
+   */
+  val PathCheckParallelism = "scalding.timepathedsource.check.parallelism"
+
+  /**
+   * If true the paths that are directories under the same parent, such as the hours of a
+   * day, are checked with one glob of the parent instead of one per path, when they are at
+   * least half of the parent's children. The glob lists every file under the parent, so this
+   * is off by default. This only applies when pathIsGood is not overridden.
+   */
+  val PathCheckListParents = "scalding.timepathedsource.check.listparents"
+
+  private[this] val GlobChars = "*?[]{}\\"
+
+  /**
+   * The parent and name of the directory whose files a path reads, if it has no other glob
+   * characters so all the paths under the parent can be checked with one glob.
+   */
+  private[scalding] def parentAndName(path: String): Option[(String, String)] =
+    if (!path.endsWith("/*")) None
+    else {
+      val dir = path.dropRight(2)
+      val slash = dir.lastIndexOf('/')
+      if (slash <= 0 || slash == dir.length - 1 || dir.exists(GlobChars.contains(_))) None
+      else Some((dir.take(slash), dir.drop(slash + 1)))
+    }
+
+  /**
+   * Run the checks, each returning the statuses of some paths, on up to parallelism threads.
+   * If stopOnMissing, stop at the first check that finds a missing path; the checks that were
+   * not run are left out of the result.
+   */
+  private[scalding] def runChecks(checks: Seq[() => Seq[(String, Boolean)]],
+    parallelism: Int,
+    stopOnMissing: Boolean): Seq[(String, Boolean)] = {
+    def missing(res: Seq[(String, Boolean)]): Boolean = res.exists(!_._2)
+
+    if (parallelism <= 1 || checks.size <= 1) {
+      val results = checks.iterator.map(_())
+      if (!stopOnMissing) results.flatten.toList
+      else {
+        val (good, rest) = results.span(!missing(_))
+        (good ++ rest.take(1)).flatten.toList
+      }
+    } else {
+      val pool = Executors.newFixedThreadPool(math.min(parallelism, checks.size), new ThreadFactory {
+        def newThread(r: Runnable) = {
+          val t = new Thread(r, "scalding-path-check")
+          t.setDaemon(true)
+          t
+        }
+      })
+      try {
+        val completion = new ExecutorCompletionService[Seq[(String, Boolean)]](pool)
+        val futures: Seq[Future[Seq[(String, Boolean)]]] = checks.map { check =>
+          completion.submit(new Callable[Seq[(String, Boolean)]] {
+            def call = check()
+          })
+        }
+        val results = Iterator.fill(futures.size) {
+          try completion.take().get catch {
+            case e: ExecutionException => throw e.getCause
+          }
+        }
+        if (!stopOnMissing) results.flatten.toList
+        else {
+          val (good, rest) = results.span(!missing(_))
+          val done = (good ++ rest.take(1)).flatten.toList
+          futures.foreach(_.cancel(true))
+          done
+        }
+      } finally {
+        pool.shutdownNow()
+      }
+    }
+  }
   val YEAR_MONTH_DAY = "/%1$tY/%1$tm/%1$td"
   val YEAR_MONTH_DAY_HOUR = "/%1$tY/%1$tm/%1$td/%1$tH"
 
@@ -91,12 +172,58 @@ abstract class TimeSeqPathedSource(val patterns: Seq[String], val dateRange: Dat
    * Get path statuses based on daterange. This tests each path with pathIsGood
    * (which by default checks that there is at least on file in that directory)
    */
-  def getPathStatuses(conf: Configuration): Iterable[(String, Boolean)] =
-    allPaths.map { path => (path, pathIsGood(path, conf)) }
+  def getPathStatuses(conf: Configuration): Iterable[(String, Boolean)] = {
+    val paths = allPaths.toList
+    val statuses = checkPaths(paths, conf, stopOnMissing = false).toMap
+    paths.map { path => (path, statuses(path)) }
+  }
+
+  /**
+   * The checks covering all the given paths. Paths sharing a parent directory are
+   * checked together with one glob when PathCheckListParents allows it and they are
+   * most of the parent's children.
+   */
+  private[scalding] def pathChecks(paths: List[String], conf: Configuration): Seq[() => Seq[(String, Boolean)]] = {
+    def single(path: String): () => Seq[(String, Boolean)] =
+      () => List((path, pathIsGood(path, conf)))
+
+    // the glob of a parent lists the files of all its children, not only the ones we check
+    def coversParent(parent: String, checked: Int): Boolean =
+      Try {
+        val dir = new Path(parent)
+        dir.getFileSystem(conf).listStatus(dir).length
+      }.toOption.exists { children => checked * 2 >= children }
+
+    if (!conf.getBoolean(TimePathedSource.PathCheckListParents, false) || !hasDefaultPathIsGood) {
+      paths.map(single)
+    } else {
+      val byParent = paths.groupBy(TimePathedSource.parentAndName(_).map(_._1))
+      // keep the order of the paths, so a strict check fails at the earliest missing one
+      paths.flatMap { path => TimePathedSource.parentAndName(path).map(_._1) }.distinct
+        .flatMap { parent =>
+          val grouped = byParent(Some(parent))
+          if (grouped.size == 1 || !coversParent(parent, grouped.size)) grouped.map(single)
+          else List { () =>
+            val byName = FileSource.glob(parent + "/*/*", conf)
+              .groupBy { status: FileStatus => status.getPath.getParent.getName }
+            grouped.map { path =>
+              val name = TimePathedSource.parentAndName(path).get._2
+              (path, statusesAreGood(byName.getOrElse(name, Nil), conf))
+            }
+          }
+        } ++ byParent.getOrElse(None, Nil).map(single)
+    }
+  }
+
+  private[this] def checkPaths(paths: List[String], conf: Configuration, stopOnMissing: Boolean): Seq[(String, Boolean)] =
+    TimePathedSource.runChecks(pathChecks(paths, conf),
+      conf.getInt(TimePathedSource.PathCheckParallelism, 1),
+      stopOnMissing)
 
   // Override because we want to check UNGLOBIFIED paths that each are present.
+  // This stops at the first missing path we find.
   override def hdfsReadPathsAreGood(conf: Configuration): Boolean =
-    getPathStatuses(conf).forall {
+    checkPaths(allPaths.toList, conf, stopOnMissing = true).forall {
       case (path, good) =>
         if (!good) {
           System.err.println("[ERROR] Path: " + path + " is missing in: " + toString)
@@ -21,16 +21,32 @@ object Common {
   def unrollTaps(step: FlowStep[JobConf]): Seq[Tap[_, _, _]] =
     unrollTaps(step.getSources.asScala.toSeq)
 
+  private def hfsSize(tap: Tap[_, _, _], conf: JobConf): Option[Long] =
+    tap match {
+      case tap: GlobHfs => Some(tap.getSize(conf))
+      case tap: Hfs => Some(GlobHfs.getSize(tap.getPath, conf))
+      case _ => None
+    }
+
   def inputSizes(step: FlowStep[JobConf]): Seq[(String, Long)] = {
     val conf = step.getConfig
-    unrollTaps(step).flatMap {
-      case tap: GlobHfs => Some(tap.toString -> tap.getSize(conf))
-      case tap: Hfs => Some(tap.toString -> GlobHfs.getSize(tap.getPath, conf))
-      case tap =>
-        LOG.warn("InputSizeReducerEstimator unable to calculate size: " + tap)
-        None
+    unrollTaps(step).flatMap { tap =>
+      hfsSize(tap, conf) match {
+        case Some(size) => Some(tap.toString -> size)
+        case None =>
+          LOG.warn("InputSizeReducerEstimator unable to calculate size: " + tap)
+          None
+      }
     }
   }
 
+  /**
+   * The total size of the files read by tap, if they are all on an hfs tap
+   */
+  def inputSize(tap: Tap[_, _, _], conf: JobConf): Option[Long] = {
+    val sizes = unrollTaps(Seq(tap)).map(hfsSize(_, conf))
+    if (sizes.forall(_.isDefined)) Some(sizes.flatten.sum) else None
+  }
+
   def totalInputSize(step: FlowStep[JobConf]): Long = inputSizes(step).map(_._2).sum
 }
\ No newline at end of file
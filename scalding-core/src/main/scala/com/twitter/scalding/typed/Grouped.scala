@@ -53,6 +53,21 @@ object CoGroupable extends Serializable {
     }
   }
 
+  /**
+   * The input of cg if it does not change the values, such as a group
+   * with no sorting or reducing, else None
+   */
+  final def identityValues[K, V](cg: CoGroupable[K, V]): Option[TypedPipe[(K, V)]] =
+    cg match {
+      case step @ IdentityReduce(_, _, _, _, _) =>
+        type TK[T] = TypedPipe[(K, T)]
+        Some(step.evidence.subst[TK](step.mapped))
+      case step @ UnsortedIdentityReduce(_, _, _, _, _) =>
+        type TK[T] = TypedPipe[(K, T)]
+        Some(step.evidence.subst[TK](step.mapped))
+      case _ => None
+    }
+
   /**
    * Returns true if the group mapping function definitely returns 0 or 1
    * element.
@@ -112,6 +112,22 @@ object Joiner extends java.io.Serializable {
     def apply(k: K, itv: Iterator[V1], itu: Iterable[V2]) =
       itv.flatMap(hj(k, _, itu))
   }
+  /**
+   * Only correct for join functions where splitsLeftValues is true
+   */
+  final case class HashJoinFromJoin[K, V1, V2, R](jf: (K, Iterator[V1], Iterable[V2]) => Iterator[R]) extends Function3[K, V1, Iterable[V2], Iterator[R]] {
+    def apply(k: K, v: V1, itu: Iterable[V2]) =
+      jf(k, Iterator.single(v), itu)
+  }
+  /**
+   * The same join as hj, but the cascading backend increments the given
+   * counter once in each task that runs it, to record that a join was planned
+   * a certain way without a cost per record
+   */
+  final case class CountedHashJoin[K, V1, V2, R](hj: (K, V1, Iterable[V2]) => Iterator[R], group: String, counter: String) extends Function3[K, V1, Iterable[V2], Iterator[R]] {
+    def apply(k: K, v: V1, itu: Iterable[V2]) =
+      hj(k, v, itu)
+  }
 
   /**
    * an inner-like join function is empty definitely if either side is empty
@@ -172,7 +188,26 @@ object Joiner extends java.io.Serializable {
       case FilteredHashJoin(jf, _) => isInnerHashJoinLike(jf)
       case MappedHashJoin(jf, _) => isInnerHashJoinLike(jf)
       case FlatMappedHashJoin(jf, _) => isInnerHashJoinLike(jf)
+      case HashJoinFromJoin(jf) => isInnerJoinLike(jf)
+      case CountedHashJoin(jf, _, _) => isInnerHashJoinLike(jf)
       case _ => None
     }
+
+  /**
+   * True if the join function gives the same result when the left values of
+   * a key are split into several groups, each joined with all the right values.
+   * These joins can be done as a hash join, or with the left values of a key
+   * spread across reducers.
+   */
+  final def splitsLeftValues(jf: Function3[_, _, _, _]): Boolean =
+    jf match {
+      case InnerJoin() => true
+      case LeftJoin() => true
+      case JoinFromHashJoin(_) => true
+      case FilteredJoin(jf, _) => splitsLeftValues(jf)
+      case MappedJoin(jf, _) => splitsLeftValues(jf)
+      case FlatMappedJoin(jf, _) => splitsLeftValues(jf)
+      case _ => false
+    }
 }
 
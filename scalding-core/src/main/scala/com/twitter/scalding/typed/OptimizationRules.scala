@@ -2,10 +2,14 @@ package com.twitter.scalding.typed
 
 import com.twitter.algebird.Monoid
 import com.stripe.dagon.{ FunctionK, Memoize, Rule, PartialRule, Dag, Literal }
+import com.twitter.scalding.SizeEstimator
 import com.twitter.scalding.typed.functions.{ FlatMapping, FlatMappedFn, FlatMapValuesToFlatMap, FilterKeysToFilter, FilterGroup, Fill, MapValuesToMap, MapGroupMapValues, MapGroupFlatMapValues, MergeFlatMaps, SumAll, MapValueStream }
 import com.twitter.scalding.typed.functions.ComposedFunctions.{ ComposedMapFn, ComposedFilterFn, ComposedOnComplete }
+import org.slf4j.LoggerFactory
 
 object OptimizationRules {
+  private[this] val logger = LoggerFactory.getLogger(getClass)
+
   type LiteralPipe[T] = Literal[TypedPipe, T]
 
   import Literal.{ Unary, Binary }
@@ -1085,6 +1089,95 @@ object OptimizationRules {
   }
 
 
+  /**
+   * Replace inner and left joins of ungrouped pipes with a skew join that
+   * samples the keys of the left side and spreads its heavy keys across
+   * several reducers. This adds a map/reduce job, so it is only in the
+   * default rules when Config.getSkewJoinAuto is set.
+   *
+   * defaultReducers is used for joins that do not set their own reducers
+   */
+  final case class ReplicateSkewedJoinKeys(sampleRate: Double, defaultReducers: Option[Int]) extends Rule[TypedPipe] {
+    require(sampleRate > 0.0 && sampleRate <= 1.0, s"sampleRate must be in (0, 1], found: $sampleRate")
+
+    def apply[T](on: Dag[TypedPipe]) = {
+      case CoGroupedPipe(cg) => SkewJoin.replicateHeavyKeys(cg, sampleRate, defaultReducers)
+      case _ => None
+    }
+  }
+
+  /**
+   * Plan inner and left joins of ungrouped pipes as hash joins when the right
+   * side is known to be at most maxBytes, so it is replicated to the mappers
+   * instead of shuffling both sides. sourceSize gives the bytes a source reads,
+   * if known. Sizes are carried through operations that do not add records,
+   * assuming maps do not make records much larger.
+   *
+   * Each map task that runs a join planned this way increments a counter
+   * once, so the decision shows up in the job's counters as well as the logs.
+   */
+  final case class HashJoinSmallRight(maxBytes: Long, sourceSize: TypedSource[Any] => Option[Long]) extends Rule[TypedPipe] {
+    import HashJoinSmallRight.{ CounterGroup, CounterName }
+
+    def apply[T](on: Dag[TypedPipe]) = {
+      case CoGroupedPipe(cg) => hashJoin(cg, cg.descriptions)
+      case _ => None
+    }
+
+    private def hashJoin[K, V](cg: CoGrouped[K, V], descriptions: Seq[String]): Option[TypedPipe[(K, V)]] =
+      cg match {
+        // a hash join has no reducers
+        case CoGrouped.WithReducers(on, _) => hashJoin(on, descriptions)
+        case CoGrouped.WithDescription(on, _) => hashJoin(on, descriptions)
+        case CoGrouped.Pair(left, right: HashJoinable[K, b], jf) if Joiner.splitsLeftValues(jf) =>
+          for {
+            l <- CoGroupable.identityValues(left)
+            bytes <- size(right.mapped)
+            if bytes <= maxBytes
+          } yield {
+            logger.info(s"planning a join as a hash join, its right side is about $bytes bytes, at most $maxBytes: " +
+              descriptions.mkString(", "))
+            val joined: TypedPipe[(K, V)] =
+              HashCoGroup(l, right, Joiner.CountedHashJoin(Joiner.HashJoinFromJoin(jf), CounterGroup, CounterName))
+            descriptions.foldLeft(joined)(_.withDescription(_))
+          }
+        case _ => None
+      }
+
+    private def size(t: TypedPipe[Any]): Option[Long] =
+      t match {
+        case EmptyTypedPipe => Some(0L)
+        case IterablePipe(iterable) =>
+          // stop once we know it is too big
+          val estimate = SizeEstimator.sampled()
+          val it = iterable.iterator
+          var bytes = 0L
+          while (it.hasNext && bytes <= maxBytes) {
+            bytes += estimate(it.next)
+          }
+          Some(bytes)
+        case SourcePipe(src) => sourceSize(src)
+        case Filter(input, _) => size(input)
+        case FilterKeys(input, _) => size(input)
+        case Mapped(input, _) => size(input)
+        case MapValues(input, _) => size(input)
+        case Fork(input) => size(input)
+        case ForceToDisk(input) => size(input)
+        case WithDescriptionTypedPipe(input, _) => size(input)
+        case MergedTypedPipe(left, right) =>
+          for {
+            l <- size(left)
+            r <- size(right)
+          } yield l + r
+        case _ => None
+      }
+  }
+
+  object HashJoinSmallRight {
+    val CounterGroup = "scalding.optimizer"
+    val CounterName = "hash join small right tasks"
+  }
+
   /**
    * Prefer to do mapValues/flatMapValues in a Reduce/Join
    * so we can avoid some boxing in-and-out of cascading
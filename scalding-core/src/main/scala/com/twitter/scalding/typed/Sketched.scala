@@ -16,8 +16,6 @@ limitations under the License.
 package com.twitter.scalding.typed
 
 import com.twitter.algebird.{ Bytes, CMS, Batched }
-import com.twitter.scalding.serialization.macros.impl.BinaryOrdering._
-import com.twitter.scalding.serialization.{ OrderedSerialization, OrderedSerialization2 }
 import com.twitter.algebird.CMSMonoid
 
 // This was a bad design choice, we should have just put these in the CMSHasher object
@@ -117,14 +115,8 @@ case class SketchJoined[K: Ordering, V, V2, R](left: Sketched[K, V],
       .map{ case ((r, k), v) => (k, v) }
   }
 
-  private implicit def intKeyOrd: Ordering[(Int, K)] = {
-    val kord = implicitly[Ordering[K]]
-
-    kord match {
-      case kos: OrderedSerialization[_] => new OrderedSerialization2(ordSer[Int], kos.asInstanceOf[OrderedSerialization[K]])
-      case _ => Ordering.Tuple2[Int, K]
-    }
-  }
+  private implicit def intKeyOrd: Ordering[(Int, K)] =
+    SkewJoin.subKeyOrdering(implicitly[Ordering[K]])
 
 }
 
@@ -0,0 +1,148 @@
+/*
+Copyright 2018 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.twitter.scalding.typed
+
+import com.twitter.scalding.serialization.macros.impl.BinaryOrdering._
+import com.twitter.scalding.serialization.{ OrderedSerialization, OrderedSerialization2 }
+import com.twitter.scalding.typed.functions.{ Constant, WithConstant }
+import java.util.Random
+
+/**
+ * Plans a join so the heavy keys of the left side are spread across
+ * several reducers, without the user picking a sketch size or replication
+ * strategy. The keys of a sample of the left side are counted in a pre-pass,
+ * and only keys that would take up too much of one reducer are replicated:
+ * their left values go to one of n sub-keys at random and their right values
+ * to all n. Every other key keeps sub-key 0, so the long tail is shuffled
+ * exactly as in a normal join.
+ *
+ * This is only correct for joins that handle each left value on its own,
+ * such as join and leftJoin, and it costs an extra map/reduce job for the
+ * sample, so it is enabled with Config.setSkewJoinAuto.
+ */
+object SkewJoin extends Serializable {
+  // the most of any one reducer we want to try to take up with a single key
+  val MaxReducerFraction = 0.1
+  val DefaultSampleRate = 0.01
+
+  private val Seed = 12345L
+
+  /**
+   * If cg is an inner or left join of two pipes that have not been reduced,
+   * returns the equivalent skew join, else None
+   */
+  def replicateHeavyKeys[K, R](cg: CoGrouped[K, R], sampleRate: Double, defaultReducers: Option[Int]): Option[TypedPipe[(K, R)]] =
+    cg.reducers.orElse(defaultReducers) match {
+      // with one reducer every key goes to the same place anyway
+      case Some(reducers) if reducers > 1 =>
+        plan(cg, cg.keyOrdering, reducers, cg.descriptions, sampleRate)
+      case _ => None
+    }
+
+  private def plan[K, R](cg: CoGrouped[K, R],
+    ord: Ordering[K],
+    reducers: Int,
+    descriptions: Seq[String],
+    sampleRate: Double): Option[TypedPipe[(K, R)]] =
+    cg match {
+      case CoGrouped.WithReducers(on, _) => plan(on, ord, reducers, descriptions, sampleRate)
+      case CoGrouped.WithDescription(on, _) => plan(on, ord, reducers, descriptions, sampleRate)
+      case CoGrouped.Pair(left, right, jf) if Joiner.splitsLeftValues(jf) =>
+        for {
+          l <- CoGroupable.identityValues(left)
+          r <- CoGroupable.identityValues(right)
+        } yield replicate(l, r, jf, ord, reducers, descriptions, sampleRate)
+      case _ => None
+    }
+
+  private def replicate[K, A, B, C](left: TypedPipe[(K, A)],
+    right: TypedPipe[(K, B)],
+    fn: (K, Iterator[A], Iterable[B]) => Iterator[C],
+    ord: Ordering[K],
+    reducers: Int,
+    descriptions: Seq[String],
+    sampleRate: Double): TypedPipe[(K, C)] = {
+
+    val sampled = left.keys.sample(sampleRate, Seed)
+    val total = sampled.map(Constant(1L)).sum
+    val heavy = sampled
+      .map(WithConstant[K, Long](1L))
+      .sumByKey(ord, implicitly)
+      .toTypedPipe
+      .cross(total)
+      .flatMap(Replicas[K](reducers))
+
+    val heavyKeys = Grouped(heavy)(ord)
+    val lhs = left.hashLeftJoin(heavyKeys).map(RouteLeft[K, A](Seed))
+    val rhs = right.hashLeftJoin(heavyKeys).flatMap(RouteRight[K, B]())
+
+    val subKeyOrd = subKeyOrdering(ord)
+    val joined = Grouped(lhs)(subKeyOrd)
+      .cogroup(Grouped(rhs)(subKeyOrd))(SubKeyJoin(fn))
+      .withReducers(reducers)
+
+    descriptions.foldLeft(joined)(_.withDescription(_))
+      .toTypedPipe
+      .map(DropSubKey[K, C]())
+  }
+
+  def subKeyOrdering[K](ord: Ordering[K]): Ordering[(Int, K)] =
+    ord match {
+      case kos: OrderedSerialization[_] => new OrderedSerialization2(ordSer[Int], kos.asInstanceOf[OrderedSerialization[K]])
+      case _ => Ordering.Tuple2(Ordering.Int, ord)
+    }
+
+  /**
+   * Given the sampled count of a key and the sampled total, the number of
+   * reducers the key needs, for the keys that need more than one
+   */
+  final case class Replicas[K](reducers: Int) extends Function1[((K, Long), Long), List[(K, Int)]] {
+    def apply(countTotal: ((K, Long), Long)) = {
+      val ((k, count), total) = countTotal
+      val maxPerReducer = ((total * MaxReducerFraction) / reducers) + 1
+      val replicas = math.ceil(count / maxPerReducer).toInt.min(reducers)
+      if (replicas > 1) (k, replicas) :: Nil else Nil
+    }
+  }
+
+  final case class RouteLeft[K, V](seed: Long) extends Function1[(K, (V, Option[Int])), ((Int, K), V)] {
+    private[this] lazy val rng = new Random(seed)
+    def apply(kv: (K, (V, Option[Int]))) = {
+      val (k, (v, replicas)) = kv
+      val subKey = replicas match {
+        case Some(n) => rng.nextInt(n)
+        case None => 0
+      }
+      ((subKey, k), v)
+    }
+  }
+
+  final case class RouteRight[K, V]() extends Function1[(K, (V, Option[Int])), Iterator[((Int, K), V)]] {
+    def apply(kv: (K, (V, Option[Int]))) = {
+      val (k, (v, replicas)) = kv
+      Iterator.range(0, replicas.getOrElse(1)).map { i => ((i, k), v) }
+    }
+  }
+
+  final case class SubKeyJoin[K, A, B, C](fn: (K, Iterator[A], Iterable[B]) => Iterator[C])
+    extends Function3[(Int, K), Iterator[A], Iterable[B], Iterator[C]] {
+    def apply(subKey: (Int, K), left: Iterator[A], right: Iterable[B]) = fn(subKey._2, left, right)
+  }
+
+  final case class DropSubKey[K, V]() extends Function1[((Int, K), V), (K, V)] {
+    def apply(kv: ((Int, K), V)) = (kv._1._2, kv._2)
+  }
+}
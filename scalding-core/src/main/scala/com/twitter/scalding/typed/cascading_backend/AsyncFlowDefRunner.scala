@@ -18,6 +18,7 @@ import com.twitter.scalding.{
 }
 import com.twitter.scalding.typed.TypedSink
 import com.twitter.scalding.cascading_interop.FlowListenerPromise
+import com.twitter.scalding.tap.{ FileMetadataCache, FileMetadataCacheFlowListener, FileMetadataCaches }
 import com.stripe.dagon.{ Rule, HMap }
 import java.util.UUID
 import java.util.concurrent.LinkedBlockingQueue
@@ -40,6 +41,19 @@ object AsyncFlowDefRunner {
     result: Promise[(Long, JobStats)]) extends FlowDefAction
   private case object Stop extends FlowDefAction
 
+  /**
+   * Add the filesystem metadata cache hits and misses of planning a flow to its counters
+   */
+  def withCacheCounters(stats: JobStats, hitsMisses: (Long, Long)): JobStats =
+    hitsMisses match {
+      case (0L, 0L) => stats
+      case (hits, misses) =>
+        val counters = stats.counters
+        val group = counters.getOrElse(FileMetadataCaches.COUNTER_GROUP, Map.empty[String, Long]) ++
+          Map(FileMetadataCaches.HITS_COUNTER -> hits, FileMetadataCaches.MISSES_COUNTER -> misses)
+        JobStats(stats.toMap + ("counters" -> (counters + (FileMetadataCaches.COUNTER_GROUP -> group))))
+    }
+
   /**
    * This is a Thread used as a shutdown hook to clean up temporary files created by some Execution
    *
@@ -154,6 +168,36 @@ class AsyncFlowDefRunner(mode: CascadingMode) extends Writer {
   private def getState: State =
     updateState { s => (s, s) }
 
+  // the cache the flows built with conf look up metadata in
+  private def metadataCache(conf: Config): FileMetadataCache =
+    mode match {
+      case hadoopMode: HadoopMode =>
+        val jobConf = new Configuration(hadoopMode.jobConf)
+        conf.toMap.foreach { case (k, v) => jobConf.set(k, v) }
+        FileMetadataCaches.forConf(jobConf)
+      case _ => FileMetadataCaches.NONE
+    }
+
+  // the cache hits and misses already added to the counters of a flow
+  private[this] var reportedCacheCounts: (FileMetadataCache, Long, Long) = (FileMetadataCaches.NONE, 0L, 0L)
+
+  /**
+   * The cache hits and misses since the last flow to finish, so each one
+   * is counted in exactly one flow of this execution
+   */
+  private def takeCacheCounts(conf: Config): (Long, Long) = {
+    val cache = metadataCache(conf)
+    mutex.synchronized {
+      val (hits, misses) = (cache.getHits, cache.getMisses)
+      val (reportedHits, reportedMisses) = reportedCacheCounts match {
+        case (reported, h, m) if reported eq cache => (h, m)
+        case _ => (0L, 0L)
+      }
+      reportedCacheCounts = (cache, hits, misses)
+      (hits - reportedHits, misses - reportedMisses)
+    }
+  }
+
   private val messageQueue: LinkedBlockingQueue[AsyncFlowDefRunner.FlowDefAction] =
     new LinkedBlockingQueue[AsyncFlowDefRunner.FlowDefAction]()
 
@@ -168,11 +212,16 @@ class AsyncFlowDefRunner(mode: CascadingMode) extends Writer {
         case Stop => ()
         case RunFlowDef(conf, fd, promise) =>
           try {
-            val ctx = ExecutionContext.newContext(conf.setScaldingFlowCounterValue(id))(fd, mode)
+            val flowConf = conf.setScaldingFlowCounterValue(id)
+            val ctx = ExecutionContext.newContext(flowConf)(fd, mode)
             ctx.buildFlow match {
               case Success(Some(flow)) =>
+                // added first so later flows never see stale metadata for what this one wrote
+                flow.addListener(new FileMetadataCacheFlowListener)
                 val future = FlowListenerPromise
-                  .start(flow, { f: Flow[_] => (id, JobStats(f.getFlowStats)) })
+                  .start(flow, { f: Flow[_] =>
+                    (id, withCacheCounters(JobStats(f.getFlowStats), takeCacheCounts(flowConf)))
+                  })
 
                 promise.completeWith(future)
               case Success(None) =>
@@ -259,7 +308,7 @@ class AsyncFlowDefRunner(mode: CascadingMode) extends Writer {
     val done = Promise[Unit]()
 
     val phases: Seq[Rule[TypedPipe]] =
-      CascadingBackend.defaultOptimizationRules(conf)
+      CascadingBackend.defaultOptimizationRules(conf, mode)
 
     val optimizedWrites = ToWrite.optimizeWriteBatch(writes, phases)
 
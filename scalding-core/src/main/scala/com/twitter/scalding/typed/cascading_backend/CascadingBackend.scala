@@ -9,9 +9,10 @@ import com.twitter.scalding.TupleConverter.{ singleConverter, tuple2Converter }
 import com.twitter.scalding.TupleSetter.{ singleSetter, tup2Setter }
 import com.twitter.scalding.{
   CleanupIdentityFunction, Config, Dsl, Execution, Field, FlowState, FlowStateMap, GroupBuilder,
-  HadoopMode, IncrementCounters, IterableSource, MapsideReduce, Mode, RichFlowDef,
-  RichPipe, TupleConverter, TupleGetter, TupleSetter, TypedBufferOp, WrappedJoiner, Write
+  HadoopMode, IncrementCounters, IterableSource, MapsideReduce, Mode, Read, RichFlowDef,
+  RichPipe, Source, TupleConverter, TupleGetter, TupleSetter, TypedBufferOp, WrappedJoiner, Write
 }
+import com.twitter.scalding.estimation.Common
 import com.twitter.scalding.typed._
 import com.twitter.scalding.typed.functions.{ FilterKeysToFilter, MapValuesToMap, FlatMapValuesToFlatMap }
 import com.twitter.scalding.serialization.{
@@ -23,6 +24,7 @@ import com.twitter.scalding.serialization.{
   WrappedSerialization
 }
 import java.util.WeakHashMap
+import scala.util.{ Failure, Success, Try }
 import org.slf4j.LoggerFactory
 
 object CascadingBackend {
@@ -428,17 +430,50 @@ object CascadingBackend {
         val force =
           if (config.getHashJoinAutoForceRight) OptimizationRules.ForceToDiskBeforeHashJoin
           else Rule.empty[TypedPipe]
-        std(force)
+        // plan skew joins first, so the standard rules also apply to the pipes they add
+        if (config.getSkewJoinAuto)
+          OptimizationRules.ReplicateSkewedJoinKeys(config.getSkewJoinSampleRate, config.getNumReducers) +: std(force)
+        else std(force)
     }
   }
 
+  /**
+   * The default rules, plus the rules that need the size of the sources
+   * in this mode, such as planning joins with a small right side as hash joins.
+   * Sources are sized as in InputSizeReducerEstimator.
+   */
+  def defaultOptimizationRules(config: Config, mode: Mode): Seq[Rule[TypedPipe]] =
+    (mode, config.getHashJoinAutoMaxBytes) match {
+      // the user has picked the rules themselves
+      case _ if config.getOptimizationPhases.isDefined => defaultOptimizationRules(config)
+      case (hadoop: HadoopMode, Some(maxBytes)) =>
+        // rules are applied until nothing changes, so only size each source once
+        val sizes = scala.collection.mutable.Map.empty[TypedSource[Any], Option[Long]]
+        val cachedSize = { src: TypedSource[Any] => sizes.getOrElseUpdate(src, sourceSize(hadoop, src)) }
+        // try hash joins first, they are better than any other plan of a join
+        OptimizationRules.HashJoinSmallRight(maxBytes, cachedSize) +: defaultOptimizationRules(config)
+      case _ => defaultOptimizationRules(config)
+    }
+
+  private def sourceSize(mode: HadoopMode, src: TypedSource[Any]): Option[Long] =
+    src match {
+      case s: Source =>
+        Try(Common.inputSize(s.createTap(Read)(mode), mode.jobConf)) match {
+          case Success(size) => size
+          case Failure(e) =>
+            logger.warn(s"unable to get the size of $s", e)
+            None
+        }
+      case _ => None
+    }
+
   final def toPipe[U](p: TypedPipe[U], fieldNames: Fields)(implicit flowDef: FlowDef, mode: Mode, setter: TupleSetter[U]): Pipe = {
 
     val phases = defaultOptimizationRules(
       mode match {
         case h: HadoopMode => Config.fromHadoop(h.jobConf)
         case _ => Config.empty
-      })
+      }, mode)
     val (d, id) = Dag(p, OptimizationRules.toLiteral)
     val d1 = d.applySeq(phases)
     val p1 = d1.evaluate(id)
@@ -471,7 +506,7 @@ object CascadingBackend {
         mode match {
           case h: HadoopMode => Config.fromHadoop(h.jobConf)
           case _ => Config.empty
-        })
+        }, mode)
       val optDag = rootedDag.applySeq(phases)
       def doWrite[A](pair: (Id[A], TypedSink[A])): Unit = {
         val optPipe = optDag.evaluate(pair._1)
@@ -15,13 +15,47 @@ limitations under the License.
 */
 package com.twitter.scalding.typed.cascading_backend
 
+import cascading.flow.FlowProcess
 import cascading.pipe.joiner.{ Joiner => CJoiner, JoinerClosure }
 import cascading.tuple.{ Tuple => CTuple }
 
+import com.twitter.scalding.{ CounterImpl, StatKey }
 import com.twitter.scalding.serialization.Externalizer
-import com.twitter.scalding.typed.MultiJoinFunction
+import com.twitter.scalding.typed.{ Joiner, MultiJoinFunction }
 
 import scala.collection.JavaConverters._
+import scala.collection.mutable.ArrayBuffer
+
+object HashJoiner {
+  val COUNTER_GROUP = "HashJoiner"
+  /**
+   * When the right side has more than one value per key, the values for a key are
+   * computed once and kept in memory if there are at most this many of them, and
+   * reused for later left values with the same key. Otherwise they are computed
+   * again each time the joiner iterates them.
+   */
+  val MATERIALIZE_THRESHOLD_KEY = "scalding.hashjoin.right.materialize.threshold"
+  val DEFAULT_MATERIALIZE_THRESHOLD = 1000
+  /**
+   * The most right values kept in memory for all keys at once. The values of the
+   * keys used least recently are dropped first.
+   */
+  val CACHE_MAX_VALUES_KEY = "scalding.hashjoin.right.cache.max.values"
+  val DEFAULT_CACHE_MAX_VALUES = 100000
+
+  private def getNonNegative(fp: FlowProcess[_], key: String, default: Int): Int =
+    Option(fp.getStringProperty(key))
+      .filterNot { _.isEmpty }
+      .map { t =>
+        val value = t.toInt
+        require(value >= 0, s"$key must not be negative, found: $t")
+        value
+      }
+      .getOrElse(default)
+
+  // cached for keys with more than the threshold of values, which are never materialized
+  private case object Streamed
+}
 
 /**
  * Only intended to be use to implement the hashCogroup on TypedPipe/Grouped
@@ -33,6 +67,106 @@ class HashJoiner[K, V, W, R](
 
   private[this] val joinEx = Externalizer(joiner)
 
+  // set up on the first call, once we have a FlowProcess
+  @transient private[this] var materializeThreshold: Int = -1
+  @transient private[this] var materialized: CounterImpl = null
+  @transient private[this] var streamed: CounterImpl = null
+  @transient private[this] var cacheMaxValues: Int = 0
+  // the materialized right values, or Streamed, of the keys used most recently
+  @transient private[this] var cache: java.util.LinkedHashMap[Any, AnyRef] = null
+  @transient private[this] var cachedValues: Long = 0L
+  @transient private[this] var counted: Boolean = false
+
+  private[this] def setup(fp: FlowProcess[_]): Unit =
+    if (materializeThreshold < 0) {
+      materializeThreshold = HashJoiner.getNonNegative(fp, HashJoiner.MATERIALIZE_THRESHOLD_KEY, HashJoiner.DEFAULT_MATERIALIZE_THRESHOLD)
+      cacheMaxValues = HashJoiner.getNonNegative(fp, HashJoiner.CACHE_MAX_VALUES_KEY, HashJoiner.DEFAULT_CACHE_MAX_VALUES)
+      cache = new java.util.LinkedHashMap[Any, AnyRef](16, 0.75f, true)
+      materialized = CounterImpl(fp, StatKey("right materialized", HashJoiner.COUNTER_GROUP))
+      streamed = CounterImpl(fp, StatKey("right streamed", HashJoiner.COUNTER_GROUP))
+    }
+
+  /**
+   * A CountedHashJoin increments its counter the first time this task joins
+   */
+  private[this] def countJoin(fp: FlowProcess[_]): Unit =
+    if (!counted) {
+      counted = true
+      joiner match {
+        case Joiner.CountedHashJoin(_, group, counter) => CounterImpl(fp, StatKey(counter, group)).increment(1L)
+        case _ => ()
+      }
+    }
+
+  /**
+   * The values for key in an array if there are at most materializeThreshold
+   * of them, otherwise an Iterable that computes them on each iteration.
+   * The right side is the same for every left value in this task, so the
+   * arrays, and which keys have too many values, are cached for later left
+   * values with the same key.
+   */
+  private[this] def rightValues(key: K, jc: JoinerClosure): Iterable[W] =
+    cache.get(key) match {
+      case HashJoiner.Streamed => streamedValues(key, jc, None)
+      case null => computeRightValues(key, jc)
+      case values => values.asInstanceOf[Seq[W]]
+    }
+
+  private[this] def compute(key: K, jc: JoinerClosure): Iterator[W] =
+    rightGetter(key, jc.getIterator(1).asScala.map(_.getObject(1): Any), Nil)
+
+  private[this] def computeRightValues(key: K, jc: JoinerClosure): Iterable[W] = {
+    val it = compute(key, jc)
+    val buffer = new ArrayBuffer[Any]
+    while (buffer.size < materializeThreshold && it.hasNext) {
+      buffer += it.next
+    }
+
+    if (it.hasNext) {
+      streamed.increment(1L)
+      addToCache(key, HashJoiner.Streamed, 1)
+      streamedValues(key, jc, Some(buffer.iterator.asInstanceOf[Iterator[W]] ++ it))
+    } else {
+      materialized.increment(1L)
+      // copied into an array of exactly the right size
+      val values = buffer.toArray[Any].toSeq.asInstanceOf[Seq[W]]
+      addToCache(key, values, values.size)
+      values
+    }
+  }
+
+  /**
+   * Computes the values on each iteration, except the first, which uses
+   * started if it is given
+   */
+  private[this] def streamedValues(key: K, jc: JoinerClosure, started: Option[Iterator[W]]): Iterable[W] =
+    new Iterable[W] {
+      private[this] var first = started
+      def iterator = first match {
+        case Some(it) =>
+          first = None
+          it
+        case None => compute(key, jc)
+      }
+    }
+
+  private[this] def addToCache(key: K, values: AnyRef, size: Int): Unit = {
+    // an empty array still takes up memory
+    val weight = size.max(1)
+    if (weight <= cacheMaxValues) {
+      cache.put(key, values)
+      cachedValues += weight
+      val eldest = cache.entrySet.iterator
+      while (cachedValues > cacheMaxValues) {
+        eldest.next.getValue match {
+          case seq: Seq[_] => cachedValues -= seq.size.max(1)
+          case _ => cachedValues -= 1
+        }
+        eldest.remove()
+      }
+    }
+  }
+
   override def getIterator(jc: JoinerClosure) = {
     // The left one cannot be iterated multiple times on Hadoop:
     val leftIt = jc.getIterator(0).asScala // should only be 0 or 1 here
@@ -42,6 +176,7 @@ class HashJoiner[K, V, W, R](
       // In this branch there must be at least one item on the left in a hash-join
       val left = leftIt.buffered
       val key = left.head.getObject(0).asInstanceOf[K]
+      countJoin(jc.getFlowProcess)
 
       // It is safe to iterate over the right side again and again
 
@@ -50,11 +185,8 @@ class HashJoiner[K, V, W, R](
           // Materialize this once for all left values
           rightGetter(key, jc.getIterator(1).asScala.map(_.getObject(1): Any), Nil).toList
         } else {
-          // TODO: it might still be good to count how many there are and materialize
-          // in memory without reducing again
-          new Iterable[W] {
-            def iterator = rightGetter(key, jc.getIterator(1).asScala.map(_.getObject(1): Any), Nil)
-          }
+          setup(jc.getFlowProcess)
+          rightValues(key, jc)
         }
 
       left.flatMap { kv =>
@@ -143,6 +143,11 @@ case class RandomFilter(seed: Long, fraction: Double) extends Function1[Any, Boo
   def apply(a: Any) = rng.nextDouble < fraction
 }
 
+case class IncrementCounter[A](group: String, counter: String) extends Function1[A, (A, Iterable[((String, String), Long)])] {
+  private[this] val increment = List(((group, counter), 1L))
+  def apply(a: A) = (a, increment)
+}
+
 case class Count[T](fn: T => Boolean) extends Function1[T, Long] {
   def apply(t: T) = if (fn(t)) 1L else 0L
 }
@@ -16,6 +16,50 @@ object MemoryPlanner {
    * been applied
    */
   def planner(conf: Config, srcs: Resolver[TypedSource, MemorySource]): FunctionK[TypedPipe, Op] =
+    planner(conf, srcs, SpillConfig.fromConfig(conf))
+
+  /**
+   * Like planner, but spills with the given config so the
+   * caller can clean up the spill files once the plan has run
+   */
+  def planner(conf: Config, srcs: Resolver[TypedSource, MemorySource], spill: Option[SpillConfig]): FunctionK[TypedPipe, Op] = {
+    val reducePartitions = conf.getMemoryBackendReducePartitions
+    val streaming = conf.getMemoryBackendStreaming
+    val minChunkSize = conf.getMemoryBackendMinChunkSize.getOrElse(Op.NoChunking)
+
+    /*
+     * In streaming mode the narrow transforms are fused into
+     * Op.Pipeline nodes, otherwise each one buffers its output
+     */
+    def mapOp[A, B](op: Op[A])(fn: A => B): Op[B] =
+      if (streaming) op.pipeline(_.map(fn)) else op.map(fn, minChunkSize)
+
+    def filterOp[A](op: Op[A])(fn: A => Boolean): Op[A] =
+      if (streaming) op.pipeline(_.filter(fn)) else op.filter(fn, minChunkSize)
+
+    def concatMapOp[A, B](op: Op[A])(fn: A => TraversableOnce[B]): Op[B] =
+      if (streaming) op.pipeline(_.flatMap(fn)) else op.concatMap(fn, minChunkSize)
+
+    /*
+     * When spilling is enabled, reduces and materialized
+     * pipes keep a bounded number of items on the heap
+     */
+    def materializeOp[A](op: Op[A]): Op[A] =
+      spill match {
+        case Some(s) => Op.SpillMaterialize(op, s)
+        case None => op.materialize
+      }
+
+    def reduceOp[K, V1, V2](
+      op: Op[(K, V1)],
+      keyOrdering: Ordering[K],
+      fn: (K, Iterator[V1]) => Iterator[V2],
+      ord: Option[Ordering[V1]]): Op[(K, V2)] =
+      spill match {
+        case Some(s) => Op.SpillReduce(op, fn, keyOrdering, ord, s)
+        case None => Op.Reduce(op, fn, ord, reducePartitions)
+      }
+
     Memoize.functionK(new Memoize.RecursiveK[TypedPipe, Op] {
       import TypedPipe._
 
@@ -28,7 +72,7 @@ object MemoryPlanner {
         case (CrossValue(left, EmptyValue), _) => Op.empty
         case (CrossValue(left, LiteralValue(v)), rec) =>
           val op = rec(left) // linter:disable:UndesirableTypeInference
-          op.map((_, v))
+          mapOp(op)((_, v))
         case (CrossValue(left, ComputedValue(right)), rec) =>
           rec(CrossPipe(left, right))
         case (DebugPipe(p), rec) =>
@@ -42,33 +86,33 @@ object MemoryPlanner {
         case (fk @ FilterKeys(_, _), rec) =>
           def go[K, V](node: FilterKeys[K, V]): Op[(K, V)] = {
             val FilterKeys(pipe, fn) = node
-            rec(pipe).concatMap { case (k, v) => if (fn(k)) { (k, v) :: Nil } else Nil }
+            filterOp(rec(pipe)) { case (k, _) => fn(k) }
           }
           go(fk)
 
         case (f @ Filter(_, _), rec) =>
           def go[T](f: Filter[T]): Op[T] = {
             val Filter(p, fn) = f
-            rec(p).filter(fn)
+            filterOp(rec(p))(fn)
           }
           go(f)
 
         case (f @ FlatMapValues(_, _), rec) =>
           def go[K, V, U](node: FlatMapValues[K, V, U]) = {
             val fn = node.fn
-            rec(node.input).concatMap { case (k, v) => fn(v).map((k, _)) }
+            concatMapOp(rec(node.input)) { case (k, v) => fn(v).map((k, _)) }
           }
 
           go(f)
 
         case (FlatMapped(prev, fn), rec) =>
-          rec(prev).concatMap(fn) // linter:disable:UndesirableTypeInference
+          concatMapOp(rec(prev))(fn) // linter:disable:UndesirableTypeInference
 
         case (ForceToDisk(pipe), rec) =>
-          rec(pipe).materialize
+          materializeOp(rec(pipe))
 
         case (Fork(pipe), rec) =>
-          rec(pipe).materialize
+          materializeOp(rec(pipe))
 
         case (IterablePipe(iterable), _) =>
           Op.source(iterable)
@@ -76,13 +120,13 @@ object MemoryPlanner {
         case (f @ MapValues(_, _), rec) =>
           def go[K, V, U](node: MapValues[K, V, U]) = {
             val mvfn = node.fn
-            rec(node.input).map { case (k, v) => (k, mvfn(v)) }
+            mapOp(rec(node.input)) { case (k, v) => (k, mvfn(v)) }
           }
 
           go(f)
 
         case (Mapped(input, fn), rec) =>
-          rec(input).map(fn) // linter:disable:UndesirableTypeInference
+          mapOp(rec(input))(fn) // linter:disable:UndesirableTypeInference
 
         case (MergedTypedPipe(left, right), rec) =>
           Op.Concat(rec(left), rec(right))
@@ -95,7 +139,8 @@ object MemoryPlanner {
           def sum[K, V](sblk: SumByLocalKeys[K, V]) = {
             val SumByLocalKeys(p, sg) = sblk
 
-            rec(p).transform[(K, V), (K, V)] { kvs =>
+            // summing each chunk separately is fine since this is only a partial aggregation
+            rec(p).transform[(K, V), (K, V)]({ kvs: IndexedSeq[(K, V)] =>
               val map = collection.mutable.Map.empty[K, V]
               val iter = kvs.iterator
               while (iter.hasNext) {
@@ -108,7 +153,7 @@ object MemoryPlanner {
               val res = new ArrayBuffer[(K, V)](map.size)
               map.foreach { res += _ }
               res
-            }
+            }, minChunkSize)
           }
           sum(slk)
 
@@ -146,7 +191,7 @@ object MemoryPlanner {
 
         case (CoGroupedPipe(cg), rec) =>
           def go[K, V](cg: CoGrouped[K, V]) = {
-            Op.BulkJoin(cg.inputs.map(rec(_)), cg.joinFunction)
+            Op.BulkJoin(cg.inputs.map(rec(_)), cg.joinFunction, cg.keyOrdering)
           }
           go(cg)
 
@@ -164,18 +209,24 @@ object MemoryPlanner {
             uir.evidence.subst[OpT](op)
           }
           go(uir)
-        case (ReduceStepPipe(IdentityValueSortedReduce(_, pipe, ord, _, _, _)), rec) =>
-          def go[K, V](p: TypedPipe[(K, V)], ord: Ordering[V]) = {
-            val op = rec(p)
-            Op.Reduce[K, V, V](op, { (k, vs) => vs }, Some(ord))
+        case (ReduceStepPipe(ivsr @ IdentityValueSortedReduce(_, _, _, _, _, _)), rec) =>
+          def go[K, V1, V2](ivsr: IdentityValueSortedReduce[K, V1, V2]): Op[(K, V2)] = {
+            type OpT[V] = Op[(K, V)]
+            val op = reduceOp[K, V1, V1](rec(ivsr.mapped), ivsr.keyOrdering, { (k, vs) => vs }, Some(ivsr.valueSort))
+            ivsr.evidence.subst[OpT](op)
           }
-          go(pipe, ord)
-        case (ReduceStepPipe(ValueSortedReduce(_, pipe, ord, fn, _, _)), rec) =>
-          Op.Reduce(rec(pipe), fn, Some(ord))
-        case (ReduceStepPipe(IteratorMappedReduce(_, pipe, fn, _, _)), rec) =>
-          Op.Reduce(rec(pipe), fn, None)
+          go(ivsr)
+        case (ReduceStepPipe(vsr @ ValueSortedReduce(_, _, _, _, _, _)), rec) =>
+          def go[K, V1, V2](vsr: ValueSortedReduce[K, V1, V2]): Op[(K, V2)] =
+            reduceOp(rec(vsr.mapped), vsr.keyOrdering, vsr.reduceFn, Some(vsr.valueSort))
+          go(vsr)
+        case (ReduceStepPipe(imr @ IteratorMappedReduce(_, _, _, _, _)), rec) =>
+          def go[K, V1, V2](imr: IteratorMappedReduce[K, V1, V2]): Op[(K, V2)] =
+            reduceOp(rec(imr.mapped), imr.keyOrdering, imr.reduceFn, None)
+          go(imr)
       }
     })
+  }
 
 }
 
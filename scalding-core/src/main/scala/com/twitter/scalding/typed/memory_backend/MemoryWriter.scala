@@ -37,7 +37,8 @@ class MemoryWriter(mem: MemoryMode) extends Writer {
     conf: Config,
     writes: List[ToWrite[_]])(implicit cec: ConcurrentExecutionContext): Future[(Long, ExecutionCounters)] = {
 
-    val planner = MemoryPlanner.planner(conf, mem.srcs)
+    val spill = SpillConfig.fromConfig(conf)
+    val planner = MemoryPlanner.planner(conf, mem.srcs, spill)
 
     type Action = () => Future[Unit]
     import Execution.ToWrite._
@@ -51,10 +52,11 @@ class MemoryWriter(mem: MemoryMode) extends Writer {
       val pipePromise = Promise[Iterable[T]]()
       val action = () => {
         val op = planner(p)
-        val arrayBufferF = op.result
-        pipePromise.completeWith(arrayBufferF)
+        // we only ever read the forced values, so there is no need to copy
+        val resultF = op.sharedResult
+        pipePromise.completeWith(resultF)
 
-        arrayBufferF.map(_ => ())
+        resultF.map(_ => ())
       }
       (oldState.copy(forced = oldState.forced.updated(keyPipe, pipePromise.future)), action)
     }
@@ -99,8 +101,8 @@ class MemoryWriter(mem: MemoryMode) extends Writer {
                 case None =>
                   val op = planner(opt) // linter:disable:UndesirableTypeInference
                   val action = () => {
-                    val arrayBufferF = op.result
-                    arrayBufferF.flatMap(mem.writeSink(sink, _))
+                    val resultF = op.sharedResult
+                    resultF.flatMap(mem.writeSink(sink, _))
                   }
                   (state, action :: acts)
               }
@@ -110,7 +112,12 @@ class MemoryWriter(mem: MemoryMode) extends Writer {
     }
     val (id, acts) = idActs
     // now we run the actions:
-    Future.traverse(acts) { fn => fn() }.map(_ => (id, ExecutionCounters.empty))
+    Future.traverse(acts) { fn => fn() }
+      .andThen {
+        // every action copies what it reads out of the spill files, so they can go now
+        case _ => spill.foreach(_.files.cleanup())
+      }
+      .map(_ => (id, ExecutionCounters.empty))
   }
 
   /**
@@ -7,10 +7,37 @@ import scala.collection.mutable.{ ArrayBuffer, Map => MMap }
 import scala.concurrent.{ Future, ExecutionContext => ConcurrentExecutionContext, Promise }
 
 sealed trait Op[+O] {
+  /**
+   * The caller owns the returned buffer and may mutate it
+   */
   def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[_ <: O]]
 
-  def concatMap[O1](fn: O => TraversableOnce[O1]): Op[O1] =
-    transform { in: IndexedSeq[O] =>
+  /**
+   * True when sharedResult hands the same buffer to every
+   * consumer, so result has to make a copy
+   */
+  def sharesResult: Boolean = false
+
+  /**
+   * Callers that only read the output use this to avoid a copy.
+   * The returned value must not be mutated.
+   */
+  def sharedResult(implicit cec: ConcurrentExecutionContext): Future[IndexedSeq[O]] =
+    result
+
+  /**
+   * Nodes that can produce their output without
+   * buffering it first override this
+   */
+  def iterator(implicit cec: ConcurrentExecutionContext): Future[Iterator[O]] =
+    sharedResult.map(_.iterator)
+
+  /*
+   * minChunkSize controls splitting the input into chunks
+   * that are processed in parallel, see Op.runChunks
+   */
+  def concatMap[O1](fn: O => TraversableOnce[O1], minChunkSize: Int = Op.NoChunking): Op[O1] =
+    transform({ in: IndexedSeq[O] =>
       val res = ArrayBuffer[O1]()
       val it = in.iterator
       while(it.hasNext) {
@@ -18,54 +45,157 @@ sealed trait Op[+O] {
         fn(i).foreach(res += _)
       }
       res
-    }
+    }, minChunkSize)
 
-  def map[O1](fn: O => O1): Op[O1] =
-    Op.MapOp(this, fn)
+  def map[O1](fn: O => O1, minChunkSize: Int = Op.NoChunking): Op[O1] =
+    Op.MapOp(this, fn, minChunkSize)
 
-  def filter(fn: O => Boolean): Op[O] =
-    Op.Filter(this, fn)
+  def filter(fn: O => Boolean, minChunkSize: Int = Op.NoChunking): Op[O] =
+    Op.Filter(this, fn, minChunkSize)
 
-  def transform[O1 >: O, O2](fn: IndexedSeq[O1] => ArrayBuffer[O2]): Op[O2] =
-    Op.Transform[O1, O2](this, fn)
+  /**
+   * Only set minChunkSize if applying fn to each chunk and
+   * concatenating the results is a valid way to apply fn
+   */
+  def transform[O1 >: O, O2](fn: IndexedSeq[O1] => ArrayBuffer[O2], minChunkSize: Int = Op.NoChunking): Op[O2] =
+    Op.Transform[O1, O2](this, fn, minChunkSize)
 
   def materialize: Op[O] =
     Op.Materialize(this)
+
+  /**
+   * Apply a function to the iterator of this Op. Consecutive calls
+   * are fused so the whole chain runs in a single pass.
+   */
+  def pipeline[O1](fn: Iterator[O] => Iterator[O1]): Op[O1] =
+    Op.Pipeline(this, fn)
 }
 object Op {
   def source[I](i: Iterable[I]): Op[I] = Source(_ => Future.successful(i.iterator))
   def empty[I]: Op[I] = source(Nil)
 
+  /**
+   * Use this chunk size to always process on a single thread
+   */
+  val NoChunking: Int = Int.MaxValue
+
+  /**
+   * Split [0, size) into contiguous (start, end) ranges, each with
+   * at least minChunkSize items unless there is only one range
+   */
+  def chunks(size: Int, minChunkSize: Int): List[(Int, Int)] = {
+    val count = if (minChunkSize <= 0) 1 else math.max(1, size / minChunkSize)
+    val step = size / count
+    (0 until count).map { idx =>
+      val end = if (idx == count - 1) size else (idx + 1) * step
+      (idx * step, end)
+    }.toList
+  }
+
+  /**
+   * Run fn on each chunk of [0, size), in parallel when there is more
+   * than one chunk. The results are in the order of the chunks.
+   */
+  def runChunks[A](size: Int, minChunkSize: Int)(fn: (Int, Int) => A)(implicit cec: ConcurrentExecutionContext): Future[List[A]] =
+    chunks(size, minChunkSize) match {
+      case (start, end) :: Nil => Future.successful(fn(start, end) :: Nil)
+      case many => Future.traverse(many) { case (start, end) => Future(fn(start, end)) }
+    }
+
   final case class Source[I](input: ConcurrentExecutionContext => Future[Iterator[I]]) extends Op[I] {
 
     def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[I]] =
       input(cec).map(ArrayBuffer.empty[I] ++= _)
+
+    override def iterator(implicit cec: ConcurrentExecutionContext): Future[Iterator[I]] =
+      input(cec)
   }
 
-  // Here we need to make a copy on each result
+  /**
+   * A read-only view of [start, end) of seq
+   */
+  private final class Slice[A](seq: IndexedSeq[A], start: Int, end: Int) extends IndexedSeq[A] {
+    def length = end - start
+    def apply(idx: Int) = seq(start + idx)
+  }
+
+  /**
+   * Run the computation only the first time this is called, after
+   * that return the Future of that first run
+   */
+  private def runOnce[A](promiseBox: AtomicBox[Option[Promise[A]]])(start: => Future[A]): Future[A] = {
+    val either = promiseBox.update {
+      case None =>
+        val promise = Promise[A]()
+        (Some(promise), Right(promise))
+      case s@Some(promise) =>
+        (s, Left(promise))
+    }
+
+    either match {
+      case Right(promise) =>
+        // This is the one case where we call the op
+        promise.completeWith(start)
+        promise.future
+      case Left(promise) =>
+        // we already started the previous work
+        promise.future
+    }
+  }
+
+  /**
+   * Every consumer shares the single computed buffer through
+   * sharedResult, only callers of result (which mutate) get a copy
+   */
   final case class Materialize[O](op: Op[O]) extends Op[O] {
     private[this] val promiseBox: AtomicBox[Option[Promise[ArrayBuffer[_ <: O]]]] = new AtomicBox(None)
 
-    def result(implicit cec: ConcurrentExecutionContext) = {
-      val either = promiseBox.update {
-        case None =>
-          val promise = Promise[ArrayBuffer[_ <: O]]()
-          (Some(promise), Right(promise))
-        case s@Some(promise) =>
-          (s, Left(promise))
+    override def sharesResult = true
+
+    override def sharedResult(implicit cec: ConcurrentExecutionContext): Future[IndexedSeq[O]] =
+      runOnce(promiseBox)(op.result)
+
+    def result(implicit cec: ConcurrentExecutionContext) =
+      sharedResult.map(ArrayBuffer.concat(_))
+  }
+
+  /**
+   * Like Materialize, but if op has more than spill.threshold items
+   * they are written to a local file and read back by each consumer.
+   * The file is deleted by spill.files.cleanup when the run finishes.
+   */
+  final case class SpillMaterialize[O](op: Op[O], spill: SpillConfig) extends Op[O] {
+    private[this] val promiseBox: AtomicBox[Option[Promise[Either[ArrayBuffer[O], java.io.File]]]] = new AtomicBox(None)
+
+    private[this] def stored(implicit cec: ConcurrentExecutionContext): Future[Either[ArrayBuffer[O], java.io.File]] =
+      runOnce(promiseBox) {
+        op.iterator.map { items =>
+          val buffer = ArrayBuffer[O]()
+          while (items.hasNext && buffer.size < spill.threshold) {
+            buffer += items.next
+          }
+          if (items.hasNext) Right(Spill.write(buffer.iterator ++ items, spill))
+          else Left(buffer)
+        }
       }
 
-      val fut = either match {
-        case Right(promise) =>
-          // This is the one case where we call the op
-          promise.completeWith(op.result)
-          promise.future
-        case Left(promise) =>
-          // we already started the previous work
-          promise.future
+    override def sharesResult = true
+
+    override def sharedResult(implicit cec: ConcurrentExecutionContext): Future[IndexedSeq[O]] =
+      stored.flatMap {
+        case Left(buffer) => Future.successful(buffer)
+        case Right(_) => result
       }
-      fut.map(ArrayBuffer.concat(_))
-    }
+
+    override def iterator(implicit cec: ConcurrentExecutionContext): Future[Iterator[O]] =
+      stored.map {
+        case Left(buffer) => buffer.iterator
+        case Right(file) => Spill.read[O](file, spill, deleteAtEnd = false)
+      }
+
+    // consumers may mutate the result, so always give a copy
+    def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[O]] =
+      iterator.map(ArrayBuffer.empty[O] ++= _)
   }
 
   final case class Concat[O](left: Op[O], right: Op[O]) extends Op[O] {
@@ -80,39 +210,100 @@ object Op {
   }
 
   // We reuse the input on map
-  final case class MapOp[I, O](input: Op[I], fn: I => O) extends Op[O] {
+  final case class MapOp[I, O](input: Op[I], fn: I => O, minChunkSize: Int = NoChunking) extends Op[O] {
     def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[O]] =
-      input.result.map { array =>
+      input.result.flatMap { array =>
         val res: ArrayBuffer[O] = array.asInstanceOf[ArrayBuffer[O]]
-        var pos = 0
-        while(pos < array.length) {
-          res.update(pos, fn(array(pos)))
-          pos = pos + 1
-        }
-        res
+        // each chunk writes a disjoint range of the array
+        runChunks(array.length, minChunkSize) { (start, end) =>
+          var pos = start
+          while(pos < end) {
+            res.update(pos, fn(array(pos)))
+            pos = pos + 1
+          }
+        }.map(_ => res)
       }
   }
-  // We reuse the input on filter
-  final case class Filter[I](input: Op[I], fn: I => Boolean) extends Op[I] {
+  // We reuse the input on filter, unless it is shared
+  final case class Filter[I](input: Op[I], fn: I => Boolean, minChunkSize: Int = NoChunking) extends Op[I] {
     def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[I]] =
-      input.result.map { array0 =>
+      if (input.sharesResult) filterShared
+      else filterInPlace
+
+    // copy only the items we keep out of the shared input
+    private def filterShared(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[I]] =
+      input.sharedResult.flatMap { array =>
+        runChunks(array.length, minChunkSize) { (start, end) =>
+          val kept = ArrayBuffer[I]()
+          var pos = start
+          while(pos < end) {
+            val item = array(pos)
+            if (fn(item)) kept += item
+            pos = pos + 1
+          }
+          kept
+        }.map {
+          case single :: Nil => single
+          case parts =>
+            val res = new ArrayBuffer[I](parts.iterator.map(_.size).sum)
+            parts.foreach(res ++= _)
+            res
+        }
+      }
+
+    private def filterInPlace(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[I]] =
+      input.result.flatMap { array0 =>
         val array = array0.asInstanceOf[ArrayBuffer[I]]
-        var pos = 0
-        var writePos = 0
-        while(pos < array.length) {
-          val item = array(pos)
-          if (fn(item)) {
-            array(writePos) = item
-            writePos = writePos + 1
+        // compact each chunk to its own front, returning the kept range
+        runChunks(array.length, minChunkSize) { (start, end) =>
+          var pos = start
+          var writePos = start
+          while(pos < end) {
+            val item = array(pos)
+            if (fn(item)) {
+              array(writePos) = item
+              writePos = writePos + 1
+            }
+            pos = pos + 1
+          }
+          (start, writePos)
+        }.map { kept =>
+          // now move the kept ranges next to each other, in order
+          var writePos = 0
+          kept.foreach { case (start, end) =>
+            if (start == writePos) writePos = end
+            else {
+              var pos = start
+              while(pos < end) {
+                array(writePos) = array(pos)
+                writePos = writePos + 1
+                pos = pos + 1
+              }
+            }
           }
-          pos = pos + 1
+          // trim the tail off
+          array.remove(writePos, array.length - writePos)
+          array
         }
-        // trim the tail off
-        array.remove(writePos, array.length - writePos)
-        array
       }
   }
 
+  /**
+   * A fused chain of narrow transforms (map, filter, flatMap). We pull
+   * from the iterator of the input and only buffer the output of the
+   * whole chain, so intermediate stages are never materialized.
+   */
+  final case class Pipeline[I, O](input: Op[I], fn: Iterator[I] => Iterator[O]) extends Op[O] {
+    override def pipeline[O1](next: Iterator[O] => Iterator[O1]): Op[O1] =
+      Pipeline(input, fn.andThen(next))
+
+    override def iterator(implicit cec: ConcurrentExecutionContext): Future[Iterator[O]] =
+      input.iterator.map(fn)
+
+    def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[O]] =
+      iterator.map(ArrayBuffer.empty[O] ++= _)
+  }
+
   final case class OnComplete[O](of: Op[O], fn: () => Unit) extends Op[O] {
     def result(implicit cec: ConcurrentExecutionContext) = {
       val res = of.result
@@ -121,40 +312,131 @@ object Op {
     }
   }
 
-  final case class Transform[I, O](input: Op[I], fn: IndexedSeq[I] => ArrayBuffer[O]) extends Op[O] {
+  final case class Transform[I, O](input: Op[I], fn: IndexedSeq[I] => ArrayBuffer[O], minChunkSize: Int = NoChunking) extends Op[O] {
     def result(implicit cec: ConcurrentExecutionContext) =
-      input.result.map(fn)
+      input.sharedResult.flatMap { array =>
+        runChunks(array.length, minChunkSize) { (start, end) =>
+          if (start == 0 && end == array.length) fn(array)
+          else fn(new Slice(array, start, end))
+        }.map {
+          case single :: Nil => single
+          case parts =>
+            val res = new ArrayBuffer[O](parts.iterator.map(_.size).sum)
+            parts.foreach(res ++= _)
+            res
+        }
+      }
   }
 
+  /**
+   * When partitions > 1 the keys are hashed into that many buckets
+   * and each bucket is grouped, sorted and reduced as a separate
+   * Future on the ConcurrentExecutionContext
+   */
   final case class Reduce[K, V1, V2](
     input: Op[(K, V1)],
     fn: (K, Iterator[V1]) => Iterator[V2],
-    ord: Option[Ordering[V1]]
+    ord: Option[Ordering[V1]],
+    partitions: Int = 1
     ) extends Op[(K, V2)] {
 
     def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[(K, V2)]] =
-      input.result.map { kvs =>
-        val valuesByKey = MMap[K, ArrayList[V1]]()
-        def add(kv: (K, V1)): Unit = {
-          val vs = valuesByKey.getOrElseUpdate(kv._1, new ArrayList[V1]())
-          vs.add(kv._2)
+      input.sharedResult.flatMap { kvs =>
+        if (partitions <= 1 || kvs.size < partitions) Future.successful(Reduce.reduceAll[K, V1, V2](kvs, fn, ord))
+        else {
+          val buckets = Reduce.partition[K, V1](kvs, partitions)
+          Future.traverse(buckets.toList) { bucket => Future(Reduce.reduceAll[K, V1, V2](bucket, fn, ord)) }
+            .map { results =>
+              val res = new ArrayBuffer[(K, V2)](results.iterator.map(_.size).sum)
+              results.foreach(res ++= _)
+              res
+            }
+        }
+      }
+  }
+
+  object Reduce {
+    /**
+     * Split the input into buckets such that all the values for a given
+     * key are in the same bucket
+     */
+    def partition[K, V](kvs: IndexedSeq[(K, V)], partitions: Int): Array[ArrayBuffer[(K, V)]] = {
+      val buckets = Array.fill(partitions)(new ArrayBuffer[(K, V)](kvs.size / partitions + 1))
+      var pos = 0
+      while (pos < kvs.size) {
+        val kv = kvs(pos)
+        // ## is 0 for null keys and the mask keeps the bucket non-negative
+        buckets((kv._1.## & Int.MaxValue) % partitions) += kv
+        pos = pos + 1
+      }
+      buckets
+    }
+
+    def reduceAll[K, V1, V2](
+      kvs: IndexedSeq[(K, V1)],
+      fn: (K, Iterator[V1]) => Iterator[V2],
+      ord: Option[Ordering[V1]]): ArrayBuffer[(K, V2)] = {
+
+      val valuesByKey = MMap[K, ArrayList[V1]]()
+      def add(kv: (K, V1)): Unit = {
+        val vs = valuesByKey.getOrElseUpdate(kv._1, new ArrayList[V1]())
+        vs.add(kv._2)
+      }
+      kvs.foreach(add)
+
+      val res = ArrayBuffer[(K, V2)]()
+      valuesByKey.foreach { case (k, vs) =>
+        ord.foreach(Collections.sort[V1](vs, _))
+        val v2iter = fn(k, vs.iterator.asScala)
+        while(v2iter.hasNext) {
+          res += ((k, v2iter.next))
         }
-        kvs.foreach(add)
+      }
+      res
+    }
+  }
 
-        /*
-         * This portion could be parallelized for each key, or we could split
-         * the keys into as many groups as there are CPUs and process that way
-         */
+  /**
+   * A reduce that sorts by key, and by value if there is a value
+   * ordering, with SortedSpiller so at most spill.threshold input
+   * items are on the heap at once
+   */
+  final case class SpillReduce[K, V1, V2](
+    input: Op[(K, V1)],
+    fn: (K, Iterator[V1]) => Iterator[V2],
+    keyOrdering: Ordering[K],
+    ord: Option[Ordering[V1]],
+    spill: SpillConfig
+    ) extends Op[(K, V2)] {
+
+    def result(implicit cec: ConcurrentExecutionContext): Future[ArrayBuffer[(K, V2)]] =
+      input.iterator.map { kvs =>
+        val kvOrdering: Ordering[(K, V1)] = ord match {
+          case Some(valueOrdering) => Ordering.Tuple2(keyOrdering, valueOrdering)
+          case None => Ordering.by[(K, V1), K](_._1)(keyOrdering)
+        }
+        val sorter = new SortedSpiller[(K, V1)](kvOrdering, spill)
+        kvs.foreach(sorter.add)
+
+        val sorted = sorter.sortedIterator.buffered
         val res = ArrayBuffer[(K, V2)]()
-        valuesByKey.foreach { case (k, vs) =>
-          ord.foreach(Collections.sort[V1](vs, _))
-          val v2iter = fn(k, vs.iterator.asScala)
+        while (sorted.hasNext) {
+          val k = sorted.head._1
+          val values = new Iterator[V1] {
+            def hasNext = sorted.hasNext && keyOrdering.equiv(sorted.head._1, k)
+            def next() =
+              if (hasNext) sorted.next()._2
+              else throw new NoSuchElementException(s"no more values for key: $k")
+          }
+          val v2iter = fn(k, values)
           while(v2iter.hasNext) {
             res += ((k, v2iter.next))
           }
+          // skip any values fn did not read
+          while (values.hasNext) values.next()
         }
         res
-    }
+      }
   }
 
   final case class Join[A, B, C](
@@ -164,37 +446,82 @@ object Op {
 
     def result(implicit cec: ConcurrentExecutionContext) = {
       // start both futures in parallel
-      val f1 = opA.result
-      val f2 = opB.result
+      val f1 = opA.sharedResult
+      val f2 = opB.sharedResult
       f1.zip(f2).map { case (a, b) => fn(a, b) }
     }
   }
 
-  final case class BulkJoin[K, A](ops: List[Op[(K, Any)]], joinF: MultiJoinFunction[K, A]) extends Op[(K, A)] {
+  /**
+   * This is a sort-merge join: each input is copied into an array
+   * and sorted by key (in parallel), then we walk all the arrays
+   * in key order calling joinF once for each distinct key.
+   */
+  final case class BulkJoin[K, A](ops: List[Op[(K, Any)]], joinF: MultiJoinFunction[K, A], keyOrdering: Ordering[K]) extends Op[(K, A)] {
     def result(implicit cec: ConcurrentExecutionContext) =
-      Future.traverse(ops)(_.result)
+      Future.traverse(ops) { op => op.sharedResult.map(BulkJoin.sortByKey[K](_, keyOrdering)) }
         .map { items =>
-          // TODO this is not by any means optimal.
-          // we could copy into arrays then sort by key and iterate
-          // each through in K sorted order
-          val maps: List[Map[K, Iterable[(K, Any)]]] = items.map { kvs =>
-            val kvMap: Map[K, Iterable[(K, Any)]] = kvs.groupBy(_._1)
-            kvMap
+          val inputs = items.toArray
+          val positions = new Array[Int](inputs.length)
+          val ends = new Array[Int](inputs.length)
+          val result = ArrayBuffer[(K, A)]()
+
+          // the index of the input with the smallest next key, or -1 when all are done
+          def minInput(): Int = {
+            var minIdx = -1
+            var idx = 0
+            while (idx < inputs.length) {
+              val pos = positions(idx)
+              if (pos < inputs(idx).length &&
+                ((minIdx < 0) || keyOrdering.lt(inputs(idx)(pos)._1, inputs(minIdx)(positions(minIdx))._1))) {
+                minIdx = idx
+              }
+              idx = idx + 1
+            }
+            minIdx
           }
 
-          val allKeys = maps.iterator.flatMap(_.keys.iterator).toSet
-          val result = ArrayBuffer[(K, A)]()
-          allKeys.foreach { k =>
-            maps.map(_.getOrElse(k, Nil)) match {
-              case h :: tail =>
-                joinF(k, h.iterator.map(_._2), tail.map(_.map(_._2))).foreach { a =>
-                  result += ((k, a))
-                }
-              case other => sys.error(s"unreachable: $other, $k")
+          var minIdx = minInput()
+          while (minIdx >= 0) {
+            val k = inputs(minIdx)(positions(minIdx))._1
+            // find the run of k in each input
+            var idx = 0
+            while (idx < inputs.length) {
+              val input = inputs(idx)
+              var end = positions(idx)
+              while (end < input.length && keyOrdering.equiv(input(end)._1, k)) {
+                end = end + 1
+              }
+              ends(idx) = end
+              idx = idx + 1
+            }
+
+            val head = inputs(0).iterator.slice(positions(0), ends(0)).map(_._2)
+            val tail = (1 until inputs.length).map { i =>
+              inputs(i).view.slice(positions(i), ends(i)).map(_._2)
             }
+            joinF(k, head, tail).foreach { a =>
+              result += ((k, a))
+            }
+
+            System.arraycopy(ends, 0, positions, 0, ends.length)
+            minIdx = minInput()
           }
 
           result
         }
   }
+
+  object BulkJoin {
+    /**
+     * Copy into an array and do a stable sort so values
+     * for the same key keep their input order
+     */
+    def sortByKey[K](kvs: IndexedSeq[(K, Any)], keyOrdering: Ordering[K]): Array[(K, Any)] = {
+      val array = new Array[(K, Any)](kvs.size)
+      kvs.copyToArray(array)
+      java.util.Arrays.sort(array, Ordering.by[(K, Any), K](_._1)(keyOrdering))
+      array
+    }
+  }
 }
@@ -0,0 +1,205 @@
+package com.twitter.scalding.typed.memory_backend
+
+import com.twitter.chill.KryoPool
+import com.twitter.chill.config.ScalaMapConfig
+import com.twitter.scalding.Config
+import com.twitter.scalding.serialization.KryoHadoop
+import java.io.{ BufferedInputStream, BufferedOutputStream, Closeable, DataInputStream, DataOutputStream, File, FileInputStream, FileOutputStream }
+import java.util.{ Collections, PriorityQueue }
+import java.util.concurrent.{ ConcurrentHashMap, ConcurrentLinkedQueue }
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Settings for spilling to local disk in the in-memory backend
+ *
+ * @param threshold the number of items we hold on the heap before writing to disk
+ * @param kryo used to serialize the items we write
+ * @param files the spill files of this run, removed when it finishes
+ */
+final case class SpillConfig(threshold: Int, kryo: KryoPool, files: SpillFiles)
+
+object SpillConfig {
+  /**
+   * None if spilling is not enabled in this config
+   */
+  def fromConfig(conf: Config): Option[SpillConfig] =
+    conf.getMemoryBackendSpillThreshold.map { threshold =>
+      val inst = conf.getKryo.getOrElse(new KryoHadoop(ScalaMapConfig(conf.toMap)))
+      SpillConfig(threshold, KryoPool.withByteArrayOutputStream(Runtime.getRuntime.availableProcessors, inst), new SpillFiles)
+    }
+}
+
+/**
+ * The temp files and open readers of one run. A reader that is not
+ * read to the end never sees EOF, so cleanup closes any reader still
+ * open before deleting the files.
+ */
+final class SpillFiles {
+  private[this] val files = new ConcurrentLinkedQueue[File]()
+  private[this] val readers = Collections.newSetFromMap(new ConcurrentHashMap[Closeable, java.lang.Boolean]())
+
+  def newFile(): File = {
+    val file = File.createTempFile("scalding-memory-spill", ".kryo")
+    // in case the JVM exits before cleanup is called
+    file.deleteOnExit()
+    files.add(file)
+    file
+  }
+
+  def opened(reader: Closeable): Unit = readers.add(reader)
+
+  def closed(reader: Closeable): Unit = readers.remove(reader)
+
+  /**
+   * The spill files that have not been deleted yet
+   */
+  def remaining: List[File] = {
+    val it = files.iterator
+    var res = List.empty[File]
+    while (it.hasNext) {
+      val file = it.next()
+      if (file.exists) res = file :: res
+    }
+    res
+  }
+
+  /**
+   * Close every open reader and delete every file. This should only
+   * be called once nothing in the run will read a spill file again.
+   */
+  def cleanup(): Unit = {
+    val rit = readers.iterator
+    while (rit.hasNext) {
+      val reader = rit.next()
+      rit.remove()
+      reader.close()
+    }
+    var file = files.poll()
+    while (file != null) {
+      file.delete()
+      file = files.poll()
+    }
+  }
+}
+
+object Spill {
+  private[this] val EndOfFile = -1
+
+  /**
+   * Write all the items to a new temp file as length prefixed
+   * kryo records
+   */
+  def write[T](items: Iterator[T], spill: SpillConfig): File = {
+    val kryo = spill.kryo
+    val file = spill.files.newFile()
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))
+    try {
+      items.foreach { t =>
+        val bytes = kryo.toBytesWithClass(t)
+        out.writeInt(bytes.length)
+        out.write(bytes)
+      }
+      out.writeInt(EndOfFile)
+    } finally {
+      out.close()
+    }
+    file
+  }
+
+  /**
+   * Stream back the items of a file written by write. The stream is
+   * closed once the iterator is exhausted, or by spill.files.cleanup
+   * if the iterator is discarded before that. If deleteAtEnd the file
+   * is removed once the iterator is exhausted.
+   */
+  def read[T](file: File, spill: SpillConfig, deleteAtEnd: Boolean): Iterator[T] = new Iterator[T] with Closeable {
+    private[this] val kryo = spill.kryo
+    private[this] val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+    spill.files.opened(this)
+    private[this] var nextLength = readLength()
+
+    def close(): Unit = {
+      spill.files.closed(this)
+      in.close()
+    }
+
+    private[this] def readLength(): Int = {
+      val len = in.readInt()
+      if (len == EndOfFile) {
+        close()
+        if (deleteAtEnd) file.delete()
+      }
+      len
+    }
+
+    def hasNext = nextLength != EndOfFile
+
+    def next() =
+      if (!hasNext) throw new NoSuchElementException(s"no more items in $file")
+      else {
+        val bytes = new Array[Byte](nextLength)
+        in.readFully(bytes)
+        nextLength = readLength()
+        kryo.fromBytes(bytes).asInstanceOf[T]
+      }
+  }
+
+  /**
+   * k-way merge of iterators that are each sorted by ord
+   */
+  def mergeSorted[T](iters: Seq[Iterator[T]], ord: Ordering[T]): Iterator[T] = {
+    val heads = new PriorityQueue[BufferedIterator[T]](
+      math.max(iters.size, 1),
+      Ordering.by[BufferedIterator[T], T](_.head)(ord))
+
+    iters.foreach { it =>
+      if (it.hasNext) heads.add(it.buffered)
+    }
+
+    new Iterator[T] {
+      def hasNext = !heads.isEmpty
+      def next() = {
+        val it = heads.poll()
+        if (it == null) throw new NoSuchElementException("merge is exhausted")
+        val t = it.next()
+        if (it.hasNext) heads.add(it)
+        t
+      }
+    }
+  }
+}
+
+/**
+ * Collects items into memory, writing a sorted run to a
+ * temp file each time the threshold is reached. The sorted
+ * iterator merges the runs and deletes them as they finish.
+ */
+class SortedSpiller[T](ord: Ordering[T], spill: SpillConfig) {
+  private[this] val buffer = ArrayBuffer[T]()
+  private[this] val runs = ArrayBuffer[File]()
+
+  private[this] def sortBuffer(): Iterator[T] = {
+    val array = buffer.toArray[Any].asInstanceOf[Array[AnyRef]]
+    java.util.Arrays.sort(array, ord.asInstanceOf[Ordering[AnyRef]])
+    buffer.clear()
+    array.iterator.asInstanceOf[Iterator[T]]
+  }
+
+  def add(t: T): Unit = {
+    buffer += t
+    if (buffer.size >= spill.threshold) {
+      runs += Spill.write(sortBuffer(), spill)
+    }
+  }
+
+  def spilledRuns: Int = runs.size
+
+  /**
+   * This can only be called once, after all the items have been added
+   */
+  def sortedIterator: Iterator[T] = {
+    val inMemory = sortBuffer()
+    if (runs.isEmpty) inMemory
+    else Spill.mergeSorted(inMemory +: runs.map(Spill.read[T](_, spill, deleteAtEnd = true)), ord)
+  }
+}
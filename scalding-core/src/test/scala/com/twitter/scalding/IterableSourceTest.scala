@@ -0,0 +1,86 @@
+/*
+Copyright 2018 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.twitter.scalding
+
+import com.twitter.maple.tap.{ FileBackedMemorySourceTap, MemorySourceTap }
+import java.nio.file.Files
+import org.apache.hadoop.conf.Configuration
+import org.scalatest.{ Matchers, WordSpec }
+
+class IterableSourceTest extends WordSpec with Matchers {
+  "An IterableSource in a hadoop mode" should {
+    "keep small inputs in the JobConf" in {
+      val conf = new Configuration
+      conf.setInt(FileBackedMemorySourceTap.MIN_TUPLES_PROPERTY, 10)
+      val tap = IterableSource(List(1, 2, 3)).createTap(Read)(HadoopTest(conf, _ => None))
+      tap shouldBe a[MemorySourceTap]
+      tap should not be a[FileBackedMemorySourceTap]
+    }
+
+    "read large inputs from a side file that is deleted when the flow stops" in {
+      val sideDir = Files.createTempDirectory("iterable-source-side").toFile
+      val out = Files.createTempDirectory("iterable-source-out").toFile.getAbsolutePath + "/out"
+      val conf = new Configuration
+      conf.setInt(FileBackedMemorySourceTap.MIN_TUPLES_PROPERTY, 10)
+      conf.set(FileBackedMemorySourceTap.DIR_PROPERTY, sideDir.getAbsolutePath)
+      val mode = HadoopTest(conf, _ => None)
+
+      val input = (0 until 100).toList
+      val source = IterableSource(input)
+      source.createTap(Read)(mode) shouldBe a[FileBackedMemorySourceTap]
+
+      val result = TypedPipe.from(source)
+        .map(_ * 2)
+        .writeExecution(TypedTsv[Int](out))
+        .flatMap(_ => TypedPipe.from(TypedTsv[Int](out)).toIterableExecution)
+        .waitFor(Config.default, mode)
+        .get
+        .toList
+
+      result.sorted shouldBe input.map(_ * 2)
+      sideDir.list() shouldBe empty
+    }
+
+    "give each flow its own side file, read with several splits" in {
+      val sideDir = Files.createTempDirectory("iterable-source-side").toFile
+      val conf = new Configuration
+      conf.setInt(FileBackedMemorySourceTap.MIN_TUPLES_PROPERTY, 10)
+      conf.set(FileBackedMemorySourceTap.DIR_PROPERTY, sideDir.getAbsolutePath)
+      // ask for more than one split
+      conf.setInt("mapreduce.job.maps", 4)
+      conf.setInt("mapred.map.tasks", 4)
+      val mode = HadoopTest(conf, _ => None)
+
+      // more than one block of tuples
+      val input = (0 until 3000).toList
+      val source = IterableSource(input)
+      def read(times: Int): Execution[Iterable[Int]] =
+        TypedPipe.from(source).map(_ * times).forceToDiskExecution.flatMap(_.toIterableExecution)
+
+      // the first flow to finish must not delete the file the other is reading,
+      // or the one a later flow reads
+      val (twice, thrice, again) = read(2).zip(read(3))
+        .flatMap { case (a, b) => read(1).map((a, b, _)) }
+        .waitFor(Config.default, mode)
+        .get
+
+      twice.toList.sorted shouldBe input.map(_ * 2)
+      thrice.toList.sorted shouldBe input.map(_ * 3)
+      again.toList.sorted shouldBe input
+      sideDir.list() shouldBe empty
+    }
+  }
+}
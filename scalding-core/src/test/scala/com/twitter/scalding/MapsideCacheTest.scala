@@ -0,0 +1,112 @@
+package com.twitter.scalding
+
+import cascading.flow.FlowProcess
+import com.twitter.algebird.{ MapAlgebra, Semigroup }
+import org.scalacheck.Properties
+import org.scalacheck.Prop.forAll
+import org.scalatest.{ Matchers, WordSpec }
+
+object OpenHashMapsideCacheProperties extends Properties("OpenHashMapsideCache") {
+
+  def sumThroughCache[K, V: Semigroup](kvs: List[(K, V)], size: Int): Map[K, V] = {
+    val cache = new OpenHashMapsideCache[K, V](FlowProcess.NULL, SummingOpenHashTable[K, V](size))
+    val outputs = kvs.flatMap { case (k, v) => cache.put(k, v).toList.flatten } ++ cache.flush.toList.flatten
+    MapAlgebra.sumByKey(outputs)
+  }
+
+  property("sums Long values") = forAll { (kvs: List[(Int, Long)]) =>
+    sumThroughCache(kvs, 7) == MapAlgebra.sumByKey(kvs)
+  }
+
+  property("sums Double values") = forAll { (kvs: List[(Short, Int)]) =>
+    val doubles = kvs.map { case (k, v) => (k, v.toDouble) }
+    sumThroughCache(doubles, 5) == MapAlgebra.sumByKey(doubles)
+  }
+
+  property("sums other values") = forAll { (kvs: List[(Option[Byte], Set[Int])]) =>
+    sumThroughCache(kvs, 3) == MapAlgebra.sumByKey(kvs)
+  }
+
+  property("putAll sums keys evicted twice") = forAll { (batches: List[Map[Byte, Long]]) =>
+    val cache = new OpenHashMapsideCache[Byte, Long](FlowProcess.NULL, SummingOpenHashTable[Byte, Long](4))
+    val outputs = batches.flatMap(cache.putAll(_).toList.flatten) ++ cache.flush.toList.flatten
+    MapAlgebra.sumByKey(outputs) == MapAlgebra.sumByKey(batches.flatten)
+  }
+}
+
+object ByteBoundedMapsideCacheProperties extends Properties("ByteBoundedMapsideCache") {
+  // every key and value is 10 bytes, so each entry is 84 with the overhead
+  val tenBytes: SizeEstimator[Any] = new SizeEstimator[Any] { def apply(a: Any) = 10L }
+
+  def cache[K, V: Semigroup](maxBytes: Long): ByteBoundedMapsideCache[K, V] =
+    new ByteBoundedMapsideCache[K, V](FlowProcess.NULL, maxBytes, tenBytes, tenBytes)
+
+  property("sums values") = forAll { (kvs: List[(Short, Set[Int])]) =>
+    val c = cache[Short, Set[Int]](500L)
+    val outputs = kvs.flatMap { case (k, v) => c.put(k, v).toList.flatten } ++ c.flush.toList.flatten
+    MapAlgebra.sumByKey(outputs) == MapAlgebra.sumByKey(kvs)
+  }
+
+  property("putAll sums keys evicted twice") = forAll { (batches: List[Map[Byte, Long]]) =>
+    val c = cache[Byte, Long](300L)
+    val outputs = batches.flatMap(c.putAll(_).toList.flatten) ++ c.flush.toList.flatten
+    MapAlgebra.sumByKey(outputs) == MapAlgebra.sumByKey(batches.flatten)
+  }
+
+  property("stays within its budget") = forAll { (keys: List[Int]) =>
+    val c = cache[Int, Long](1000L)
+    keys.forall { k =>
+      c.put(k, 1L)
+      c.retainedBytes <= 1000L
+    }
+  }
+}
+
+class ByteBoundedMapsideCacheTest extends WordSpec with Matchers {
+  "ByteBoundedMapsideCache" should {
+    "evict the least recently used entries down to three quarters of the budget" in {
+      val c = ByteBoundedMapsideCacheProperties.cache[String, Long](84L * 4)
+      c.put("a", 1L) shouldBe None
+      c.put("b", 1L) shouldBe None
+      c.put("c", 1L) shouldBe None
+      c.put("a", 1L) shouldBe None
+      c.put("d", 1L) shouldBe None
+      c.retainedBytes shouldBe 84L * 4
+      c.put("e", 1L) shouldBe Some(Map("b" -> 1L, "c" -> 1L))
+      c.flush shouldBe Some(Map("a" -> 2L, "d" -> 1L, "e" -> 1L))
+      c.retainedBytes shouldBe 0L
+    }
+  }
+
+  "SizeEstimator.sampled" should {
+    "grow with the size of the values" in {
+      val small = SizeEstimator.sampled(1)(List.fill(10)("x"))
+      val large = SizeEstimator.sampled(1)(List.fill(1000)("x"))
+      small should be > 0L
+      large should be > small * 10
+    }
+  }
+}
+
+class SummingOpenHashTableTest extends WordSpec with Matchers {
+  "SummingOpenHashTable" should {
+    "use primitive values for the standard semigroups" in {
+      SummingOpenHashTable[String, Long](10) shouldBe a[SummingOpenHashTable.LongTable[_]]
+      SummingOpenHashTable[String, Int](10) shouldBe a[SummingOpenHashTable.IntTable[_]]
+      SummingOpenHashTable[String, Double](10) shouldBe a[SummingOpenHashTable.DoubleTable[_]]
+      SummingOpenHashTable[String, Set[Int]](10) shouldBe a[SummingOpenHashTable.GenericTable[_, _]]
+    }
+
+    "sum null keys, fill up, and drain" in {
+      val table = SummingOpenHashTable[String, Long](3)
+      table.put("a", 1L) shouldBe false
+      table.put(null, 2L) shouldBe false
+      table.put("a", 5L) shouldBe true
+      table.isFull shouldBe false
+      table.put("b", 1L) shouldBe false
+      table.isFull shouldBe true
+      table.drain() shouldBe Map("a" -> 6L, (null: String) -> 2L, "b" -> 1L)
+      table.isEmpty shouldBe true
+    }
+  }
+}
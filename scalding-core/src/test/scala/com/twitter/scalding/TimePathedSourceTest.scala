@@ -15,8 +15,11 @@ limitations under the License.
 */
 package com.twitter.scalding
 
+import java.io.{ File, FileOutputStream }
+import java.nio.file.Files
 import java.util.TimeZone
 
+import org.apache.hadoop.mapred.JobConf
 import org.scalatest.{ Matchers, WordSpec }
 
 class TimePathedSourceTest extends WordSpec with Matchers {
@@ -36,6 +39,98 @@ class TimePathedSourceTest extends WordSpec with Matchers {
       TestTimePathedSource("/my/path/*", dateRange, utcTZ).hdfsWritePath startsWith "/my/path"
     }
   }
+
+  "TimePathedSource.getPathStatuses" should {
+    implicit val utcTZ: TimeZone = DateOps.UTC
+    implicit val parser: DateParser = DateParser.default
+    val dateRange = DateRange(RichDate("2017-01-01 00"), RichDate("2017-01-02 23"))
+
+    def makeHours(missing: Set[String]): String = {
+      val root = Files.createTempDirectory("time-pathed-source").toFile
+      root.deleteOnExit()
+      for {
+        day <- Seq("01", "02")
+        hour <- (0 until 24).map("%02d".format(_))
+        if !missing(s"$day/$hour") && s"$day/$hour" != "02/23"
+      } {
+        val f = new File(root, s"2017/01/$day/$hour/part-00000")
+        f.getParentFile.mkdirs()
+        val out = new FileOutputStream(f)
+        try out.write(1) finally out.close()
+      }
+      // an empty hour is missing too
+      new File(root, "2017/01/02/23").mkdirs()
+      root.getAbsolutePath + TimePathedSource.YEAR_MONTH_DAY_HOUR + "/*"
+    }
+
+    def missingPaths(src: TimePathedSource, conf: JobConf): List[String] =
+      src.getPathStatuses(conf).collect { case (path, false) => path }.toList
+
+    "find the same missing paths with each way of checking" in {
+      val pattern = makeHours(Set("01/05", "02/00"))
+      val src = TestTimePathedSource(pattern, dateRange, utcTZ)
+      val expected = List("01/05", "02/00", "02/23").map { h => pattern.replace("%1$tY/%1$tm/%1$td/%1$tH", "2017/01/" + h) }
+
+      for {
+        parallelism <- Seq(1, 4)
+        listParents <- Seq(true, false)
+      } {
+        val conf = new JobConf
+        conf.setInt(TimePathedSource.PathCheckParallelism, parallelism)
+        conf.setBoolean(TimePathedSource.PathCheckListParents, listParents)
+        src.getPathStatuses(conf).size shouldBe 48
+        missingPaths(src, conf) shouldBe expected
+        src.hdfsReadPathsAreGood(conf) shouldBe false
+      }
+    }
+
+    "pass when every path is present" in {
+      val pattern = makeHours(Set.empty)
+      val src = TestTimePathedSource(pattern, DateRange(RichDate("2017-01-01 00"), RichDate("2017-01-02 22")), utcTZ)
+      val conf = new JobConf
+      conf.setInt(TimePathedSource.PathCheckParallelism, 4)
+      src.hdfsReadPathsAreGood(conf) shouldBe true
+    }
+
+    "only list a parent when the paths are most of its children" in {
+      val pattern = makeHours(Set.empty)
+      def checks(src: TimePathedSource, listParents: Option[Boolean]): Int = {
+        val conf = new JobConf
+        listParents.foreach(conf.setBoolean(TimePathedSource.PathCheckListParents, _))
+        src.pathChecks(src.allPaths.toList, conf).size
+      }
+      val twoDays = TestTimePathedSource(pattern, dateRange, utcTZ)
+      val threeHours = TestTimePathedSource(pattern, DateRange(RichDate("2017-01-01 00"), RichDate("2017-01-01 02")), utcTZ)
+
+      // off unless asked for
+      checks(twoDays, None) shouldBe 48
+      checks(twoDays, Some(true)) shouldBe 2
+      // 3 of the 24 hours of the day are checked one at a time
+      checks(threeHours, Some(true)) shouldBe 3
+      val conf = new JobConf
+      conf.setBoolean(TimePathedSource.PathCheckListParents, true)
+      threeHours.hdfsReadPathsAreGood(conf) shouldBe true
+    }
+
+    "only list parents of plain directories" in {
+      TimePathedSource.parentAndName("/a/2017/01/01/05/*") shouldBe Some(("/a/2017/01/01", "05"))
+      TimePathedSource.parentAndName("/a/{b,c}/01/*") shouldBe None
+      TimePathedSource.parentAndName("/a/01") shouldBe None
+      TimePathedSource.parentAndName("/*") shouldBe None
+    }
+  }
+
+  "TimePathedSource.runChecks" should {
+    "stop at the first missing path when asked" in {
+      val ran = new java.util.concurrent.atomic.AtomicInteger
+      val checks = (0 until 10).map { i => () => { ran.incrementAndGet(); List((i.toString, i != 3)) } }
+      TimePathedSource.runChecks(checks, 1, stopOnMissing = true).map(_._1) shouldBe (0 to 3).map(_.toString)
+      ran.get shouldBe 4
+      TimePathedSource.runChecks(checks, 1, stopOnMissing = false).size shouldBe 10
+      TimePathedSource.runChecks(checks, 4, stopOnMissing = true).exists(!_._2) shouldBe true
+      TimePathedSource.runChecks(checks, 4, stopOnMissing = false).map(_._1).toSet shouldBe (0 until 10).map(_.toString).toSet
+    }
+  }
 }
 
 case class TestTimePathedSource(p: String, dr: DateRange, t: TimeZone) extends TimePathedSource(p, dr, t)
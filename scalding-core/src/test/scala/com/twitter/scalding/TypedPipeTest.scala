@@ -358,6 +358,58 @@ class TypedPipeHashJoinTest extends WordSpec with Matchers {
   }
 }
 
+class TypedPipeMultiValuedHashJoinJob(args: Args) extends Job(args) {
+  override def config = super.config +
+    (typed.cascading_backend.HashJoiner.MATERIALIZE_THRESHOLD_KEY -> args("threshold"))
+
+  TypedText.tsv[(Int, Int)]("inputFile0")
+    .group
+    .hashLeftJoin(TypedText.tsv[(Int, Int)]("inputFile1").group)
+    .write(TypedText.tsv[(Int, (Int, Option[Int]))]("outputFile"))
+}
+
+class TypedPipeMultiValuedHashJoinTest extends WordSpec with Matchers {
+  val sortedLeft = List((0, 0), (1, 1), (1, 2), (2, 3), (2, 4), (3, 5))
+  // no two left values with the same key are next to each other
+  val unsortedLeft = List((1, 1), (2, 3), (1, 2), (0, 0), (2, 4), (3, 5), (1, 6))
+  val right = List((0, 10), (1, 11), (1, 12), (2, 13), (2, 14), (2, 15))
+  def expected(left: List[(Int, Int)]) = for {
+    (k, v) <- left
+    w <- right.collect { case (rk, rv) if rk == k => Some(rv) } match {
+      case Nil => List(None)
+      case ws => ws
+    }
+  } yield (k, (v, w))
+
+  def runJob(threshold: Int, left: List[(Int, Int)] = sortedLeft)(checkMaterialized: Long => Unit, checkStreamed: Long => Unit): Unit =
+    JobTest(new TypedPipeMultiValuedHashJoinJob(_))
+      .arg("threshold", threshold.toString)
+      .source(TypedText.tsv[(Int, Int)]("inputFile0"), left)
+      .source(TypedText.tsv[(Int, Int)]("inputFile1"), right)
+      .typedSink(TypedText.tsv[(Int, (Int, Option[Int]))]("outputFile")){ outputBuffer =>
+        outputBuffer.toList.sorted shouldBe expected(left).sorted
+      }(implicitly[TypeDescriptor[(Int, (Int, Option[Int]))]].converter)
+      .counter("right materialized", typed.cascading_backend.HashJoiner.COUNTER_GROUP)(checkMaterialized)
+      .counter("right streamed", typed.cascading_backend.HashJoiner.COUNTER_GROUP)(checkStreamed)
+      .run
+      .finish()
+
+  "A multi valued hashLeftJoin" should {
+    "materialize the right values under the threshold" in {
+      runJob(10)(_ should be > 0L, _ shouldBe 0L)
+    }
+    "stream the right values over the threshold" in {
+      runJob(1)(_ should be > 0L, _ should be > 0L)
+    }
+    "compute the right values of each key once when the left keys are not sorted" in {
+      // keys 0, 1, 2 and 3
+      runJob(10, unsortedLeft)(_ shouldBe 4L, _ shouldBe 0L)
+      // keys 1 and 2 have more than one value
+      runJob(1, unsortedLeft)(_ shouldBe 2L, _ shouldBe 2L)
+    }
+  }
+}
+
 class TypedPipeTwoHashJoinsInARowTest extends WordSpec with Matchers {
   "Two hashJoins" should {
     "work correctly" in {
@@ -0,0 +1,91 @@
+package com.twitter.scalding.tap
+
+import com.twitter.scalding.{ Config, Hdfs, JobStats, StatKey, TypedPipe, TypedTsv }
+import com.twitter.scalding.typed.cascading_backend.AsyncFlowDefRunner
+import java.io.{ File, FileOutputStream, FileWriter }
+import java.nio.file.Files
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{ FileSystem, Path }
+import org.apache.hadoop.mapred.JobConf
+import org.scalatest.{ Matchers, WordSpec }
+
+class FileMetadataCacheTest extends WordSpec with Matchers {
+  def touch(f: File): Unit = {
+    f.getParentFile.mkdirs()
+    new FileOutputStream(f).close()
+  }
+
+  def executionConf(enabled: Boolean): JobConf = {
+    val conf = new JobConf
+    conf.set("scalding.execution.uuid", java.util.UUID.randomUUID.toString)
+    conf.setBoolean(FileMetadataCaches.CACHE_ENABLED, enabled)
+    conf
+  }
+
+  "FileMetadataCaches" should {
+    "not cache unless enabled" in {
+      FileMetadataCaches.forConf(executionConf(false)) shouldBe FileMetadataCaches.NONE
+      FileMetadataCaches.forConf(new JobConf) shouldBe FileMetadataCaches.NONE
+    }
+
+    "share a cache within an execution" in {
+      val conf = executionConf(true)
+      FileMetadataCaches.forConf(conf) should be theSameInstanceAs FileMetadataCaches.forConf(new JobConf(conf))
+      FileMetadataCaches.forConf(conf) should not be theSameInstanceAs(FileMetadataCaches.forConf(executionConf(true)))
+    }
+
+    "count hits and see writes after invalidation" in {
+      val root = Files.createTempDirectory("file-metadata-cache").toFile
+      root.deleteOnExit()
+      touch(new File(root, "a/part-00000"))
+
+      val conf = executionConf(true)
+      val fs = FileSystem.getLocal(conf)
+      val cache = FileMetadataCaches.forConf(conf)
+      val glob = new Path(root.getAbsolutePath, "*/part-*")
+
+      cache.globStatus(fs, glob).length shouldBe 1
+      cache.exists(fs, new Path(root.getAbsolutePath, "b")) shouldBe false
+      cache.getMisses shouldBe 2
+
+      touch(new File(root, "b/part-00000"))
+      cache.globStatus(fs, glob).length shouldBe 1
+      cache.exists(fs, new Path(root.getAbsolutePath, "b")) shouldBe false
+      cache.getHits shouldBe 2
+
+      FileMetadataCaches.invalidate(conf, fs, new Path(root.getAbsolutePath, "b"))
+      cache.globStatus(fs, glob).length shouldBe 2
+      cache.exists(fs, new Path(root.getAbsolutePath, "b")) shouldBe true
+    }
+
+    "add hits and misses to the counters of a flow" in {
+      val stats = AsyncFlowDefRunner.withCacheCounters(JobStats.empty, (3L, 1L))
+      stats.counters(FileMetadataCaches.COUNTER_GROUP) shouldBe Map(
+        FileMetadataCaches.HITS_COUNTER -> 3L,
+        FileMetadataCaches.MISSES_COUNTER -> 1L)
+      AsyncFlowDefRunner.withCacheCounters(JobStats.empty, (0L, 0L)) shouldBe JobStats.empty
+    }
+
+    "report the lookups of an execution as counters" in {
+      val root = Files.createTempDirectory("file-metadata-cache").toFile
+      root.deleteOnExit()
+      val input = new File(root, "input/part-00000")
+      touch(input)
+      val writer = new FileWriter(input)
+      writer.write("1\n2\n3\n")
+      writer.close()
+      val output = new File(root, "output").getAbsolutePath
+
+      val mode = Hdfs(true, new Configuration)
+      val config = Config.defaultFrom(mode) + (FileMetadataCaches.CACHE_ENABLED -> "true")
+      val (_, counters) = TypedPipe.from(TypedTsv[Int](new File(root, "input").getAbsolutePath))
+        .map(_ + 1)
+        .writeExecution(TypedTsv[Int](output))
+        .getCounters
+        .waitFor(config, mode)
+        .get
+
+      counters.get(StatKey(FileMetadataCaches.MISSES_COUNTER, FileMetadataCaches.COUNTER_GROUP)) should not be empty
+    }
+  }
+}
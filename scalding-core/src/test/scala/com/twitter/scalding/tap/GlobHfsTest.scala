@@ -0,0 +1,65 @@
+package com.twitter.scalding.tap
+
+import java.io.{ File, FileOutputStream }
+import java.nio.file.Files
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.mapred.JobConf
+import org.scalatest.{ Matchers, WordSpec }
+
+class GlobHfsTest extends WordSpec with Matchers {
+  def writeFile(f: File, bytes: Int): Unit = {
+    f.getParentFile.mkdirs()
+    val out = new FileOutputStream(f)
+    try out.write(new Array[Byte](bytes)) finally out.close()
+  }
+
+  def makeDirs(): File = {
+    val root = Files.createTempDirectory("glob-hfs-size").toFile
+    root.deleteOnExit()
+    (0 until 5).foreach { hour =>
+      writeFile(new File(root, s"2017/01/01/$hour/part-00000"), 10)
+      writeFile(new File(root, s"2017/01/01/$hour/part-00001"), 5)
+    }
+    writeFile(new File(root, "2017/01/01/file"), 7)
+    root
+  }
+
+  "GlobHfs.getSize" should {
+    "sum files and directories matched by a glob" in {
+      val root = makeDirs()
+      val conf = new JobConf
+      GlobHfs.getSize(new Path(root.getAbsolutePath, "2017/01/01/*"), conf) shouldBe (5 * 15 + 7)
+      GlobHfs.getSize(new Path(root.getAbsolutePath, "2017/01/01/{1,2}"), conf) shouldBe 30
+    }
+
+    "size directories in parallel" in {
+      val root = makeDirs()
+      val conf = new JobConf
+      conf.setInt(GlobHfs.SIZE_PARALLELISM, 3)
+      GlobHfs.getSize(new Path(root.getAbsolutePath, "2017/01/01/*"), conf) shouldBe (5 * 15 + 7)
+    }
+
+    "cache directory sizes for the execution only when the cache is enabled" in {
+      val root = makeDirs()
+      val glob = new Path(root.getAbsolutePath, "2017/01/01/[0-4]")
+
+      val uncached = new JobConf
+      uncached.set("scalding.execution.uuid", java.util.UUID.randomUUID.toString)
+      GlobHfs.getSize(glob, uncached) shouldBe 75
+      writeFile(new File(root, "2017/01/01/0/part-00002"), 100)
+      GlobHfs.getSize(glob, uncached) shouldBe 175
+
+      val conf = new JobConf
+      conf.set("scalding.execution.uuid", java.util.UUID.randomUUID.toString)
+      conf.setBoolean(FileMetadataCaches.CACHE_ENABLED, true)
+      GlobHfs.getSize(glob, conf) shouldBe 175
+
+      writeFile(new File(root, "2017/01/01/1/part-00002"), 100)
+      GlobHfs.getSize(glob, conf) shouldBe 175
+
+      val nextExecution = new JobConf(conf)
+      nextExecution.set("scalding.execution.uuid", java.util.UUID.randomUUID.toString)
+      GlobHfs.getSize(glob, nextExecution) shouldBe 275
+    }
+  }
+}
@@ -6,7 +6,7 @@ import com.stripe.dagon.{ Dag, Rule }
 import com.twitter.algebird.Monoid
 import com.twitter.scalding.source.{ TypedText, NullSink }
 import org.apache.hadoop.conf.Configuration
-import com.twitter.scalding.{ Config, ExecutionContext, Local, Hdfs, FlowState, FlowStateMap, IterableSource }
+import com.twitter.scalding.{ Config, ExecutionContext, Local, Hdfs, FlowState, FlowStateMap, IterableSource, StatKey }
 import com.twitter.scalding.typed.cascading_backend.CascadingBackend
 import com.twitter.scalding.typed.memory_backend.MemoryMode
 import org.scalatest.FunSuite
@@ -307,6 +307,88 @@ class OptimizationRulesTest extends FunSuite with PropertyChecks {
     forAll(genWithIterableSources)(optimizationLawMemory[Int](_, OptimizationRules.DeDiamondMappers))
   }
 
+  test("skew joins never change results") {
+    import TypedPipeGen.genWithIterableSources
+    implicit val generatorDrivenConfig: PropertyCheckConfiguration = PropertyCheckConfiguration(minSuccessful = 50)
+    forAll(genWithIterableSources)(optimizationLaw[Int](_, OptimizationRules.ReplicateSkewedJoinKeys(1.0, Some(4))))
+  }
+
+  test("skew joins replicate heavy keys") {
+    // half of the left side has key 0
+    val left = TypedPipe.from((0 until 1000).map { i => (if (i % 2 == 0) 0 else i, i) })
+    val right = TypedPipe.from((0 until 100).map { i => (i % 10, i) })
+    val rule = OptimizationRules.ReplicateSkewedJoinKeys(1.0, Some(10))
+
+    val inner = left.join(right).toTypedPipe
+    assert(Dag.applyRule(inner, toLiteral, rule) != inner)
+    optimizationLaw(inner, rule)
+    optimizationLaw(left.leftJoin(right).toTypedPipe, rule)
+
+    // splitting the left values changes the result of an outer join
+    val outer = left.outerJoin(right).toTypedPipe
+    assert(Dag.applyRule(outer, toLiteral, rule) == outer)
+  }
+
+  test("skew joins only replicate the keys that are too heavy for one reducer") {
+    // with 1000 sampled keys and 10 reducers one reducer should take at most 11 of them
+    val replicas = SkewJoin.Replicas[String](10)
+    assert(replicas((("light", 10L), 1000L)) == Nil)
+    assert(replicas((("medium", 30L), 1000L)) == List(("medium", 3)))
+    // never more replicas than reducers
+    assert(replicas((("heavy", 500L), 1000L)) == List(("heavy", 10)))
+  }
+
+  test("skew joins send left values to one sub-key and right values to all of them") {
+    val left = SkewJoin.RouteLeft[String, Int](12345L)
+    val heavySubKeys = (0 until 1000).map { v => left(("heavy", (v, Some(4))))._1._1 }.toSet
+    assert(heavySubKeys == Set(0, 1, 2, 3))
+    assert((0 until 100).map { v => left(("light", (v, None))) }.toSet == (0 until 100).map { v => ((0, "light"), v) }.toSet)
+
+    val right = SkewJoin.RouteRight[String, Int]()
+    assert(right(("heavy", (7, Some(3)))).toList == List(((0, "heavy"), 7), ((1, "heavy"), 7), ((2, "heavy"), 7)))
+    assert(right(("light", (7, None))).toList == List(((0, "light"), 7)))
+  }
+
+  test("hash joins of small right sides never change results") {
+    import TypedPipeGen.genWithIterableSources
+    implicit val generatorDrivenConfig: PropertyCheckConfiguration = PropertyCheckConfiguration(minSuccessful = 50)
+    val rule = OptimizationRules.HashJoinSmallRight(1L << 20, { _ => None })
+    forAll(genWithIterableSources)(optimizationLaw[Int](_, rule))
+  }
+
+  test("joins with a small right side become hash joins") {
+    val left = TypedPipe.from((0 until 1000).map { i => (i % 100, i) })
+    val right = TypedPipe.from(TypedText.tsv[(Int, Int)]("small"))
+    def rule(rightBytes: Long) = OptimizationRules.HashJoinSmallRight(1000L, { _ => Some(rightBytes) })
+
+    val inner = left.join(right.filter(_._2 > 0)).toTypedPipe
+    assert(Dag.applyRule(inner, toLiteral, rule(1000L)) != inner)
+    assert(Dag.applyRule(inner, toLiteral, rule(1001L)) == inner)
+
+    // a right join needs every left value at once
+    val rightJoin = left.rightJoin(right).toTypedPipe
+    assert(Dag.applyRule(rightJoin, toLiteral, rule(0L)) == rightJoin)
+
+    val inMemory = TypedPipe.from((0 until 10).map { i => (i, i) })
+    optimizationLaw(left.join(inMemory).toTypedPipe, rule(0L))
+    optimizationLaw(left.leftJoin(inMemory).toTypedPipe, rule(0L))
+  }
+
+  test("hash joins of small right sides increment a counter once per task") {
+    val left = TypedPipe.from((0 until 1000).map { i => (i % 100, i) })
+    val right = TypedPipe.from((0 until 10).map { i => (i, -i) })
+    val mode = Hdfs(true, new Configuration)
+    val config = Config.defaultFrom(mode).setHashJoinAutoMaxBytes(1L << 20)
+
+    left.join(right).toTypedPipe.toIterableExecution.getCounters.waitFor(config, mode) match {
+      case Success((result, counters)) =>
+        assert(result.toList.sorted == (0 until 1000).filter(_ % 100 < 10).map { i => (i % 100, (i, -(i % 100))) }.toList.sorted)
+        val key = StatKey(OptimizationRules.HashJoinSmallRight.CounterName, OptimizationRules.HashJoinSmallRight.CounterGroup)
+        assert(counters.get(key) == Some(1L))
+      case Failure(e) => fail(s"expected success, got $e")
+    }
+  }
+
   test("some past failures of the optimizationLaw") {
     import TypedPipe._
 
@@ -4,6 +4,8 @@ import org.scalatest.FunSuite
 import org.scalatest.prop.PropertyChecks
 import com.twitter.scalding.{ TypedPipe, Execution, Config, Local }
 import com.twitter.scalding.typed.TypedPipeGen
+import scala.concurrent.{ Await, ExecutionContext }
+import scala.concurrent.duration.Duration
 
 class MemoryTest extends FunSuite with PropertyChecks {
 
@@ -106,4 +108,124 @@ class MemoryTest extends FunSuite with PropertyChecks {
     val expected = (0 to 10000).groupBy(_ % 31).mapValues(_.sum).toList.sorted
     assert(jobRes.get.toList.sorted == expected)
   }
+
+  test("partitioned reduce matches single threaded reduce") {
+    val job = TypedPipe.from(0 until 10000)
+      .groupBy(_ % 97)
+      .sorted
+      .mapGroup { (k, vs) => Iterator.single(vs.toList) }
+      .toIterableExecution
+
+    val single = job.waitFor(Config.empty.setMemoryBackendReducePartitions(1), MemoryMode.empty)
+    val partitioned = job.waitFor(Config.empty.setMemoryBackendReducePartitions(8), MemoryMode.empty)
+    assert(single.get.toMap == partitioned.get.toMap)
+  }
+
+  test("multi-way join with repeated keys works") {
+    val input = TypedPipe.from(0 until 300)
+    val a = input.map { k => (k % 7, k) }
+    val b = input.map { k => (k % 11, k % 3) }
+    val c = input.map { k => (k % 13, k.toString) }
+
+    sortMatch(a.join(b).join(c).toIterableExecution)
+    sortMatch(a.leftJoin(b).outerJoin(c).toIterableExecution)
+  }
+
+  test("streaming mode gives the same result as buffered mode") {
+    import TypedPipeGen.genWithIterableSources
+    implicit val generatorDrivenConfig: PropertyCheckConfiguration = PropertyCheckConfiguration(minSuccessful = 500)
+    forAll(genWithIterableSources) { pipe =>
+      val ex = pipe.toIterableExecution
+      val streamed = ex.waitFor(Config.empty.setMemoryBackendStreaming(true), MemoryMode.empty)
+      val buffered = ex.waitFor(Config.empty, MemoryMode.empty)
+
+      assert(streamed.get.toList.sorted == buffered.get.toList.sorted)
+    }
+  }
+
+  test("chunked parallel map and filter give the same result as a single thread") {
+    import TypedPipeGen.genWithIterableSources
+    implicit val generatorDrivenConfig: PropertyCheckConfiguration = PropertyCheckConfiguration(minSuccessful = 500)
+    forAll(genWithIterableSources) { pipe =>
+      val ex = pipe.toIterableExecution
+      val chunked = ex.waitFor(Config.empty.setMemoryBackendMinChunkSize(1), MemoryMode.empty)
+      val single = ex.waitFor(Config.empty.setMemoryBackendMinChunkSize(Int.MaxValue), MemoryMode.empty)
+
+      assert(chunked.get.toList.sorted == single.get.toList.sorted)
+    }
+  }
+
+  test("map runs on a single thread unless chunking is set") {
+    val threads = java.util.Collections.synchronizedSet(new java.util.HashSet[Long])
+    val ex = TypedPipe.from(0 until 100000)
+      .map { i => threads.add(Thread.currentThread.getId); i }
+      .toIterableExecution
+    assert(ex.waitFor(Config.empty, MemoryMode.empty).get.size == 100000)
+    assert(threads.size == 1)
+  }
+
+  test("Op.chunks covers the input in order") {
+    forAll { (size0: Int, minChunk0: Int) =>
+      val size = (size0 & Int.MaxValue) % 100000
+      val minChunk = (minChunk0 & Int.MaxValue) % 1000 + 1
+      val chunks = Op.chunks(size, minChunk)
+      assert(chunks.head._1 == 0)
+      assert(chunks.last._2 == size)
+      chunks.zip(chunks.tail).foreach { case ((_, e), (s, _)) => assert(e == s) }
+      if (chunks.size > 1) assert(chunks.forall { case (s, e) => e - s >= minChunk })
+    }
+  }
+
+  test("spilling to disk gives the same result as keeping everything in memory") {
+    import TypedPipeGen.genWithIterableSources
+    implicit val generatorDrivenConfig: PropertyCheckConfiguration = PropertyCheckConfiguration(minSuccessful = 100)
+    forAll(genWithIterableSources) { pipe =>
+      val ex = pipe.toIterableExecution
+      val spilled = ex.waitFor(Config.empty.setMemoryBackendSpillThreshold(3), MemoryMode.empty)
+      val inMemory = ex.waitFor(Config.empty, MemoryMode.empty)
+
+      assert(spilled.get.toList.sorted == inMemory.get.toList.sorted)
+    }
+  }
+
+  test("SortedSpiller merges spilled runs in order") {
+    val spill = SpillConfig.fromConfig(Config.empty.setMemoryBackendSpillThreshold(10)).get
+    val sorter = new SortedSpiller[Int](Ordering.Int, spill)
+    val items = (0 until 1000).map(i => (i * 7919) % 1000)
+    items.foreach(sorter.add)
+    assert(sorter.spilledRuns == 100)
+    assert(sorter.sortedIterator.toList == items.sorted.toList)
+  }
+
+  test("SpillFiles removes spill files, even if a reader stops early") {
+    implicit val ec: ExecutionContext = ExecutionContext.global
+    val spill = SpillConfig.fromConfig(Config.empty.setMemoryBackendSpillThreshold(10)).get
+    val mat = Op.SpillMaterialize(Op.source(0 until 100), spill)
+    val it = Await.result(mat.iterator, Duration.Inf)
+    assert(it.take(5).toList == (0 until 5).toList)
+    assert(spill.files.remaining.size == 1)
+
+    // exhausted readers close themselves
+    assert(Await.result(mat.result, Duration.Inf).toList == (0 until 100).toList)
+
+    spill.files.cleanup()
+    assert(spill.files.remaining.isEmpty)
+  }
+
+  test("Materialize shares its result with readers and copies for writers") {
+    implicit val ec: ExecutionContext = ExecutionContext.global
+    val mat = Op.source(0 until 100).materialize
+    val shared1 = Await.result(mat.sharedResult, Duration.Inf)
+    val shared2 = Await.result(mat.sharedResult, Duration.Inf)
+    assert(shared1 eq shared2)
+
+    val owned = Await.result(Op.MapOp(mat, { i: Int => i + 1 }).result, Duration.Inf)
+    assert(!(owned eq shared1))
+    assert(owned.toList == (1 to 100).toList)
+    assert(shared1.toList == (0 until 100).toList)
+
+    val filtered = Await.result(Op.Filter(mat, { i: Int => i % 2 == 0 }, 10).result, Duration.Inf)
+    assert(filtered.toList == (0 until 100 by 2).toList)
+    assert(shared1.toList == (0 until 100).toList)
+  }
 }
@@ -0,0 +1,118 @@
+package com.twitter.scalding.parquet.scrooge;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetInputFormat;
+import org.apache.parquet.hadoop.mapred.Container;
+import org.apache.parquet.hadoop.mapred.DeprecatedParquetInputFormat;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+
+/**
+ * DeprecatedParquetInputFormat that counts how much of each split a filter predicate skipped.
+ *
+ * Row groups are counted as skipped when their statistics do not match the filter. Records
+ * in the remaining row groups that the filter dropped, including whole row groups dropped by
+ * their dictionaries, are counted as skipped records.
+ *
+ * The reader parquet builds keeps its footer to itself, so counting row groups reads the
+ * footer of each split a second time. This is one extra ranged read per split, which is
+ * why ParquetScroogeScheme only uses this format when {@link #ENABLED} is set.
+ */
+public class FilterCountingParquetInputFormat<V> extends DeprecatedParquetInputFormat<V> {
+  public static final String ENABLED = "scalding.parquet.filter.counters";
+
+  public static final String COUNTER_GROUP = "Scalding Custom";
+  public static final String ROW_GROUPS = "parquet.filter.rowgroups";
+  public static final String ROW_GROUPS_SKIPPED = "parquet.filter.rowgroups.skipped";
+  public static final String RECORDS_READ = "parquet.filter.records.read";
+  public static final String RECORDS_SKIPPED = "parquet.filter.records.skipped";
+
+  @Override
+  public RecordReader<Void, Container<V>> getRecordReader(InputSplit split, JobConf job,
+      Reporter reporter) throws IOException {
+    RecordReader<Void, Container<V>> reader = super.getRecordReader(split, job, reporter);
+    FilterCompat.Filter filter = ParquetInputFormat.getFilter(job);
+    if (reporter == null || filter == FilterCompat.NOOP) {
+      return reader;
+    }
+
+    // with task side metadata the splits are plain file splits, so we look at their row groups
+    long rowsInRowGroups = -1;
+    if (split instanceof FileSplit) {
+      FileSplit fileSplit = (FileSplit) split;
+      ParquetMetadata footer = ParquetFileReader.readFooter(job, fileSplit.getPath(),
+          ParquetMetadataConverter.range(fileSplit.getStart(), fileSplit.getStart() + fileSplit.getLength()));
+      List<BlockMetaData> rowGroups = footer.getBlocks();
+      List<BlockMetaData> kept =
+          RowGroupFilter.filterRowGroups(filter, rowGroups, footer.getFileMetaData().getSchema());
+      reporter.incrCounter(COUNTER_GROUP, ROW_GROUPS, rowGroups.size());
+      reporter.incrCounter(COUNTER_GROUP, ROW_GROUPS_SKIPPED, rowGroups.size() - kept.size());
+      rowsInRowGroups = 0;
+      for (BlockMetaData rowGroup : kept) {
+        rowsInRowGroups += rowGroup.getRowCount();
+      }
+    }
+    return new CountingRecordReader<V>(reader, reporter, rowsInRowGroups);
+  }
+
+  private static class CountingRecordReader<V> implements RecordReader<Void, Container<V>> {
+    private final RecordReader<Void, Container<V>> reader;
+    private final Reporter reporter;
+    // -1 if we do not know
+    private final long rowsInRowGroups;
+    private long read = 0;
+    private boolean reported = false;
+
+    CountingRecordReader(RecordReader<Void, Container<V>> reader, Reporter reporter, long rowsInRowGroups) {
+      this.reader = reader;
+      this.reporter = reporter;
+      this.rowsInRowGroups = rowsInRowGroups;
+    }
+
+    public boolean next(Void key, Container<V> value) throws IOException {
+      boolean hasNext = reader.next(key, value);
+      if (hasNext) {
+        read++;
+      }
+      return hasNext;
+    }
+
+    public Void createKey() {
+      return reader.createKey();
+    }
+
+    public Container<V> createValue() {
+      return reader.createValue();
+    }
+
+    public long getPos() throws IOException {
+      return reader.getPos();
+    }
+
+    public float getProgress() throws IOException {
+      return reader.getProgress();
+    }
+
+    public void close() throws IOException {
+      if (!reported) {
+        reported = true;
+        reporter.incrCounter(COUNTER_GROUP, RECORDS_READ, read);
+        if (rowsInRowGroups >= 0) {
+          reporter.incrCounter(COUNTER_GROUP, RECORDS_SKIPPED, Math.max(0L, rowsInRowGroups - read));
+        }
+      }
+      reader.close();
+    }
+  }
+}
@@ -62,7 +62,12 @@ public class ParquetScroogeScheme<T extends ThriftStruct> extends ParquetValueSc
   public void sourceConfInit(FlowProcess<JobConf> fp,
       Tap<JobConf, RecordReader, OutputCollector> tap, JobConf jobConf) {
     super.sourceConfInit(fp, tap, jobConf);
-    jobConf.setInputFormat(DeprecatedParquetInputFormat.class);
+    if (this.config.getFilterPredicate() != null
+        && jobConf.getBoolean(FilterCountingParquetInputFormat.ENABLED, false)) {
+      jobConf.setInputFormat(FilterCountingParquetInputFormat.class);
+    } else {
+      jobConf.setInputFormat(DeprecatedParquetInputFormat.class);
+    }
     ParquetInputFormat.setReadSupportClass(jobConf, ScroogeReadSupport.class);
     ThriftReadSupport.setRecordConverterClass(jobConf, ScroogeRecordConverter.class);
   }
@@ -37,9 +37,12 @@ import org.apache.parquet.thrift.projection.FieldProjectionFilter;
 import org.apache.parquet.thrift.projection.ThriftProjectionException;
 import org.apache.parquet.thrift.struct.ThriftType;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Read support for Scrooge
@@ -48,6 +51,10 @@ import java.util.Set;
  */
 public class ScroogeReadSupport<T extends ThriftStruct> extends ThriftReadSupport<T> {
 
+  // projected schemas by thrift class and column filters, as each split of a job computes the same one
+  private static final ConcurrentMap<List<Object>, MessageType> PROJECTED_SCHEMAS =
+      new ConcurrentHashMap<List<Object>, MessageType>();
+
   /**
    * used from hadoop
    * the configuration must contain a "parquet.thrift.read.class" setting
@@ -98,7 +105,7 @@ public class ScroogeReadSupport<T extends ThriftStruct> extends ThriftReadSuppor
         if (thriftClass == null) {
           thriftClass = getThriftClassFromMultipleFiles(context.getKeyValueMetadata(), configuration);
         }
-        requestedProjection = getProjectedSchema(projectionFilter);
+        requestedProjection = getCachedProjectedSchema(configuration, projectionFilter);
       } catch (ClassNotFoundException e) {
         throw new ThriftProjectionException("can not find thriftClass from configuration", e);
       }
@@ -108,6 +115,17 @@ public class ScroogeReadSupport<T extends ThriftStruct> extends ThriftReadSuppor
     return new ReadContext(schemaForRead);
   }
 
+  private MessageType getCachedProjectedSchema(Configuration configuration, FieldProjectionFilter projectionFilter) {
+    List<Object> key = Arrays.<Object>asList(getClass(), thriftClass,
+        configuration.get(STRICT_THRIFT_COLUMN_FILTER_KEY), configuration.get(THRIFT_COLUMN_FILTER_KEY));
+    MessageType projection = PROJECTED_SCHEMAS.get(key);
+    if (projection == null) {
+      projection = getProjectedSchema(projectionFilter);
+      PROJECTED_SCHEMAS.putIfAbsent(key, projection);
+    }
+    return projection;
+  }
+
   /**
    * attempts to validate and construct a {@link MessageType} from a read projection schema
    *
@@ -24,8 +24,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import scala.collection.JavaConversions;
 import scala.collection.JavaConversions$;
@@ -49,10 +50,18 @@ import static org.apache.parquet.thrift.struct.ThriftField.Requirement.OPTIONAL;
  * Class to convert a scrooge generated class to {@link ThriftType.StructType}. {@link ScroogeReadSupport } uses this
  * class to get the requested schema
  *
+ * The conversion is done with reflection, so the struct and enum types are cached for the life of the
+ * process, keyed by class. The cached types are shared and must not be modified.
+ *
  * @author Tianshuo Deng
  */
 public class ScroogeStructConverter {
 
+  private static final ConcurrentMap<Class<?>, ThriftType.StructType> STRUCT_TYPES =
+      new ConcurrentHashMap<Class<?>, ThriftType.StructType>();
+  private static final ConcurrentMap<Class<?>, ThriftType.EnumType> ENUM_TYPES =
+      new ConcurrentHashMap<Class<?>, ThriftType.EnumType>();
+
   /**
    * convert a given scrooge generated class to {@link ThriftType.StructType}
    */
@@ -60,6 +69,14 @@ public class ScroogeStructConverter {
     return convertStructFromClass(scroogeClass);
   }
 
+  /**
+   * Forget the cached conversions, so the next ones are done from scratch
+   */
+  public static void clearCache() {
+    STRUCT_TYPES.clear();
+    ENUM_TYPES.clear();
+  }
+
   private static String mapKeyName(String fieldName) {
     return fieldName + "_map_key";
   }
@@ -84,8 +101,14 @@ public class ScroogeStructConverter {
     }
   }
 
-  private ThriftType.StructType convertStructFromClass(Class klass) {
-    return convertCompanionClassToStruct(getCompanionClass(klass));
+  private ThriftType.StructType convertStructFromClass(Class<?> klass) {
+    ThriftType.StructType struct = STRUCT_TYPES.get(klass);
+    if (struct == null) {
+      // two threads may both convert klass, they get equal types
+      struct = convertCompanionClassToStruct(getCompanionClass(klass));
+      STRUCT_TYPES.putIfAbsent(klass, struct);
+    }
+    return struct;
   }
 
   private ThriftType.StructType convertCompanionClassToStruct(Class<?> companionClass) {
@@ -98,8 +121,8 @@ public class ScroogeStructConverter {
       throw new ScroogeSchemaConversionException("Can not get ThriftStructCodec from companion object of " + companionClass.getName(), e);
     }
 
-    List<ThriftField> children = new LinkedList<ThriftField>();//{@link ThriftType.StructType} uses foreach loop to iterate the children, yields O(n) time for linked list
     Iterable<ThriftStructFieldInfo> scroogeFields = getFieldInfos(companionObject);
+    List<ThriftField> children = new ArrayList<ThriftField>();
     for (ThriftStructFieldInfo field : scroogeFields) {
       children.add(toThriftField(field));
     }
@@ -331,7 +354,16 @@ public class ScroogeStructConverter {
     return convertEnumTypeField(f.manifest().runtimeClass(), f.tfield().name);
   }
 
-  private ThriftType convertEnumTypeField(Class enumClass, String fieldName) {
+  private ThriftType convertEnumTypeField(Class<?> enumClass, String fieldName) {
+    ThriftType.EnumType enumType = ENUM_TYPES.get(enumClass);
+    if (enumType == null) {
+      enumType = convertEnumClass(enumClass, fieldName);
+      ENUM_TYPES.putIfAbsent(enumClass, enumType);
+    }
+    return enumType;
+  }
+
+  private ThriftType.EnumType convertEnumClass(Class<?> enumClass, String fieldName) {
     List<ThriftType.EnumValue> enumValues = new ArrayList<ThriftType.EnumValue>();
     String enumName = enumClass.getName();
     try {
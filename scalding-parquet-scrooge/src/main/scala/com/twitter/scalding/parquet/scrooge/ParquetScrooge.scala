@@ -10,6 +10,14 @@ import scala.reflect.ClassTag
 
 trait ParquetScrooge[T <: ThriftStruct] extends ParquetThriftBaseFileSource[T] {
 
+  /**
+   * The columns of T, to build a checked filter predicate from:
+   * {{{
+   * override val withFilter = Some(columns.long("id") > 10L)
+   * }}}
+   */
+  @transient protected lazy val columns: ScroogeColumns[T] = ScroogeColumns[T](ct)
+
   override def hdfsScheme = {
     // See docs in Parquet346ScroogeScheme
     val scheme = new Parquet346ScroogeScheme[T](this.config)
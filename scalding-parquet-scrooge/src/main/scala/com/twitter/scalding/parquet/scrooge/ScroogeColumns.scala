@@ -0,0 +1,110 @@
+package com.twitter.scalding.parquet.scrooge
+
+import com.twitter.scrooge.ThriftStruct
+import org.apache.parquet.filter2.predicate.{ FilterApi, FilterPredicate, Operators }
+import org.apache.parquet.io.api.Binary
+import org.apache.parquet.schema.{ MessageType, Type }
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName
+import org.apache.parquet.thrift.ThriftSchemaConverter
+
+import scala.reflect.ClassTag
+
+/**
+ * Builds parquet filter predicates on the columns of a scrooge struct, checking each
+ * column against the parquet schema of the struct so a typo or a wrong type fails
+ * when the job is planned rather than silently matching nothing.
+ *
+ * Columns are named by their dotted thrift field path, such as "address.zip".
+ * Parquet can only filter on columns that are not repeated, so columns inside
+ * lists, sets and maps are rejected.
+ *
+ * {{{
+ * import ScroogeColumns._
+ * val cols = ScroogeColumns[Person]
+ * override def withFilter = Some(cols.long("id") > 10L && cols.string("name.first_name") === "Alice")
+ * }}}
+ */
+class ScroogeColumns[T <: ThriftStruct](thriftClass: Class[T]) extends java.io.Serializable {
+  import ScroogeColumns._
+
+  @transient lazy val schema: MessageType =
+    new ThriftSchemaConverter().convert(new ScroogeStructConverter().convert(thriftClass))
+
+  def int(path: String): OrderedColumn[java.lang.Integer, Operators.IntColumn, Int] =
+    new OrderedColumn(FilterApi.intColumn(checked(path, PrimitiveTypeName.INT32)), Int.box(_))
+
+  def long(path: String): OrderedColumn[java.lang.Long, Operators.LongColumn, Long] =
+    new OrderedColumn(FilterApi.longColumn(checked(path, PrimitiveTypeName.INT64)), Long.box(_))
+
+  def float(path: String): OrderedColumn[java.lang.Float, Operators.FloatColumn, Float] =
+    new OrderedColumn(FilterApi.floatColumn(checked(path, PrimitiveTypeName.FLOAT)), Float.box(_))
+
+  def double(path: String): OrderedColumn[java.lang.Double, Operators.DoubleColumn, Double] =
+    new OrderedColumn(FilterApi.doubleColumn(checked(path, PrimitiveTypeName.DOUBLE)), Double.box(_))
+
+  def boolean(path: String): Column[java.lang.Boolean, Operators.BooleanColumn, Boolean] =
+    new Column(FilterApi.booleanColumn(checked(path, PrimitiveTypeName.BOOLEAN)), Boolean.box(_))
+
+  /**
+   * A string or enum column, compared on the UTF-8 bytes of the value
+   */
+  def string(path: String): OrderedColumn[Binary, Operators.BinaryColumn, String] =
+    new OrderedColumn(FilterApi.binaryColumn(checked(path, PrimitiveTypeName.BINARY)), stringToBinary)
+
+  def binary(path: String): OrderedColumn[Binary, Operators.BinaryColumn, Array[Byte]] =
+    new OrderedColumn(FilterApi.binaryColumn(checked(path, PrimitiveTypeName.BINARY)), bytesToBinary)
+
+  private def checked(path: String, expected: PrimitiveTypeName): String = {
+    val names = path.split('.')
+    require(schema.containsPath(names), s"No column $path in ${thriftClass.getName}")
+
+    val types = names.indices.map { i => schema.getType(names.take(i + 1): _*) }
+    require(!types.exists(_.isRepetition(Type.Repetition.REPEATED)),
+      s"Can not filter on $path in ${thriftClass.getName}, it is inside a repeated field")
+
+    val column = types.last
+    require(column.isPrimitive, s"Can not filter on $path in ${thriftClass.getName}, it is a struct")
+    val actual = column.asPrimitiveType.getPrimitiveTypeName
+    require(actual == expected,
+      s"Column $path in ${thriftClass.getName} is $actual, not $expected")
+    path
+  }
+}
+
+object ScroogeColumns {
+  def apply[T <: ThriftStruct](implicit ct: ClassTag[T]): ScroogeColumns[T] =
+    new ScroogeColumns[T](ct.runtimeClass.asInstanceOf[Class[T]])
+
+  private val stringToBinary: String => Binary = Binary.fromString(_)
+  private val bytesToBinary: Array[Byte] => Binary = Binary.fromConstantByteArray(_)
+
+  /**
+   * A column that can be compared for equality. A null value matches
+   * the records where the column is not set.
+   */
+  class Column[J <: Comparable[J], C <: Operators.Column[J] with Operators.SupportsEqNotEq, S](
+    val column: C, toJava: S => J) extends java.io.Serializable {
+
+    protected def value(s: S): J = if (s == null) null.asInstanceOf[J] else toJava(s)
+
+    def ===(s: S): FilterPredicate = FilterApi.eq[J, C](column, value(s))
+    def !==(s: S): FilterPredicate = FilterApi.notEq[J, C](column, value(s))
+    def isNull: FilterPredicate = FilterApi.eq[J, C](column, null.asInstanceOf[J])
+    def isNotNull: FilterPredicate = FilterApi.notEq[J, C](column, null.asInstanceOf[J])
+  }
+
+  class OrderedColumn[J <: Comparable[J], C <: Operators.Column[J] with Operators.SupportsLtGt, S](
+    c: C, toJava: S => J) extends Column[J, C, S](c, toJava) {
+
+    def <(s: S): FilterPredicate = FilterApi.lt[J, C](column, toJava(s))
+    def <=(s: S): FilterPredicate = FilterApi.ltEq[J, C](column, toJava(s))
+    def >(s: S): FilterPredicate = FilterApi.gt[J, C](column, toJava(s))
+    def >=(s: S): FilterPredicate = FilterApi.gtEq[J, C](column, toJava(s))
+  }
+
+  implicit class RichFilterPredicate(val predicate: FilterPredicate) extends AnyVal {
+    def &&(other: FilterPredicate): FilterPredicate = FilterApi.and(predicate, other)
+    def ||(other: FilterPredicate): FilterPredicate = FilterApi.or(predicate, other)
+    def unary_! : FilterPredicate = FilterApi.not(predicate)
+  }
+}
@@ -0,0 +1,124 @@
+package com.twitter.scalding.parquet.scrooge;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowProcess;
+import cascading.flow.hadoop.HadoopFlowConnector;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.pipe.Each;
+import cascading.pipe.Pipe;
+import cascading.scheme.Scheme;
+import cascading.scheme.hadoop.TextLine;
+import cascading.tap.Tap;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.hadoop.thrift.ThriftToParquetFileWriter;
+import org.apache.parquet.hadoop.util.ContextUtil;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Test;
+import com.twitter.scalding.parquet.ParquetValueScheme.Config;
+import com.twitter.scalding.parquet.scrooge.thrift_java.test.RequiredPrimitiveFixture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilterCountingParquetInputFormatTest {
+
+  final String partsPath = "target/test/FilterCountingParquetInputFormat/parts";
+  final String parquetPath = "target/test/FilterCountingParquetInputFormat/merged";
+  final String txtOutputPath = "target/test/FilterCountingParquetInputFormat/txt-out";
+
+  @Test
+  public void testCountsSkippedRowGroupsAndRecords() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf);
+    fs.delete(new Path(partsPath), true);
+    fs.delete(new Path(parquetPath), true);
+    fs.delete(new Path(txtOutputPath), true);
+
+    // three row groups, with test_i32 0-9, 10-19 and 20-29
+    List<Path> parts = new ArrayList<Path>();
+    for (int rowGroup = 0; rowGroup < 3; rowGroup++) {
+      Path part = new Path(partsPath, "part-" + rowGroup + ".parquet");
+      writeRecords(conf, part, rowGroup * 10, 10);
+      parts.add(part);
+    }
+    Path parquetFile = new Path(parquetPath, "file.parquet");
+    ParquetMetadata footer = ParquetFileReader.readFooter(conf, parts.get(0));
+    ParquetFileWriter writer = new ParquetFileWriter(conf, footer.getFileMetaData().getSchema(), parquetFile);
+    writer.start();
+    for (Path part : parts) {
+      writer.appendFile(conf, part);
+    }
+    writer.end(footer.getFileMetaData().getKeyValueMetaData());
+    assertEquals(3, ParquetFileReader.readFooter(conf, parquetFile).getBlocks().size());
+
+    Scheme sourceScheme = new ParquetScroogeScheme(new Config()
+        .withFilterPredicate(FilterApi.eq(FilterApi.intColumn("test_i32"), 15))
+        .withRecordClass(com.twitter.scalding.parquet.scrooge.thrift_scala.test.RequiredPrimitiveFixture.class));
+    Tap source = new Hfs(sourceScheme, parquetPath);
+
+    Scheme sinkScheme = new TextLine(new Fields("first", "last"));
+    Tap sink = new Hfs(sinkScheme, txtOutputPath);
+
+    Pipe assembly = new Pipe("filtercp");
+    assembly = new Each(assembly, new ObjectToStringFunction());
+    Map<Object, Object> properties = new HashMap<Object, Object>();
+    properties.put(FilterCountingParquetInputFormat.ENABLED, "true");
+    Flow flow = new HadoopFlowConnector(properties).connect("filtercp", source, sink, assembly);
+
+    flow.complete();
+    String result = FileUtils.readFileToString(new File(txtOutputPath + "/part-00000"));
+    assertEquals("RequiredPrimitiveFixture(true,2,3,15,5,6.0,7,None)\n", result);
+
+    String group = FilterCountingParquetInputFormat.COUNTER_GROUP;
+    assertEquals(3L, flow.getFlowStats().getCounterValue(group, FilterCountingParquetInputFormat.ROW_GROUPS));
+    assertEquals(2L, flow.getFlowStats().getCounterValue(group, FilterCountingParquetInputFormat.ROW_GROUPS_SKIPPED));
+    assertEquals(1L, flow.getFlowStats().getCounterValue(group, FilterCountingParquetInputFormat.RECORDS_READ));
+    assertEquals(9L, flow.getFlowStats().getCounterValue(group, FilterCountingParquetInputFormat.RECORDS_SKIPPED));
+  }
+
+  private void writeRecords(Configuration conf, Path file, int firstI32, int count) throws Exception {
+    final TProtocolFactory protocolFactory = new TCompactProtocol.Factory();
+    final TaskAttemptID taskId = new TaskAttemptID("local", 0, true, 0, 0);
+    final ThriftToParquetFileWriter w = new ThriftToParquetFileWriter(file,
+        ContextUtil.newTaskAttemptContext(conf, taskId), protocolFactory, RequiredPrimitiveFixture.class);
+    for (int i = firstI32; i < firstI32 + count; i++) {
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      final TProtocol protocol = protocolFactory.getProtocol(new TIOStreamTransport(baos));
+      new RequiredPrimitiveFixture(true, (byte)2, (short)3, i, (long)5, 6.0, "7").write(protocol);
+      w.write(new BytesWritable(baos.toByteArray()));
+    }
+    w.close();
+  }
+
+  private static class ObjectToStringFunction extends BaseOperation implements Function {
+    @Override
+    public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+      Tuple result = new Tuple();
+      result.add(functionCall.getArguments().getObject(0).toString());
+      functionCall.getOutputCollector().add(result);
+    }
+  }
+}
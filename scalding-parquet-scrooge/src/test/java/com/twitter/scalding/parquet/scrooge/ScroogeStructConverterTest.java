@@ -49,6 +49,8 @@ import org.apache.parquet.thrift.ThriftSchemaConverter;
 import org.apache.parquet.thrift.struct.ThriftType;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * Test convert scrooge schema to Parquet Schema
@@ -85,6 +87,17 @@ public class ScroogeStructConverterTest {
     // shouldConvertConsistentlyWithThriftStructConverter(StringAndBinary.class);
   }
 
+  @Test
+  public void testConversionIsCached() throws Exception {
+    ThriftType.StructType first = new ScroogeStructConverter().convert(TestPersonWithAllInformation.class);
+    assertSame(first, new ScroogeStructConverter().convert(TestPersonWithAllInformation.class));
+
+    ScroogeStructConverter.clearCache();
+    ThriftType.StructType converted = new ScroogeStructConverter().convert(TestPersonWithAllInformation.class);
+    assertNotSame(first, converted);
+    assertEquals(toParquetSchema(first), toParquetSchema(converted));
+  }
+
   @Test
   public void testScroogeBinary() {
 
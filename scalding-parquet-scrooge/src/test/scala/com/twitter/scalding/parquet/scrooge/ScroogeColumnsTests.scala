@@ -0,0 +1,49 @@
+package com.twitter.scalding.parquet.scrooge
+
+import com.twitter.scalding.parquet.scrooge.ScroogeColumns._
+import com.twitter.scalding.parquet.scrooge.thrift_scala.test.{ TestFieldOfEnum, TestListPrimitive, TestPerson }
+import org.apache.parquet.filter2.predicate.FilterApi
+import org.apache.parquet.io.api.Binary
+import org.scalatest.{ Matchers, WordSpec }
+
+class ScroogeColumnsTests extends WordSpec with Matchers {
+
+  "ScroogeColumns" should {
+    val person = ScroogeColumns[TestPerson]
+
+    "build the same predicates as FilterApi" in {
+      val age = FilterApi.intColumn("age")
+      val firstName = FilterApi.binaryColumn("name.first_name")
+
+      (person.int("age") > 18) shouldEqual FilterApi.gt(age, Int.box(18))
+      (person.string("name.first_name") === "Alice") shouldEqual
+        FilterApi.eq(firstName, Binary.fromString("Alice"))
+      person.int("age").isNull shouldEqual FilterApi.eq(age, null: java.lang.Integer)
+
+      (person.int("age") >= 18 && !(person.string("address.zip") === "10001")) shouldEqual
+        FilterApi.and(
+          FilterApi.gtEq(age, Int.box(18)),
+          FilterApi.not(FilterApi.eq(FilterApi.binaryColumn("address.zip"), Binary.fromString("10001"))))
+    }
+
+    "treat enums as strings" in {
+      (ScroogeColumns[TestFieldOfEnum].string("op") !== "B") shouldEqual
+        FilterApi.notEq(FilterApi.binaryColumn("op"), Binary.fromString("B"))
+    }
+
+    "reject missing columns" in {
+      an[IllegalArgumentException] should be thrownBy person.int("height")
+      an[IllegalArgumentException] should be thrownBy person.string("name.middle_name")
+    }
+
+    "reject columns of the wrong type" in {
+      an[IllegalArgumentException] should be thrownBy person.long("age")
+      an[IllegalArgumentException] should be thrownBy person.int("info")
+    }
+
+    "reject structs and repeated columns" in {
+      an[IllegalArgumentException] should be thrownBy person.string("name")
+      an[IllegalArgumentException] should be thrownBy ScroogeColumns[TestListPrimitive].int("int_list.int_list_tuple")
+    }
+  }
+}
@@ -1,34 +1,83 @@
 package com.twitter.scalding.parquet.tuple;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 
+import org.apache.parquet.column.Dictionary;
 import org.apache.parquet.io.api.Binary;
 import org.apache.parquet.io.api.Converter;
 import org.apache.parquet.io.api.GroupConverter;
 import org.apache.parquet.io.api.PrimitiveConverter;
 import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 import org.apache.parquet.schema.Type;
 
+/**
+ * Builds a Tuple from each Parquet record.
+ *
+ * Nested groups become nested Tuples. Repeated fields become Lists, as do groups annotated
+ * as LIST or MAP: a LIST holds its elements, and a MAP holds a Tuple of (key, value) for
+ * each entry. Optional values that are not present are null.
+ */
 public class ParquetTupleConverter extends GroupConverter {
 
   protected Tuple currentTuple;
   private final Converter[] converters;
+  private final boolean[] repeated;
+  private final boolean reuseTuple;
+  // where a nested group puts its tuple, null for the record
+  private final Parent parent;
 
   public ParquetTupleConverter(GroupType parquetSchema) {
+    this(parquetSchema, false, Fields.NONE);
+  }
+
+  /**
+   * @param reuseTuple if true, the same Tuple is returned for every record, so it must
+   * not be held on to after the next record is read
+   * @param rawBinaryFields the binary fields to return as byte[] instead of decoding them
+   * as UTF-8 Strings. Values read from the same dictionary entry share one array, so they
+   * must not be modified. This applies to every binary value inside a nested field.
+   */
+  public ParquetTupleConverter(GroupType parquetSchema, boolean reuseTuple, Fields rawBinaryFields) {
+    this(parquetSchema, reuseTuple, rawBinaryFields, false, null);
+  }
+
+  private ParquetTupleConverter(GroupType parquetSchema, boolean reuseTuple, Fields rawBinaryFields,
+      boolean raw, Parent parent) {
     int schemaSize = parquetSchema.getFieldCount();
 
+    this.reuseTuple = reuseTuple;
+    this.parent = parent;
     this.converters = new Converter[schemaSize];
+    this.repeated = new boolean[schemaSize];
     for (int i = 0; i < schemaSize; i++) {
       Type type = parquetSchema.getType(i);
-      converters[i] = newConverter(type, i);
+      boolean rawField = raw || rawBinaryFields.contains(new Fields(type.getName()));
+      repeated[i] = type.isRepetition(Type.Repetition.REPEATED);
+      converters[i] = newConverter(type, rawField, repeated[i] ? new ListParent(this, i) : new TupleParent(this, i));
     }
   }
 
-  private Converter newConverter(Type type, int i) {
-    if(!type.isPrimitive()) {
-      throw new IllegalArgumentException("cascading can only build tuples from primitive types");
+  /**
+   * A converter for type, which gives each value it reads to parent
+   */
+  static Converter newConverter(Type type, boolean raw, Parent parent) {
+    if (type.isPrimitive()) {
+      return new TuplePrimitiveConverter(parent, type.asPrimitiveType().getPrimitiveTypeName(), raw);
+    }
+    GroupType group = type.asGroupType();
+    OriginalType original = group.getOriginalType();
+    boolean isList = original == OriginalType.LIST;
+    boolean isMap = original == OriginalType.MAP || original == OriginalType.MAP_KEY_VALUE;
+    if ((isList || isMap) && group.getFieldCount() == 1 && group.getType(0).isRepetition(Type.Repetition.REPEATED)) {
+      return new ListConverter(group.getType(0), isList, raw, parent);
     } else {
-      return new TuplePrimitiveConverter(this, i);
+      return new ParquetTupleConverter(group, false, Fields.NONE, raw, parent);
     }
   }
 
@@ -39,54 +88,240 @@ public class ParquetTupleConverter extends GroupConverter {
 
   @Override
   final public void start() {
-    currentTuple = Tuple.size(converters.length);
+    if (!reuseTuple || currentTuple == null) {
+      currentTuple = Tuple.size(converters.length);
+    } else {
+      // null values are not added, so clear out the last record
+      for (int i = 0; i < converters.length; i++) {
+        currentTuple.set(i, null);
+      }
+    }
+    for (int i = 0; i < repeated.length; i++) {
+      if (repeated[i]) {
+        currentTuple.set(i, new ArrayList<Object>());
+      }
+    }
   }
 
   @Override
   public void end() {
+    if (parent != null) {
+      parent.add(currentTuple);
+    }
   }
 
   final public Tuple getCurrentTuple() {
     return currentTuple;
   }
 
-  static final class TuplePrimitiveConverter extends PrimitiveConverter {
-    private final ParquetTupleConverter parent;
+  /**
+   * Where a converter puts the values it reads
+   */
+  static abstract class Parent {
+    abstract void add(Object value);
+  }
+
+  static final class TupleParent extends Parent {
+    private final ParquetTupleConverter converter;
     private final int index;
 
-    public TuplePrimitiveConverter(ParquetTupleConverter parent, int index) {
-      this.parent = parent;
+    TupleParent(ParquetTupleConverter converter, int index) {
+      this.converter = converter;
+      this.index = index;
+    }
+
+    @Override
+    void add(Object value) {
+      converter.getCurrentTuple().set(index, value);
+    }
+  }
+
+  static final class ListParent extends Parent {
+    private final ParquetTupleConverter converter;
+    private final int index;
+
+    ListParent(ParquetTupleConverter converter, int index) {
+      this.converter = converter;
       this.index = index;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    void add(Object value) {
+      ((List<Object>) converter.getCurrentTuple().getObject(index)).add(value);
+    }
+  }
+
+  /**
+   * Reads a LIST or MAP group into a List of the values of its repeated field
+   */
+  static final class ListConverter extends GroupConverter {
+    private final Parent parent;
+    private final Converter repeatedConverter;
+    private List<Object> current;
+
+    ListConverter(Type repeatedType, boolean isList, boolean raw, Parent parent) {
+      this.parent = parent;
+      Parent elements = new Parent() {
+        @Override
+        void add(Object value) {
+          current.add(value);
+        }
+      };
+      if (isList && !repeatedType.isPrimitive() && repeatedType.asGroupType().getFieldCount() == 1) {
+        // the three level list, repeated group list { optional element }
+        this.repeatedConverter = new ElementConverter(repeatedType.asGroupType().getType(0), raw, elements);
+      } else {
+        this.repeatedConverter = newConverter(repeatedType, raw, elements);
+      }
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return repeatedConverter;
+    }
+
+    @Override
+    public void start() {
+      current = new ArrayList<Object>();
+    }
+
+    @Override
+    public void end() {
+      parent.add(current);
+    }
+  }
+
+  /**
+   * Unwraps the single element of each repeated group of a list, adding null for
+   * elements that are not present so the positions are kept
+   */
+  static final class ElementConverter extends GroupConverter {
+    private final Parent parent;
+    private final Converter elementConverter;
+    private Object element;
+    private boolean present;
+
+    ElementConverter(Type elementType, boolean raw, Parent parent) {
+      this.parent = parent;
+      this.elementConverter = newConverter(elementType, raw, new Parent() {
+        @Override
+        void add(Object value) {
+          element = value;
+          present = true;
+        }
+      });
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return elementConverter;
+    }
+
+    @Override
+    public void start() {
+      element = null;
+      present = false;
+    }
+
+    @Override
+    public void end() {
+      parent.add(present ? element : null);
+    }
+  }
+
+  static final class TuplePrimitiveConverter extends PrimitiveConverter {
+    private final Parent parent;
+    private final PrimitiveTypeName primitiveType;
+    private final boolean raw;
+
+    // the decoded entries of the current row group's dictionary, filled in as they are used
+    private Dictionary dictionary;
+    private Object[] decoded;
+
+    public TuplePrimitiveConverter(Parent parent, PrimitiveTypeName primitiveType, boolean raw) {
+      this.parent = parent;
+      this.primitiveType = primitiveType;
+      this.raw = raw;
+    }
+
+    private Object decode(Binary value) {
+      return raw ? value.getBytes() : value.toStringUsingUTF8();
+    }
+
+    @Override
+    public boolean hasDictionarySupport() {
+      return true;
+    }
+
+    @Override
+    public void setDictionary(Dictionary dictionary) {
+      this.dictionary = dictionary;
+      this.decoded = new Object[dictionary.getMaxId() + 1];
+    }
+
+    /**
+     * Only binary columns are decoded once per dictionary entry; the other types
+     * are cheap to read from the dictionary each time.
+     */
+    @Override
+    public void addValueFromDictionary(int dictionaryId) {
+      switch (primitiveType) {
+        case BINARY:
+        case FIXED_LEN_BYTE_ARRAY:
+        case INT96:
+          Object value = decoded[dictionaryId];
+          if (value == null) {
+            value = decode(dictionary.decodeToBinary(dictionaryId));
+            decoded[dictionaryId] = value;
+          }
+          parent.add(value);
+          break;
+        case BOOLEAN:
+          addBoolean(dictionary.decodeToBoolean(dictionaryId));
+          break;
+        case INT64:
+          addLong(dictionary.decodeToLong(dictionaryId));
+          break;
+        case DOUBLE:
+          addDouble(dictionary.decodeToDouble(dictionaryId));
+          break;
+        case FLOAT:
+          addFloat(dictionary.decodeToFloat(dictionaryId));
+          break;
+        default:
+          addInt(dictionary.decodeToInt(dictionaryId));
+      }
+    }
+
     @Override
     public void addBinary(Binary value) {
-      parent.getCurrentTuple().setString(index, value.toStringUsingUTF8());
+      parent.add(decode(value));
     }
 
     @Override
     public void addBoolean(boolean value) {
-      parent.getCurrentTuple().setBoolean(index, value);
+      parent.add(value);
     }
 
     @Override
     public void addDouble(double value) {
-      parent.getCurrentTuple().setDouble(index, value);
+      parent.add(value);
     }
 
     @Override
     public void addFloat(float value) {
-      parent.getCurrentTuple().setFloat(index, value);
+      parent.add(value);
     }
 
     @Override
     public void addInt(int value) {
-      parent.getCurrentTuple().setInteger(index, value);
+      parent.add(value);
     }
 
     @Override
     public void addLong(long value) {
-      parent.getCurrentTuple().setLong(index, value);
+      parent.add(value);
     }
   }
 }
@@ -35,8 +35,9 @@ import static org.apache.parquet.Preconditions.checkNotNull;
   * The names must match the names in the Parquet schema.
   * If you do not provide sourceFields, or use Fields.ALL or Fields.UNKNOWN, it will create one from the
   * Parquet schema.
-  * Currently, only primitive types are supported. TODO: allow nested fields in the Parquet schema to be
-  * flattened to a top-level field in the Cascading tuple.
+  * Nested groups are read as nested tuples, and repeated, LIST and MAP fields as Lists (see
+  * ParquetTupleConverter). A source field can also be a dotted path such as "user.name", which reads
+  * the "user" field with only the requested columns in it (see SchemaIntersection).
   *
   * @author Avi Bryant
   */
@@ -46,6 +47,11 @@ public class ParquetTupleScheme extends Scheme<JobConf, RecordReader, OutputColl
   private static final long serialVersionUID = 0L;
   private String parquetSchema;
   private final FilterPredicate filterPredicate;
+  private boolean reuseTuple = false;
+  private Fields rawBinaryFields = Fields.NONE;
+  // the source fields as given, which may hold nested paths that are replaced by the top level
+  // fields once we have the schema
+  private Fields requestedFields;
 
   public ParquetTupleScheme() {
     super();
@@ -81,6 +87,30 @@ public class ParquetTupleScheme extends Scheme<JobConf, RecordReader, OutputColl
     this.filterPredicate = null;
   }
 
+  /**
+   * Return the same Tuple for every record, instead of allocating one per record.
+   * Only safe if nothing holds on to the tuples that are read.
+   */
+  public void setReuseTuple(boolean reuseTuple) {
+    this.reuseTuple = reuseTuple;
+  }
+
+  public boolean getReuseTuple() {
+    return reuseTuple;
+  }
+
+  /**
+   * Binary fields to return as byte[] instead of decoding them as UTF-8 Strings,
+   * for columns that are only passed through
+   */
+  public void setRawBinaryFields(Fields rawBinaryFields) {
+    this.rawBinaryFields = checkNotNull(rawBinaryFields, "rawBinaryFields");
+  }
+
+  public Fields getRawBinaryFields() {
+    return rawBinaryFields;
+  }
+
   @SuppressWarnings("rawtypes")
   @Override
   public void sourceConfInit(FlowProcess<JobConf> fp,
@@ -92,19 +122,28 @@ public class ParquetTupleScheme extends Scheme<JobConf, RecordReader, OutputColl
 
     jobConf.setInputFormat(DeprecatedParquetInputFormat.class);
     ParquetInputFormat.setReadSupportClass(jobConf, TupleReadSupport.class);
-    TupleReadSupport.setRequestedFields(jobConf, getSourceFields());
+    TupleReadSupport.setRequestedFields(jobConf, getRequestedFields());
+    TupleReadSupport.setReuseTuple(jobConf, reuseTuple);
+    TupleReadSupport.setRawBinaryFields(jobConf, rawBinaryFields);
  }
 
  @Override
  public Fields retrieveSourceFields(FlowProcess<JobConf> flowProcess, Tap tap) {
     MessageType schema = readSchema(flowProcess, tap);
-    SchemaIntersection intersection = new SchemaIntersection(schema, getSourceFields());
+    SchemaIntersection intersection = new SchemaIntersection(schema, getRequestedFields());
 
     setSourceFields(intersection.getSourceFields());
 
     return getSourceFields();
   }
 
+  private Fields getRequestedFields() {
+    if (requestedFields == null) {
+      requestedFields = getSourceFields();
+    }
+    return requestedFields;
+  }
+
   private MessageType readSchema(FlowProcess<JobConf> flowProcess, Tap tap) {
     try {
       Hfs hfs;
@@ -1,6 +1,8 @@
 package com.twitter.scalding.parquet.tuple;
 
+import org.apache.parquet.schema.GroupType;
 import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
 import org.apache.parquet.schema.Type;
 
 import cascading.tuple.Fields;
@@ -8,6 +10,15 @@ import cascading.tuple.Fields;
 import java.util.List;
 import java.util.ArrayList;
 
+/**
+ * The part of a file schema that was requested, and the fields of the tuples read from it.
+ *
+ * A requested field can be a top level name, or a dotted path to a field nested in a group,
+ * such as "user.address.city". A path through a LIST or MAP names the fields of its
+ * elements, so "events.time" reads the time of each element of the events list. The
+ * paths under the same top level field are read as one field of that name, with only
+ * the requested columns inside.
+ */
 public class SchemaIntersection {
 
   private final MessageType requestedSchema;
@@ -28,6 +39,12 @@ public class SchemaIntersection {
       if(requestedFields.contains(name)) {
         newFields = newFields.append(name);
         newSchemaFields.add(type);
+      } else if (!requestedFields.isAll()) {
+        Type pruned = prune(type, nestedPaths(requestedFields, type.getName()));
+        if (pruned != null) {
+          newFields = newFields.append(name);
+          newSchemaFields.add(pruned);
+        }
       }
     }
 
@@ -35,6 +52,60 @@ public class SchemaIntersection {
     this.requestedSchema = new MessageType(fileSchema.getName(), newSchemaFields);
   }
 
+  /**
+   * The rest of each requested path that starts with name
+   */
+  private static List<String> nestedPaths(Iterable<?> paths, String name) {
+    List<String> nested = new ArrayList<String>();
+    String prefix = name + ".";
+    for (Object path : paths) {
+      String str = path.toString();
+      if (str.startsWith(prefix)) {
+        nested.add(str.substring(prefix.length()));
+      }
+    }
+    return nested;
+  }
+
+  /**
+   * type with only the fields on the given paths, or null if none of them are in it
+   */
+  private static Type prune(Type type, List<String> paths) {
+    if (paths.isEmpty() || type.isPrimitive()) {
+      return paths.isEmpty() ? null : type;
+    }
+    GroupType group = type.asGroupType();
+    OriginalType original = group.getOriginalType();
+    if ((original == OriginalType.LIST || original == OriginalType.MAP || original == OriginalType.MAP_KEY_VALUE)
+        && group.getFieldCount() == 1) {
+      // the paths name fields of the elements, keep the wrapping groups
+      Type element = pruneElement(group.getType(0), paths, original == OriginalType.LIST);
+      return element == null ? null : group.withNewFields(element);
+    }
+
+    List<Type> fields = new ArrayList<Type>();
+    for (Type field : group.getFields()) {
+      if (paths.contains(field.getName())) {
+        fields.add(field);
+      } else {
+        Type pruned = prune(field, nestedPaths(paths, field.getName()));
+        if (pruned != null) {
+          fields.add(pruned);
+        }
+      }
+    }
+    return fields.isEmpty() ? null : group.withNewFields(fields);
+  }
+
+  private static Type pruneElement(Type repeated, List<String> paths, boolean isList) {
+    if (isList && !repeated.isPrimitive() && repeated.asGroupType().getFieldCount() == 1) {
+      // the three level list, repeated group list { optional element }
+      Type element = prune(repeated.asGroupType().getType(0), paths);
+      return element == null ? null : repeated.asGroupType().withNewFields(element);
+    }
+    return prune(repeated, paths);
+  }
+
   public MessageType getRequestedSchema() {
     return requestedSchema;
   }
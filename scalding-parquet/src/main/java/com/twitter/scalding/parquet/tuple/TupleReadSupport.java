@@ -17,6 +17,8 @@ import org.apache.parquet.schema.MessageType;
 
 public class TupleReadSupport extends ReadSupport<Tuple> {
   static final String PARQUET_CASCADING_REQUESTED_FIELDS = "parquet.cascading.requested.fields";
+  static final String PARQUET_CASCADING_REUSE_TUPLE = "parquet.cascading.reuse.tuple";
+  static final String PARQUET_CASCADING_RAW_BINARY_FIELDS = "parquet.cascading.raw.binary.fields";
 
   static protected Fields getRequestedFields(Configuration configuration) {
     String fieldsString = configuration.get(PARQUET_CASCADING_REQUESTED_FIELDS);
@@ -36,6 +38,24 @@ public class TupleReadSupport extends ReadSupport<Tuple> {
     configuration.set(PARQUET_CASCADING_REQUESTED_FIELDS, fieldsString);
   }
 
+  static protected Fields getRawBinaryFields(Configuration configuration) {
+    String fieldsString = configuration.get(PARQUET_CASCADING_RAW_BINARY_FIELDS);
+
+    if(fieldsString == null || fieldsString.isEmpty())
+      return Fields.NONE;
+    else
+      return new Fields(StringUtils.split(fieldsString, ":"));
+  }
+
+  static protected void setRawBinaryFields(JobConf configuration, Fields fields) {
+    String fieldsString = StringUtils.join(fields.iterator(), ":");
+    configuration.set(PARQUET_CASCADING_RAW_BINARY_FIELDS, fieldsString);
+  }
+
+  static protected void setReuseTuple(JobConf configuration, boolean reuseTuple) {
+    configuration.setBoolean(PARQUET_CASCADING_REUSE_TUPLE, reuseTuple);
+  }
+
   @Override
   public ReadContext init(Configuration configuration, Map<String, String> keyValueMetaData, MessageType fileSchema) {
     Fields requestedFields = getRequestedFields(configuration);
@@ -54,7 +74,9 @@ public class TupleReadSupport extends ReadSupport<Tuple> {
       MessageType fileSchema,
       ReadContext readContext) {
     MessageType requestedSchema = readContext.getRequestedSchema();
-    return new TupleRecordMaterializer(requestedSchema);
+    return new TupleRecordMaterializer(requestedSchema,
+      configuration.getBoolean(PARQUET_CASCADING_REUSE_TUPLE, false),
+      getRawBinaryFields(configuration));
   }
 
 }
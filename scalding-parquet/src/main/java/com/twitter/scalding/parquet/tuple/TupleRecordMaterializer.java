@@ -1,5 +1,6 @@
 package com.twitter.scalding.parquet.tuple;
 
+import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 
 import org.apache.parquet.io.api.GroupConverter;
@@ -14,6 +15,10 @@ public class TupleRecordMaterializer extends RecordMaterializer<Tuple> {
     this.root = new ParquetTupleConverter(parquetSchema);
   }
 
+  public TupleRecordMaterializer(GroupType parquetSchema, boolean reuseTuple, Fields rawBinaryFields) {
+    this.root = new ParquetTupleConverter(parquetSchema, reuseTuple, rawBinaryFields);
+  }
+
   @Override
   public Tuple getCurrentRecord() {
     return root.getCurrentTuple();
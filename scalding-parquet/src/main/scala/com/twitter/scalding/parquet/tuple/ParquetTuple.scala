@@ -33,12 +33,26 @@ object ParquetTupleSource {
 trait ParquetTupleSource extends FileSource with HasFilterPredicate {
   def fields: Fields
 
+  /**
+   * Override to return the same tuple for every record read. Only safe if
+   * nothing downstream holds on to the tuples.
+   */
+  def reuseTuples: Boolean = false
+
+  /**
+   * Override with the binary fields that should be read as Array[Byte]
+   * instead of being decoded as UTF-8 Strings
+   */
+  def rawBinaryFields: Fields = Fields.NONE
+
   override def hdfsScheme = {
 
     val scheme = withFilter match {
       case Some(fp) => new ParquetTupleScheme(fp, fields)
       case None => new ParquetTupleScheme(fields)
     }
+    scheme.setReuseTuple(reuseTuples)
+    scheme.setRawBinaryFields(rawBinaryFields)
 
     HadoopSchemeInstance(scheme.asInstanceOf[Scheme[_, _, _, _, _]])
   }
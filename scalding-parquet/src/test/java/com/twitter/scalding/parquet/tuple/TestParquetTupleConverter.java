@@ -0,0 +1,201 @@
+package com.twitter.scalding.parquet.tuple;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestParquetTupleConverter {
+  final String parquetPath = "target/test/ParquetTupleConverter/names.parquet";
+  final MessageType schema = MessageTypeParser.parseMessageType(
+    "message names { required binary name (UTF8); optional binary nick (UTF8); required int64 id; }");
+  final String[] names = new String[] { "Alice", "Bob", "Charlie" };
+
+  final MessageType nestedSchema = MessageTypeParser.parseMessageType(
+    "message users {\n" +
+    "  required int64 id;\n" +
+    "  optional group address { required binary city (UTF8); optional binary zip (UTF8); }\n" +
+    "  repeated binary alias (UTF8);\n" +
+    "  optional group events (LIST) { repeated group list { optional group element { required int64 time; required binary kind (UTF8); } } }\n" +
+    "  optional group scores (MAP) { repeated group key_value { required binary key (UTF8); optional int32 value; } }\n" +
+    "}");
+
+  private Path writeNestedFile(Configuration conf) throws Exception {
+    Path path = new Path(parquetPath + ".nested");
+    FileSystem fs = path.getFileSystem(conf);
+    if (fs.exists(path)) fs.delete(path, true);
+
+    ParquetWriter<Group> writer = ExampleParquetWriter.builder(path)
+      .withConf(conf)
+      .withType(nestedSchema)
+      .build();
+    SimpleGroupFactory groups = new SimpleGroupFactory(nestedSchema);
+
+    Group full = groups.newGroup().append("id", 1L).append("alias", "al").append("alias", "ally");
+    full.addGroup("address").append("city", "Paris").append("zip", "75001");
+    Group events = full.addGroup("events");
+    events.addGroup("list").addGroup("element").append("time", 10L).append("kind", "click");
+    events.addGroup("list");
+    events.addGroup("list").addGroup("element").append("time", 30L).append("kind", "view");
+    full.addGroup("scores").addGroup("key_value").append("key", "a").append("value", 7);
+    writer.write(full);
+
+    writer.write(groups.newGroup().append("id", 2L));
+    writer.close();
+    return path;
+  }
+
+  private List<Tuple> readNested(Configuration conf) throws Exception {
+    ParquetReader<Tuple> reader = ParquetReader.builder(new TupleReadSupport(), writeNestedFile(conf))
+      .withConf(conf)
+      .build();
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    Tuple tuple = reader.read();
+    while (tuple != null) {
+      tuples.add(tuple);
+      tuple = reader.read();
+    }
+    reader.close();
+    return tuples;
+  }
+
+  private static Tuple tuple(Object... values) {
+    Tuple tuple = Tuple.size(values.length);
+    for (int i = 0; i < values.length; i++) {
+      tuple.set(i, values[i]);
+    }
+    return tuple;
+  }
+
+  private Path writeFile(Configuration conf) throws Exception {
+    Path path = new Path(parquetPath);
+    FileSystem fs = path.getFileSystem(conf);
+    if (fs.exists(path)) fs.delete(path, true);
+
+    // few distinct values, so the name column is dictionary encoded
+    ParquetWriter<Group> writer = ExampleParquetWriter.builder(path)
+      .withConf(conf)
+      .withType(schema)
+      .withDictionaryEncoding(true)
+      .build();
+    SimpleGroupFactory groups = new SimpleGroupFactory(schema);
+    for (int i = 0; i < 300; i++) {
+      Group group = groups.newGroup()
+        .append("name", names[i % names.length])
+        .append("id", (long) i);
+      if (i % 2 == 0) group.append("nick", "n" + i);
+      writer.write(group);
+    }
+    writer.close();
+    return path;
+  }
+
+  private List<Tuple> read(Configuration conf, boolean copy) throws Exception {
+    ParquetReader<Tuple> reader = ParquetReader.builder(new TupleReadSupport(), writeFile(conf))
+      .withConf(conf)
+      .build();
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    Tuple tuple = reader.read();
+    while (tuple != null) {
+      tuples.add(copy ? new Tuple(tuple) : tuple);
+      tuple = reader.read();
+    }
+    reader.close();
+    return tuples;
+  }
+
+  @Test
+  public void testDictionaryStrings() throws Exception {
+    List<Tuple> tuples = read(new Configuration(), false);
+    assertEquals(300, tuples.size());
+    for (int i = 0; i < tuples.size(); i++) {
+      Tuple tuple = tuples.get(i);
+      assertEquals(names[i % names.length], tuple.getObject(0));
+      assertEquals(i % 2 == 0 ? "n" + i : null, tuple.getObject(1));
+      assertEquals((long) i, tuple.getObject(2));
+    }
+    // each dictionary entry is decoded once
+    assertSame(tuples.get(0).getObject(0), tuples.get(3).getObject(0));
+    assertNotSame(tuples.get(0), tuples.get(1));
+  }
+
+  @Test
+  public void testReuseTuple() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(TupleReadSupport.PARQUET_CASCADING_REUSE_TUPLE, true);
+    List<Tuple> tuples = read(conf, true);
+    assertEquals(300, tuples.size());
+    // a null in the file must not keep the value of the record before
+    assertEquals("n0", tuples.get(0).getObject(1));
+    assertNull(tuples.get(1).getObject(1));
+    assertEquals("Charlie", tuples.get(299).getObject(0));
+  }
+
+  @Test
+  public void testRawBinaryFields() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(TupleReadSupport.PARQUET_CASCADING_RAW_BINARY_FIELDS, "name");
+    List<Tuple> tuples = read(conf, false);
+    assertArrayEquals("Bob".getBytes("UTF-8"), (byte[]) tuples.get(1).getObject(0));
+    assertEquals("n2", tuples.get(2).getObject(1));
+  }
+
+  @Test
+  public void testNestedFields() throws Exception {
+    List<Tuple> tuples = readNested(new Configuration());
+    assertEquals(2, tuples.size());
+
+    Tuple full = tuples.get(0);
+    assertEquals(1L, full.getObject(0));
+    assertEquals(tuple("Paris", "75001"), full.getObject(1));
+    assertEquals(Arrays.asList("al", "ally"), full.getObject(2));
+    assertEquals(Arrays.asList(tuple(10L, "click"), null, tuple(30L, "view")), full.getObject(3));
+    assertEquals(Arrays.asList(tuple("a", 7)), full.getObject(4));
+
+    Tuple empty = tuples.get(1);
+    assertEquals(2L, empty.getObject(0));
+    assertNull(empty.getObject(1));
+    assertEquals(Collections.emptyList(), empty.getObject(2));
+    assertNull(empty.getObject(3));
+    assertNull(empty.getObject(4));
+  }
+
+  @Test
+  public void testNestedProjection() throws Exception {
+    SchemaIntersection intersection = new SchemaIntersection(nestedSchema,
+      new Fields("address.zip", "events.kind", "missing.field", "alias"));
+    assertEquals(new Fields("address", "alias", "events"), intersection.getSourceFields());
+    assertEquals(MessageTypeParser.parseMessageType(
+      "message users {\n" +
+      "  optional group address { optional binary zip (UTF8); }\n" +
+      "  repeated binary alias (UTF8);\n" +
+      "  optional group events (LIST) { repeated group list { optional group element { required binary kind (UTF8); } } }\n" +
+      "}"), intersection.getRequestedSchema());
+
+    Configuration conf = new Configuration();
+    conf.set(TupleReadSupport.PARQUET_CASCADING_REQUESTED_FIELDS, "address.zip:events.kind");
+    Tuple full = readNested(conf).get(0);
+    assertEquals(tuple("75001"), full.getObject(0));
+    assertEquals(Arrays.asList(tuple("click"), null, tuple("view")), full.getObject(1));
+  }
+}